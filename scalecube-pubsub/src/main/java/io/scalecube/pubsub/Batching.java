@@ -0,0 +1,96 @@
+package io.scalecube.pubsub;
+
+import io.aeron.protocol.DataHeaderFlyweight;
+import io.scalecube.pubsub.aeron.Shared;
+import io.scalecube.pubsub.codec.MessageBatch;
+import java.time.Duration;
+
+/**
+ * How the server packs published messages into transport frames, see {@link MessageBatch}.
+ *
+ * <p>{@link #latency()} packs only what the fan-out has at hand and sends it right away, {@link #throughput()} keeps
+ * filling a frame for a short while before sending it. Clients unpack batches regardless of this setting.
+ */
+public final class Batching {
+
+  /**
+   * Room left in the MTU for the Aeron data header and the header the session transport puts in front of each frame.
+   */
+  private static final int HEADER_ALLOWANCE = DataHeaderFlyweight.HEADER_LENGTH + 32;
+
+  static final int DEFAULT_MAX_BATCH_LENGTH = Shared.MTU - HEADER_ALLOWANCE;
+
+  static final Duration THROUGHPUT_LINGER = Duration.ofNanos(500_000);
+
+  private static final Batching NONE = new Batching(0, 0);
+
+  private final int maxBatchLength;
+  private final long lingerNanos;
+
+  private Batching(int maxBatchLength, long lingerNanos) {
+    this.maxBatchLength = maxBatchLength;
+    this.lingerNanos = lingerNanos;
+  }
+
+  /**
+   * Every message goes into a frame of its own.
+   *
+   * @return batching settings.
+   */
+  public static Batching none() {
+    return NONE;
+  }
+
+  /**
+   * Latency profile: messages published at about the same time share a frame, nothing waits for more messages.
+   *
+   * @return batching settings.
+   */
+  public static Batching latency() {
+    return new Batching(DEFAULT_MAX_BATCH_LENGTH, 0);
+  }
+
+  /**
+   * Throughput profile: a frame is sent once full or 500 microseconds after its first
+   * message.
+   *
+   * @return batching settings.
+   */
+  public static Batching throughput() {
+    return new Batching(DEFAULT_MAX_BATCH_LENGTH, THROUGHPUT_LINGER.toNanos());
+  }
+
+  /**
+   * Custom batching.
+   *
+   * @param maxBatchLength maximum frame length in bytes, should stay below the MTU.
+   * @param linger how long a frame may wait for more messages.
+   * @return batching settings.
+   */
+  public static Batching of(int maxBatchLength, Duration linger) {
+    if (maxBatchLength <= MessageBatch.HEADER_LENGTH + MessageBatch.LENGTH_PREFIX) {
+      throw new IllegalArgumentException("maxBatchLength is too small: " + maxBatchLength);
+    }
+    if (linger.isNegative()) {
+      throw new IllegalArgumentException("linger must not be negative: " + linger);
+    }
+    return new Batching(maxBatchLength, linger.toNanos());
+  }
+
+  boolean isEnabled() {
+    return maxBatchLength > 0;
+  }
+
+  int maxBatchLength() {
+    return maxBatchLength;
+  }
+
+  long lingerNanos() {
+    return lingerNanos;
+  }
+
+  @Override
+  public String toString() {
+    return "Batching{maxBatchLength=" + maxBatchLength + ", lingerNanos=" + lingerNanos + '}';
+  }
+}
@@ -0,0 +1,136 @@
+package io.scalecube.pubsub;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayDeque;
+import org.agrona.collections.Long2ObjectHashMap;
+
+/**
+ * Outbound queue of a session that keeps only the newest pending message per key, qualifier plus stream id.
+ *
+ * <p>A message replacing a pending one of the same key takes over its place in the queue and the replaced slice is
+ * released, so the queue holds at most one message per key however fast they are published. Keys are looked up in a
+ * single open-addressing map from a 64-bit hash of qualifier and stream id, as in {@link LastValueCache}; entries of
+ * colliding keys are chained, so a lookup always compares the key, and an entry is unlinked when polled without
+ * disturbing the others. Messages without stream id share one key per qualifier. Unkeyed entries such as control
+ * messages and batches are queued as they come. Entries leave the key index once polled, so the index only covers what
+ * is pending.
+ *
+ * <p>Producer and consumer of a session run on different threads and a replacement touches both ends, so every method
+ * takes this object's lock.
+ */
+final class ConflatingQueue {
+
+  private static final long NO_STREAM_ID = Long.MIN_VALUE;
+
+  private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+
+  // first entry per key hash, colliding ones follow
+  private final Long2ObjectHashMap<Entry> pending = new Long2ObjectHashMap<>();
+
+  /**
+   * Queues an unkeyed entry.
+   *
+   * @param slice encoded message or batch, ownership passes to this queue.
+   */
+  synchronized void offer(ByteBuf slice) {
+    queue.offer(new Entry(null, NO_STREAM_ID, 0, slice));
+  }
+
+  /**
+   * Queues a message unless one of the same key is pending, in which case it is replaced.
+   *
+   * @param slice encoded message, ownership passes to this queue.
+   * @param qualifier message qualifier, may be {@code null}.
+   * @param streamId message stream id, may be {@code null}.
+   * @return {@code true} if the queue grew, {@code false} if a pending message was replaced.
+   */
+  synchronized boolean offer(ByteBuf slice, String qualifier, Long streamId) {
+    String key = qualifier == null ? "" : qualifier;
+    long id = streamId == null ? NO_STREAM_ID : streamId;
+    long hash = hash(key, id);
+    Entry first = pending.get(hash);
+    for (Entry entry = first; entry != null; entry = entry.collision) {
+      if (entry.streamId == id && entry.key.equals(key)) {
+        entry.slice.release();
+        entry.slice = slice;
+        return false;
+      }
+    }
+    Entry entry = new Entry(key, id, hash, slice);
+    entry.collision = first;
+    pending.put(hash, entry);
+    queue.offer(entry);
+    return true;
+  }
+
+  /**
+   * Takes the oldest entry.
+   *
+   * @return slice, owned by the caller, {@code null} if empty.
+   */
+  synchronized ByteBuf poll() {
+    Entry entry = queue.poll();
+    if (entry == null) {
+      return null;
+    }
+    if (entry.key != null) {
+      unlink(entry);
+    }
+    return entry.slice;
+  }
+
+  synchronized int size() {
+    return queue.size();
+  }
+
+  private void unlink(Entry entry) {
+    Entry first = pending.get(entry.hash);
+    if (first == entry) {
+      if (entry.collision == null) {
+        pending.remove(entry.hash);
+      } else {
+        pending.put(entry.hash, entry.collision);
+      }
+      return;
+    }
+    Entry previous = first;
+    while (previous.collision != entry) {
+      previous = previous.collision;
+    }
+    previous.collision = entry.collision;
+  }
+
+  /**
+   * FNV-1a over the qualifier chars and the stream id, finished with the MurmurHash3 mixer.
+   */
+  private static long hash(String qualifier, long streamId) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0, length = qualifier.length(); i < length; i++) {
+      hash = (hash ^ qualifier.charAt(i)) * 0x100000001b3L;
+    }
+    hash = (hash ^ streamId) * 0x100000001b3L;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9a62b3fc5f3L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static final class Entry {
+
+    private final String key;
+    private final long streamId;
+    private final long hash;
+    private ByteBuf slice;
+    // next pending entry of a colliding key
+    private Entry collision;
+
+    private Entry(String key, long streamId, long hash, ByteBuf slice) {
+      this.key = key;
+      this.streamId = streamId;
+      this.hash = hash;
+      this.slice = slice;
+    }
+  }
+}
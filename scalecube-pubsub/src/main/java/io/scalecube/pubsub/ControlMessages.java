@@ -0,0 +1,196 @@
+package io.scalecube.pubsub;
+
+import io.netty.buffer.ByteBuf;
+import io.scalecube.pubsub.codec.MessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.nio.ByteBuffer;
+
+/**
+ * Control messages exchanged between client and server over their session, distinguished by qualifiers in the
+ * {@code /io.scalecube/} namespace. The topic a control message refers to is appended to its qualifier, e.g.
+ * {@code /io.scalecube/subscribe/prices/EUR}; a bare subscribe or unsubscribe request refers to every topic, a bare
+ * stream assignment to messages without qualifier.
+ */
+final class ControlMessages {
+
+  static final String SUBSCRIBE_QUALIFIER = "/io.scalecube/subscribe";
+  static final String UNSUBSCRIBE_QUALIFIER = "/io.scalecube/unsubscribe";
+  static final String STREAM_QUALIFIER = "/io.scalecube/stream";
+  static final String ENDPOINT_QUALIFIER = "/io.scalecube/endpoint";
+  static final String REPLAY_FROM_QUALIFIER = "/io.scalecube/replay-from";
+  static final String REPLAY_SINCE_QUALIFIER = "/io.scalecube/replay-since";
+  static final String RESUME_FROM_QUALIFIER = "/io.scalecube/resume-from";
+
+  private ControlMessages() {}
+
+  /**
+   * Creates a subscribe request.
+   *
+   * @param topic qualifier of interest or {@code null} for every topic.
+   * @return request message.
+   */
+  static PubSubMessage subscribe(String topic) {
+    return message(SUBSCRIBE_QUALIFIER, topic);
+  }
+
+  static PubSubMessage unsubscribe(String topic) {
+    return message(UNSUBSCRIBE_QUALIFIER, topic);
+  }
+
+  /**
+   * Creates a stream assignment sent by the server: messages with given qualifier are published on the given Aeron
+   * stream id.
+   *
+   * @param topic message qualifier, may be {@code null}.
+   * @param streamId Aeron stream id carrying the topic.
+   * @return control message.
+   */
+  static PubSubMessage stream(String topic, int streamId) {
+    return PubSubMessage.from(message(STREAM_QUALIFIER, topic)).streamId((long) streamId).build();
+  }
+
+  /**
+   * Creates a request to replay the journal of a topic from an offset, then to subscribe to it.
+   *
+   * @param topic journaled qualifier.
+   * @param offset journal offset of the first message to replay.
+   * @return request message.
+   */
+  static PubSubMessage replayFrom(String topic, long offset) {
+    return PubSubMessage.from(message(REPLAY_FROM_QUALIFIER, topic)).streamId(offset).build();
+  }
+
+  /**
+   * Creates a request to replay the journal of a topic from a point in time, then to subscribe to it.
+   *
+   * @param topic journaled qualifier.
+   * @param timestamp epoch milliseconds the first message to replay was published at or after.
+   * @return request message.
+   */
+  static PubSubMessage replaySince(String topic, long timestamp) {
+    return PubSubMessage.from(message(REPLAY_SINCE_QUALIFIER, topic)).streamId(timestamp).build();
+  }
+
+  static boolean isReplay(PubSubMessage request) {
+    return is(request, REPLAY_FROM_QUALIFIER) || is(request, REPLAY_SINCE_QUALIFIER);
+  }
+
+  /**
+   * Extracts the topic from a replay request.
+   *
+   * @param request replay request.
+   * @return topic.
+   */
+  static String replayTopic(PubSubMessage request) {
+    return topic(request, is(request, REPLAY_FROM_QUALIFIER) ? REPLAY_FROM_QUALIFIER : REPLAY_SINCE_QUALIFIER);
+  }
+
+  /**
+   * Creates the marker telling a replay has caught up, see {@link PubSubMessage#REPLAYED_QUALIFIER}.
+   *
+   * @param topic replayed topic.
+   * @param nextOffset journal offset of the first live message, {@code -1} if not journaled.
+   * @return control message.
+   */
+  static PubSubMessage replayed(String topic, long nextOffset) {
+    return PubSubMessage.from(message(PubSubMessage.REPLAYED_QUALIFIER, topic)).streamId(nextOffset).build();
+  }
+
+  /**
+   * Creates a request to retransmit the messages of a topic following a sequence, then to subscribe to it.
+   *
+   * @param topic sequenced qualifier.
+   * @param lastSequence sequence of the last message received, {@code -1} for none.
+   * @return request message.
+   */
+  static PubSubMessage resumeFrom(String topic, long lastSequence) {
+    return PubSubMessage.from(message(RESUME_FROM_QUALIFIER, topic)).streamId(lastSequence).build();
+  }
+
+  /**
+   * Extracts the sequence of the last message received from a resume request.
+   *
+   * @param request resume request.
+   * @return last sequence, {@code -1} for none.
+   */
+  static long lastSequence(PubSubMessage request) {
+    return request.streamId() == null ? -1 : request.streamId();
+  }
+
+  /**
+   * Creates the marker telling a resume has been handled, see {@link PubSubMessage#RESUMED_QUALIFIER}.
+   *
+   * @param topic resumed topic.
+   * @param nextSequence sequence of the first live message, {@code -1} if messages were missed.
+   * @return control message.
+   */
+  static PubSubMessage resumed(String topic, long nextSequence) {
+    return PubSubMessage.from(message(PubSubMessage.RESUMED_QUALIFIER, topic)).streamId(nextSequence).build();
+  }
+
+  /**
+   * Creates the marker ending a snapshot of the last value cache, see {@link PubSubMessage#SNAPSHOT_QUALIFIER}.
+   *
+   * @param topic topic subscribed to or {@code null} for every topic.
+   * @param count number of messages in the snapshot.
+   * @return control message.
+   */
+  static PubSubMessage snapshot(String topic, int count) {
+    return PubSubMessage.from(message(PubSubMessage.SNAPSHOT_QUALIFIER, topic)).streamId((long) count).build();
+  }
+
+  /**
+   * Creates the announcement of the endpoint a client receives topic streams on, see {@link DestinationMode#MANUAL}.
+   *
+   * @param endpoint {@code host:port} of the client.
+   * @return request message.
+   */
+  static PubSubMessage endpoint(String endpoint) {
+    return message(ENDPOINT_QUALIFIER, "/" + endpoint);
+  }
+
+  static String endpoint(PubSubMessage message) {
+    return topic(message, ENDPOINT_QUALIFIER).substring(1);
+  }
+
+  private static PubSubMessage message(String controlQualifier, String topic) {
+    return PubSubMessage.builder().qualifier(topic == null ? controlQualifier : controlQualifier + topic).build();
+  }
+
+  static boolean is(PubSubMessage message, String controlQualifier) {
+    return message.qualifier() != null && message.qualifier().startsWith(controlQualifier);
+  }
+
+  /**
+   * Extracts the topic from a control message.
+   *
+   * @param message control message.
+   * @param controlQualifier qualifier of the control message type.
+   * @return topic or {@code null} for a bare control message.
+   */
+  static String topic(PubSubMessage message, String controlQualifier) {
+    String qualifier = message.qualifier();
+    return qualifier.length() == controlQualifier.length() ? null : qualifier.substring(controlQualifier.length());
+  }
+
+  /**
+   * Encodes a control message into a heap buffer. Control messages are rare, so unlike published messages they don't
+   * keep the pooled buffer around until written.
+   *
+   * @param codec wire codec.
+   * @param message control message.
+   * @return encoded control message.
+   * @throws MessageCodecException in case of issues during encoding.
+   */
+  static ByteBuffer encode(MessageCodec codec, PubSubMessage message) throws MessageCodecException {
+    ByteBuf byteBuf = codec.encode(message);
+    try {
+      ByteBuffer buffer = ByteBuffer.allocate(byteBuf.readableBytes());
+      byteBuf.getBytes(byteBuf.readerIndex(), buffer);
+      buffer.flip();
+      return buffer;
+    } finally {
+      byteBuf.release();
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package io.scalecube.pubsub;
+
+/**
+ * How clients become destinations of the server's topic stream publications, which send each message to every
+ * destination (multi-destination-cast).
+ */
+public enum DestinationMode {
+
+  /**
+   * Clients join by sending status messages to the server's control endpoint, {@code port + 1}.
+   */
+  DYNAMIC,
+
+  /**
+   * Clients announce the endpoint they receive on over their session and the server adds it as a destination, removing
+   * it again when the session goes away. The server decides who gets the streams; its {@code port + 1} only sends.
+   */
+  MANUAL
+}
@@ -0,0 +1,778 @@
+package io.scalecube.pubsub;
+
+import io.aeron.Aeron;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.scalecube.pubsub.codec.MessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import io.scalecube.pubsub.journal.Journal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.ArrayUtil;
+import org.agrona.concurrent.ManyToOneConcurrentLinkedQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fans out every published {@link PubSubMessage} to the sessions subscribed to its qualifier.
+ *
+ * <p>Each message is encoded exactly once into a reference-counted {@link ByteBuf}. Every session gets a retained slice
+ * of that buffer, released once the session has emitted it. The buffer is an unpooled heap buffer, so a frame emitted
+ * by a session stays valid after its release, however long the transport holds on to it. Messages nobody is
+ * subscribed to are not encoded at all.
+ *
+ * <p>With {@link TopicStreams} enabled the encoded message goes to the Aeron stream of its topic instead, and the
+ * sessions only carry the stream assignments, which are advertised to every connected client. A message that is cached,
+ * journaled or sequenced is still encoded once, and the same bytes are copied onto the stream; any other message is
+ * encoded by the topic stream itself, straight into the term buffer where the codec allows.
+ *
+ * <p>{@link LocalSession}s of clients in the same JVM are routed separately and get the message object itself, before
+ * and regardless of any encoding.
+ *
+ * <p>Messages of {@link #conflate conflated} topics replace the pending message of the same key in each session instead
+ * of queueing behind it.
+ *
+ * <p>With a {@link LastValueCache} the newest message of every key of the cached topics is kept. A session subscribing
+ * to a topic gets the cached messages of the topic, then a {@link ControlMessages#snapshot boundary} telling how many
+ * they were, then the live messages. Requests of sessions are handled on the fan-out thread then, between two
+ * published messages, so no message is missed or sent twice.
+ *
+ * <p>Messages of journaled topics are appended to their {@link TopicJournals journal}. A session asking for a replay
+ * gets the journal from the requested offset, up to its end or as far as the session's backlog allows in each round of
+ * the fan-out thread, and is subscribed once the replay has caught up with the journal, followed by a
+ * {@link ControlMessages#replayed replayed} marker: again, no message is missed or sent twice. A session subscribing to
+ * {@link #compact compacted} topics is bootstrapped the same way from the compacted journals of the matching
+ * qualifiers, followed by a {@link ControlMessages#snapshot snapshot} marker.
+ *
+ * <p>These guarantees hold for the session only. With {@link TopicStreams} the live messages travel on the topic's
+ * Aeron stream, which the client joins as it sends the request, while snapshots, replays and retransmissions come over
+ * the session: the two are not ordered with each other, so live messages may arrive before the marker and some of them
+ * again as part of the replay.
+ *
+ * <p>Messages of {@link #sequence sequenced} topics are stamped with the next sequence of their qualifier and kept in a
+ * {@link RetransmitWindow}. A session resuming a topic after a reconnect gets the messages following its last sequence
+ * from the window, then a {@link ControlMessages#resumed resumed} marker, then the live messages.
+ *
+ * <p>Publishers are told to back off through {@link #tryAcquire(int)}, which bounds the messages not handled by the
+ * fan-out yet plus the backlog of the slowest session, and keeps them within the room left in every local session.
+ */
+final class FanOut {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FanOut.class);
+
+  private static final AtomicIntegerFieldUpdater<FanOut> PENDING =
+      AtomicIntegerFieldUpdater.newUpdater(FanOut.class, "pending");
+
+  // memory of released buffers is left to the GC rather than reused, see FanOutSession
+  static final ByteBufAllocator ALLOCATOR = new UnpooledByteBufAllocator(false);
+
+  // journal records read at once for a replay
+  private static final int REPLAY_CHUNK = 256;
+
+  // backlog above which a replay waits for the session to catch up
+  private static final int REPLAY_MAX_BACKLOG = 4096;
+
+  private final MessageCodec codec;
+  private final Batching batching;
+
+  private final TopicRouter<FanOutSession> router = new TopicRouter<>(new FanOutSession[0]);
+  private final TopicRouter<LocalSession> localRouter = new TopicRouter<>(new LocalSession[0]);
+
+  private volatile FanOutSession[] sessions = new FanOutSession[0];
+  private volatile LocalSession[] localSessions = new LocalSession[0];
+
+  private TopicStreams topicStreams;
+
+  // topics conflated per session, null for none
+  private TopicFilter.QualifierMatcher conflated;
+
+  // null unless caching last values, fan-out thread only
+  private LastValueCache lastValues;
+
+  // null unless journaling, fan-out thread only
+  private TopicJournals journals;
+
+  // null unless sequencing, fan-out thread only
+  private RetransmitWindow window;
+
+  // replays in progress, fan-out thread only
+  private final List<Replay> replays = new ArrayList<>();
+
+  // work handed over to the fan-out thread
+  private final ManyToOneConcurrentLinkedQueue<Runnable> tasks = new ManyToOneConcurrentLinkedQueue<>();
+
+  // endpoints announced by the sessions, see DestinationMode.MANUAL
+  private final Map<FanOutSession, String> endpoints = new ConcurrentHashMap<>();
+
+  // published messages not handled by the fan-out yet
+  private volatile int pending;
+
+  // wakes the fan-out thread up should it wait for a full local session
+  private volatile boolean stopped;
+
+  FanOut(MessageCodec codec) {
+    this(codec, Batching.none());
+  }
+
+  FanOut(MessageCodec codec, Batching batching) {
+    this.codec = codec;
+    this.batching = batching;
+  }
+
+  /**
+   * Switches to publishing on a dedicated Aeron stream per topic group. Has to be called before any message is
+   * published.
+   *
+   * @param aeron aeron client.
+   * @param channel publication channel, see {@link TopicStreams#channel(String, int)}.
+   * @param ipcChannel channel to publish on for co-located clients as well, {@code null} for none.
+   * @param topicGroup maps a qualifier to its topic group.
+   * @param maxStreams streams open at most.
+   * @param idleTimeoutNanos time without a message after which a stream is closed.
+   */
+  void topicStreams(Aeron aeron, String channel, String ipcChannel, Function<String, String> topicGroup,
+      int maxStreams, long idleTimeoutNanos) {
+    this.topicStreams = new TopicStreams(aeron, channel, ipcChannel, codec, batching, topicGroup, this::advertise,
+        maxStreams, idleTimeoutNanos);
+  }
+
+  /**
+   * Conflates messages of given topics in every session: a session keeps only the newest pending message per qualifier
+   * and stream id, see {@link ConflatingQueue}. Has to be called before any session is created.
+   *
+   * @param topics topic patterns, see {@link TopicTrie}.
+   */
+  void conflate(String... topics) {
+    this.conflated = TopicFilter.of(topics).qualifiers();
+  }
+
+  /**
+   * Keeps the newest message per qualifier and stream id of given topics and sends the matching ones to every session
+   * subscribing, see {@link LastValueCache}. Has to be called before any message is published.
+   *
+   * @param topics topic patterns, see {@link TopicTrie}.
+   */
+  void lastValueCache(String... topics) {
+    this.lastValues = new LastValueCache(TopicFilter.of(topics), LastValueCache.INITIAL_CAPACITY);
+  }
+
+  /**
+   * Journals messages of given topics and serves replays from the journals. Has to be called before any message is
+   * published.
+   *
+   * @param journaling journaling settings.
+   * @param topics topic patterns, see {@link TopicTrie}.
+   */
+  void journal(Journaling journaling, String... topics) {
+    this.journals = new TopicJournals(journaling, TopicFilter.of(topics));
+  }
+
+  /**
+   * Compacts the journals of given topics in the background and bootstraps the sessions subscribing from them. Has to
+   * be called after {@link #journal(Journaling, String...)}, before any message is published.
+   *
+   * @param topics topic patterns, see {@link TopicTrie}.
+   */
+  void compact(String... topics) {
+    journals.compact(TopicFilter.of(topics), tasks::offer);
+  }
+
+  /**
+   * Stamps messages of given topics with a per-qualifier sequence and keeps the last ones of each qualifier for
+   * resuming sessions. Has to be called before any message is published.
+   *
+   * @param retransmitWindow messages kept per qualifier.
+   * @param topics topic patterns, see {@link TopicTrie}.
+   */
+  void sequence(int retransmitWindow, String... topics) {
+    sequence(retransmitWindow, RetransmitWindow.DEFAULT_MAX_BYTES, topics);
+  }
+
+  /**
+   * Stamps messages of given topics with a per-qualifier sequence and keeps the last ones of the qualifiers published
+   * most recently, up to given bytes, for resuming sessions. Has to be called before any message is published.
+   *
+   * @param retransmitWindow messages kept per qualifier.
+   * @param retransmitWindowBytes bytes of messages kept for all qualifiers.
+   * @param topics topic patterns, see {@link TopicTrie}.
+   */
+  void sequence(int retransmitWindow, long retransmitWindowBytes, String... topics) {
+    this.window = new RetransmitWindow(TopicFilter.of(topics), retransmitWindow, retransmitWindowBytes);
+  }
+
+  FanOutSession newSession() {
+    FanOutSession session = new FanOutSession(this, conflated != null);
+    addSession(session);
+    TopicStreams streams = topicStreams;
+    if (streams != null) {
+      // assignments made before the session was added, later ones are broadcast to it; a duplicate is harmless
+      for (Map.Entry<String, Integer> assignment : streams.assignments().entrySet()) {
+        offerControl(session, ControlMessages.stream(TopicStreams.qualifierOf(assignment.getKey()),
+            assignment.getValue()));
+      }
+    }
+    return session;
+  }
+
+  void removeSession(FanOutSession session) {
+    router.remove(session);
+    synchronized (this) {
+      sessions = ArrayUtil.remove(sessions, session);
+    }
+    String endpoint = endpoints.remove(session);
+    if (endpoint != null) {
+      topicStreams.removeDestination(endpoint);
+    }
+  }
+
+  /**
+   * Creates a session for a client in the same JVM, see {@link LocalTransport}.
+   *
+   * @param capacity capacity of the session's queue.
+   * @return new session.
+   */
+  LocalSession newLocalSession(int capacity) {
+    LocalSession session = new LocalSession(this, capacity);
+    synchronized (this) {
+      localSessions = ArrayUtil.add(localSessions, session);
+    }
+    return session;
+  }
+
+  void removeSession(LocalSession session) {
+    localRouter.remove(session);
+    synchronized (this) {
+      localSessions = ArrayUtil.remove(localSessions, session);
+    }
+  }
+
+  private boolean isActive(FanOutSession session) {
+    for (FanOutSession s : sessions) {
+      if (s == session) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean isActive(LocalSession session) {
+    for (LocalSession s : localSessions) {
+      if (s == session) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean hasSessions() {
+    return sessions.length > 0 || localSessions.length > 0;
+  }
+
+  /**
+   * Returns the client endpoints the topic streams are sent to, see {@link DestinationMode#MANUAL}.
+   *
+   * @return endpoints, empty without topic streams.
+   */
+  Set<String> destinations() {
+    TopicStreams streams = topicStreams;
+    return streams == null ? Collections.emptySet() : streams.destinations();
+  }
+
+  /**
+   * Counts a message about to be published.
+   */
+  void acquire() {
+    PENDING.incrementAndGet(this);
+  }
+
+  /**
+   * Counts a message about to be published unless the fan-out is too far behind.
+   *
+   * @param maxPendingMessages bound for the pending messages plus the backlog of the slowest session.
+   * @return {@code true} if the message may be published.
+   */
+  boolean tryAcquire(int maxPendingMessages) {
+    int backlog = 0;
+    for (FanOutSession session : sessions) {
+      backlog = Math.max(backlog, session.backlog());
+    }
+    int room = Integer.MAX_VALUE;
+    for (LocalSession session : localSessions) {
+      backlog = Math.max(backlog, session.backlog());
+      room = Math.min(room, session.remaining());
+    }
+    for (;;) {
+      int current = pending;
+      if (current + backlog >= maxPendingMessages || current >= room) {
+        return false;
+      }
+      if (PENDING.compareAndSet(this, current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Uncounts a message acquired but not published after all.
+   */
+  void release() {
+    PENDING.decrementAndGet(this);
+  }
+
+  /**
+   * Tells whether the queue of a local session is full, see {@link TopicPublisher#next(PubSubMessage)}.
+   *
+   * @return {@code true} if a local session has no room left.
+   */
+  boolean isLocalSessionFull() {
+    for (LocalSession session : localSessions) {
+      if (session.remaining() == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Stops waiting for full local sessions, called as the {@link PublishQueue} closes so that its drain thread can end.
+   */
+  void stop() {
+    stopped = true;
+  }
+
+  boolean isStopped() {
+    return stopped;
+  }
+
+  private synchronized void addSession(FanOutSession session) {
+    sessions = ArrayUtil.add(sessions, session);
+  }
+
+  private void advertise(String qualifier, int streamId) {
+    for (FanOutSession session : sessions) {
+      offerControl(session, ControlMessages.stream(qualifier, streamId));
+    }
+  }
+
+  private void offerControl(FanOutSession session, PubSubMessage message) {
+    try {
+      ByteBuf encoded = codec.encode(message, ALLOCATOR);
+      // the replay in newSession and the broadcast from the fan-out thread may race; sessions take a single producer
+      synchronized (session) {
+        session.offer(encoded);
+      }
+    } catch (MessageCodecException e) {
+      // already logged by the codec
+    }
+  }
+
+  /**
+   * Handles a request received from the client of given session.
+   *
+   * @param session session the request came from.
+   * @param frame encoded request.
+   */
+  void onRequest(FanOutSession session, ByteBuffer frame) {
+    PubSubMessage request;
+    try {
+      request = codec.decode(Unpooled.wrappedBuffer(frame));
+    } catch (MessageCodecException e) {
+      return;
+    }
+    if (ControlMessages.is(request, ControlMessages.ENDPOINT_QUALIFIER)) {
+      onEndpoint(session, ControlMessages.endpoint(request));
+    } else if (lastValues != null || journals != null || ControlMessages.isReplay(request)
+        || ControlMessages.is(request, ControlMessages.RESUME_FROM_QUALIFIER)) {
+      tasks.offer(() -> onTask(session, request));
+    } else {
+      onRequest(router, session, request, this::isActive);
+    }
+  }
+
+  // requests ordered with the published messages
+  private void onTask(FanOutSession session, PubSubMessage request) {
+    if (ControlMessages.isReplay(request)) {
+      startReplay(session, request);
+    } else if (ControlMessages.is(request, ControlMessages.RESUME_FROM_QUALIFIER)) {
+      resume(session, ControlMessages.topic(request, ControlMessages.RESUME_FROM_QUALIFIER),
+          ControlMessages.lastSequence(request));
+    } else if (ControlMessages.is(request, ControlMessages.SUBSCRIBE_QUALIFIER)) {
+      String topic = ControlMessages.topic(request, ControlMessages.SUBSCRIBE_QUALIFIER);
+      Journal[] compacted = journals != null ? journals.compacted(topic) : null;
+      if (compacted != null && compacted.length > 0) {
+        replays.add(Replay.bootstrap(session, topic, compacted));
+      } else if (lastValues != null) {
+        subscribeWithSnapshot(session, topic);
+      } else {
+        onRequest(router, session, request, this::isActive);
+      }
+    } else {
+      if (ControlMessages.is(request, ControlMessages.UNSUBSCRIBE_QUALIFIER)) {
+        String topic = ControlMessages.topic(request, ControlMessages.UNSUBSCRIBE_QUALIFIER);
+        replays.removeIf(replay -> replay.session == session && Objects.equals(topic, replay.topic));
+      }
+      onRequest(router, session, request, this::isActive);
+    }
+  }
+
+  /**
+   * Subscribes a session unless it is gone.
+   *
+   * @return {@code false} if the session is gone.
+   */
+  private boolean subscribe(FanOutSession session, String topic) {
+    return subscribe(router, session, topic, this::isActive);
+  }
+
+  private static <S> boolean subscribe(TopicRouter<S> router, S session, String topic, Predicate<S> isActive) {
+    if (!isActive.test(session)) {
+      return false;
+    }
+    router.subscribe(session, topic);
+    if (!isActive.test(session)) {
+      // removed meanwhile, before the subscription it would have cleared
+      router.remove(session);
+      return false;
+    }
+    return true;
+  }
+
+  private void subscribeWithSnapshot(FanOutSession session, String topic) {
+    if (!subscribe(session, topic)) {
+      return;
+    }
+    TopicFilter filter = topic == null ? TopicFilter.of() : TopicFilter.of(topic);
+    synchronized (session) {
+      // whatever is batched was published before
+      session.flushBatch();
+      int count = lastValues.snapshot(filter, session::offer);
+      offerControl(session, ControlMessages.snapshot(topic, count));
+    }
+  }
+
+  private void resume(FanOutSession session, String topic, long lastSequence) {
+    if (!subscribe(session, topic)) {
+      return;
+    }
+    synchronized (session) {
+      // whatever is batched was published before
+      session.flushBatch();
+      boolean resumed = window != null && window.accepts(topic)
+          && window.retransmit(topic, lastSequence, session::offer);
+      if (!resumed) {
+        LOGGER.warn("Can't resume {} after sequence {}, messages left the retransmit window", topic, lastSequence);
+      }
+      offerControl(session, ControlMessages.resumed(topic, resumed ? window.nextSequence(topic) : -1));
+    }
+  }
+
+  private void startReplay(FanOutSession session, PubSubMessage request) {
+    String topic = ControlMessages.replayTopic(request);
+    Journal journal = journals != null ? journals.journal(topic) : null;
+    if (journal == null) {
+      LOGGER.warn("Topic {} is not journaled, nothing to replay", topic);
+      if (subscribe(session, topic)) {
+        offerControl(session, ControlMessages.replayed(topic, -1));
+      }
+      return;
+    }
+    long from = request.streamId() == null ? 0 : request.streamId();
+    long offset = ControlMessages.is(request, ControlMessages.REPLAY_SINCE_QUALIFIER)
+        ? journal.offsetOf(from)
+        : Math.min(Math.max(from, journal.firstOffset()), journal.nextOffset());
+    replays.add(Replay.of(session, topic, journal, offset));
+  }
+
+  /**
+   * Replays each replay in progress up to the end of its journals, chunk after chunk, unless its session's backlog
+   * fills up first, subscribing the sessions whose replay has caught up. Nothing is appended meanwhile, so a replay
+   * catches up within a round as soon as its session keeps up, however fast messages are published.
+   *
+   * @return number of offsets replayed, records or gaps left by compaction.
+   */
+  private int advanceReplays() {
+    int count = 0;
+    for (Iterator<Replay> it = replays.iterator(); it.hasNext(); ) {
+      Replay replay = it.next();
+      FanOutSession session = replay.session;
+      if (!isActive(session)) {
+        it.remove();
+        continue;
+      }
+      // journals caught up with go on being appended to while the others are replayed, until all have caught up
+      int behind = replay.behind();
+      while (behind >= 0 && session.backlog() < REPLAY_MAX_BACKLOG) {
+        long from = replay.offsets[behind];
+        synchronized (session) {
+          // whatever is batched was published before
+          session.flushBatch();
+          replay.offsets[behind] = replay.journals[behind].read(from, REPLAY_CHUNK, replay);
+        }
+        count += (int) (replay.offsets[behind] - from);
+        behind = replay.behind();
+      }
+      if (behind < 0) {
+        it.remove();
+        if (subscribe(session, replay.topic)) {
+          offerControl(session, replay.marker());
+        }
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Runs the work handed over to the fan-out thread, offers the frames parked with back-pressured topic streams again
+   * and advances the replays, called from the {@link PublishQueue} drain thread only.
+   *
+   * @return amount of work done.
+   */
+  int runTasks() {
+    TopicStreams streams = topicStreams;
+    int count = streams != null ? streams.retryParked() + streams.closeIdle(System.nanoTime()) : 0;
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      task.run();
+      count++;
+    }
+    return replays.isEmpty() ? count : count + advanceReplays();
+  }
+
+  private void onEndpoint(FanOutSession session, String endpoint) {
+    TopicStreams streams = topicStreams;
+    if (streams == null) {
+      LOGGER.warn("Ignored endpoint {}, topic streams are off", endpoint);
+      return;
+    }
+    String previous = endpoints.put(session, endpoint);
+    streams.addDestination(endpoint);
+    if (previous != null) {
+      streams.removeDestination(previous);
+    }
+    // the session may have gone away meanwhile, after removeSession looked for its endpoint
+    if (!isActive(session) && endpoints.remove(session, endpoint)) {
+      streams.removeDestination(endpoint);
+    }
+  }
+
+  /**
+   * Handles a request of a client in the same JVM.
+   *
+   * @param session session of the client.
+   * @param request request as sent.
+   */
+  void onRequest(LocalSession session, PubSubMessage request) {
+    if (ControlMessages.isReplay(request)) {
+      // nothing is journaled in the form local sessions take, they get the live messages only
+      subscribe(localRouter, session, ControlMessages.replayTopic(request), this::isActive);
+    } else if (ControlMessages.is(request, ControlMessages.RESUME_FROM_QUALIFIER)) {
+      // a local session doesn't outlive the server, there is nothing to resume
+      subscribe(localRouter, session, ControlMessages.topic(request, ControlMessages.RESUME_FROM_QUALIFIER),
+          this::isActive);
+    } else {
+      onRequest(localRouter, session, request, this::isActive);
+    }
+  }
+
+  private static <S> void onRequest(TopicRouter<S> router, S session, PubSubMessage request, Predicate<S> isActive) {
+    if (ControlMessages.is(request, ControlMessages.SUBSCRIBE_QUALIFIER)) {
+      // a request may come in after its session has been removed, which would leave it in the router
+      subscribe(router, session, ControlMessages.topic(request, ControlMessages.SUBSCRIBE_QUALIFIER), isActive);
+    } else if (ControlMessages.is(request, ControlMessages.UNSUBSCRIBE_QUALIFIER)) {
+      router.unsubscribe(session, ControlMessages.topic(request, ControlMessages.UNSUBSCRIBE_QUALIFIER));
+    } else {
+      LOGGER.warn("Unknown request: {}", request);
+    }
+  }
+
+  /**
+   * Delivers a published message, called from the {@link PublishQueue} drain thread only.
+   *
+   * @param message published message.
+   */
+  void onMessage(PubSubMessage message) {
+    try {
+      fanOut(message);
+    } finally {
+      PENDING.decrementAndGet(this);
+    }
+  }
+
+  private void fanOut(PubSubMessage published) {
+    boolean sequenced = window != null && window.accepts(published.qualifier());
+    PubSubMessage message = sequenced
+        ? PubSubMessage.from(published).sequence(window.next(published.qualifier())).build()
+        : published;
+
+    for (LocalSession session : localRouter.route(message.qualifier())) {
+      session.offer(message);
+    }
+
+    FanOutSession[] targets = router.route(message.qualifier());
+    // cached, journaled and sequenced messages are encoded even if nobody listens yet, for the sessions to come
+    boolean cached = lastValues != null && lastValues.accepts(message.qualifier());
+    boolean journaled = journals != null && journals.accepts(message.qualifier());
+    if (targets.length == 0 && !cached && !journaled && !sequenced) {
+      return;
+    }
+
+    if (topicStreams != null && !cached && !journaled && !sequenced) {
+      try {
+        topicStreams.publish(message);
+      } catch (MessageCodecException e) {
+        // already logged by the codec
+      }
+      return;
+    }
+
+    ByteBuf encoded;
+    try {
+      encoded = codec.encode(message, ALLOCATOR);
+    } catch (MessageCodecException e) {
+      // already logged by the codec, the message can't be delivered to anyone
+      return;
+    }
+
+    try {
+      if (cached) {
+        lastValues.put(message, encoded);
+      }
+      if (journaled) {
+        journals.append(message, encoded);
+      }
+      if (sequenced) {
+        window.put(message.qualifier(), message.sequence(), encoded);
+      }
+      if (topicStreams != null) {
+        if (targets.length > 0) {
+          topicStreams.publish(message, encoded);
+        }
+      } else if (isConflated(message.qualifier())) {
+        for (FanOutSession session : targets) {
+          session.offerConflated(encoded.retainedSlice(), message);
+        }
+      } else if (batching.isEnabled()) {
+        for (FanOutSession session : targets) {
+          session.offerBatched(encoded, batching.maxBatchLength());
+        }
+      } else {
+        for (FanOutSession session : targets) {
+          session.offer(encoded.retainedSlice());
+        }
+      }
+    } finally {
+      encoded.release();
+    }
+  }
+
+  private boolean isConflated(String qualifier) {
+    TopicFilter.QualifierMatcher matcher = conflated;
+    return matcher != null && matcher.accepts(qualifier);
+  }
+
+  /**
+   * Closes the journals, once the {@link PublishQueue} drain thread has stopped.
+   */
+  void close() {
+    if (journals != null) {
+      journals.close();
+    }
+  }
+
+  /**
+   * Sends the open batches that have waited long enough, called from the {@link PublishQueue} drain thread after each
+   * drain.
+   *
+   * @return number of batches sent.
+   */
+  int flushBatches() {
+    if (!batching.isEnabled()) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    int flushed = 0;
+    for (FanOutSession session : sessions) {
+      flushed += session.flushBatch(now, batching.lingerNanos());
+    }
+    TopicStreams streams = topicStreams;
+    if (streams != null) {
+      flushed += streams.flushBatches(now);
+    }
+    return flushed;
+  }
+
+  /**
+   * Replay of journals to a session in progress, hands the records read over to the session. Either the replay of one
+   * journal asked for, or the bootstrap of a subscription from the compacted journals of the qualifiers it matches.
+   */
+  private static final class Replay implements Journal.RecordHandler {
+
+    private final FanOutSession session;
+    private final String topic;
+    private final Journal[] journals;
+    private final long[] offsets;
+    private final boolean bootstrap;
+    private long records;
+
+    private Replay(FanOutSession session, String topic, Journal[] journals, long[] offsets, boolean bootstrap) {
+      this.session = session;
+      this.topic = topic;
+      this.journals = journals;
+      this.offsets = offsets;
+      this.bootstrap = bootstrap;
+    }
+
+    private static Replay of(FanOutSession session, String topic, Journal journal, long offset) {
+      return new Replay(session, topic, new Journal[] {journal}, new long[] {offset}, false);
+    }
+
+    private static Replay bootstrap(FanOutSession session, String topic, Journal[] journals) {
+      long[] offsets = new long[journals.length];
+      for (int i = 0; i < journals.length; i++) {
+        offsets[i] = journals[i].firstOffset();
+      }
+      return new Replay(session, topic, journals, offsets, true);
+    }
+
+    /**
+     * Returns the first journal not replayed up to its end.
+     *
+     * @return journal index, {@code -1} once all have been replayed.
+     */
+    private int behind() {
+      for (int i = 0; i < journals.length; i++) {
+        if (offsets[i] < journals[i].nextOffset()) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private PubSubMessage marker() {
+      return bootstrap
+          ? ControlMessages.snapshot(topic, (int) Math.min(Integer.MAX_VALUE, records))
+          : ControlMessages.replayed(topic, offsets[0]);
+    }
+
+    @Override
+    public void onRecord(long offset, long timestamp, long key, DirectBuffer buffer, int index, int length) {
+      ByteBuf copy = Unpooled.buffer(length, length);
+      buffer.getBytes(index, copy.array(), copy.arrayOffset(), length);
+      copy.writerIndex(length);
+      session.offer(copy);
+      records++;
+    }
+  }
+}
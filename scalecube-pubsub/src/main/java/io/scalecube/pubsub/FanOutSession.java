@@ -0,0 +1,240 @@
+package io.scalecube.pubsub;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.scalecube.pubsub.codec.MessageBatch;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Outbound side of a single connection served by {@link FanOut}.
+ *
+ * <p>Queues the encoded slices handed over by the fan-out and emits them as {@link ByteBuffer}s honouring the
+ * downstream demand. Each slice is released right after it has been emitted. The transport may hold on to the emitted
+ * buffer longer, e.g. queue it until the publication takes it, which is safe because the fan-out encodes into unpooled
+ * heap buffers, see {@link FanOut#ALLOCATOR}: a released buffer's memory is never handed out again.
+ *
+ * <p>With {@link Batching} on, the fan-out appends messages to the session's open batch instead, which is queued as a
+ * single buffer once full or flushed.
+ *
+ * <p>With conflation on, the session queues into a {@link ConflatingQueue} instead, where a message of a conflated topic
+ * replaces the pending message of the same qualifier and stream id: a slow client skips intermediate values and its
+ * backlog is bounded by the number of keys rather than the publish rate.
+ */
+final class FanOutSession {
+
+  private static final AtomicIntegerFieldUpdater<FanOutSession> WIP =
+      AtomicIntegerFieldUpdater.newUpdater(FanOutSession.class, "wip");
+
+  private static final AtomicIntegerFieldUpdater<FanOutSession> BACKLOG =
+      AtomicIntegerFieldUpdater.newUpdater(FanOutSession.class, "backlog");
+
+  private final FanOut fanOut;
+
+  private final Queue<ByteBuf> queue;
+
+  // null unless conflating, replaces queue then
+  private final ConflatingQueue conflatingQueue;
+
+  private volatile FluxSink<ByteBuffer> sink;
+
+  private volatile boolean disposed;
+
+  private volatile int wip;
+
+  private volatile int backlog;
+
+  // open batch and when it got its first message, fan-out thread only
+  private ByteBuf batch;
+  private long batchStartNanos;
+
+  FanOutSession(FanOut fanOut) {
+    this(fanOut, false);
+  }
+
+  /**
+   * Creates a session.
+   *
+   * @param fanOut fan-out the session is registered with.
+   * @param conflating whether to conflate messages offered through {@link #offerConflated}.
+   */
+  FanOutSession(FanOut fanOut, boolean conflating) {
+    this.fanOut = fanOut;
+    this.conflatingQueue = conflating ? new ConflatingQueue() : null;
+    this.queue = conflating ? null : Queues.<ByteBuf>unbounded().get();
+  }
+
+  boolean isConflating() {
+    return conflatingQueue != null;
+  }
+
+  /**
+   * Returns the stream of encoded messages to be written to this session's outbound.
+   *
+   * @return flux of buffers, views of buffers that are never reused, see {@link FanOut#ALLOCATOR}.
+   */
+  Flux<ByteBuffer> outbound() {
+    return Flux.create(sink -> {
+      this.sink = sink;
+      sink.onRequest(n -> drain());
+      sink.onDispose(this::dispose);
+      drain();
+    }, FluxSink.OverflowStrategy.IGNORE);
+  }
+
+  /**
+   * Returns the number of messages queued but not written yet.
+   *
+   * @return queued messages.
+   */
+  int backlog() {
+    return backlog;
+  }
+
+  /**
+   * Enqueues a retained slice of an encoded message. Ownership of the slice passes to this session.
+   *
+   * @param slice retained slice of the encoded message.
+   */
+  void offer(ByteBuf slice) {
+    if (disposed) {
+      slice.release();
+      return;
+    }
+    BACKLOG.incrementAndGet(this);
+    if (conflatingQueue != null) {
+      conflatingQueue.offer(slice);
+    } else {
+      queue.offer(slice);
+    }
+    drain();
+  }
+
+  /**
+   * Enqueues a retained slice of an encoded message, replacing the pending message of the same qualifier and stream id
+   * if there is one. Requires a conflating session.
+   *
+   * @param slice retained slice of the encoded message.
+   * @param message the message encoded in the slice.
+   */
+  void offerConflated(ByteBuf slice, PubSubMessage message) {
+    if (disposed) {
+      slice.release();
+      return;
+    }
+    // whatever is batched was published before
+    flushBatch();
+    if (conflatingQueue.offer(slice, message.qualifier(), message.streamId())) {
+      BACKLOG.incrementAndGet(this);
+    }
+    drain();
+  }
+
+  /**
+   * Appends an encoded message to the open batch, flushing it first if the message doesn't fit anymore. Messages too
+   * big for any batch are queued on their own.
+   *
+   * @param encoded encoded message, not released by this method.
+   * @param maxBatchLength maximum batch length.
+   */
+  void offerBatched(ByteBuf encoded, int maxBatchLength) {
+    int length = encoded.readableBytes();
+    if (!MessageBatch.fits(length, maxBatchLength)) {
+      flushBatch();
+      offer(encoded.retainedSlice());
+      return;
+    }
+    if (batch != null && batch.writableBytes() < MessageBatch.LENGTH_PREFIX + length) {
+      flushBatch();
+    }
+    if (batch == null) {
+      // heap buffer: a batch still open when the session goes away is left to the GC
+      batch = Unpooled.buffer(maxBatchLength, maxBatchLength);
+      batch.writeByte(MessageBatch.BATCH_MARKER);
+      batchStartNanos = System.nanoTime();
+    }
+    batch.writeShortLE(length);
+    batch.writeBytes(encoded, encoded.readerIndex(), length);
+  }
+
+  /**
+   * Queues the open batch if it has waited long enough.
+   *
+   * @param nowNanos current {@link System#nanoTime()}.
+   * @param lingerNanos how long a batch may stay open.
+   * @return {@code 1} if a batch was queued, {@code 0} otherwise.
+   */
+  int flushBatch(long nowNanos, long lingerNanos) {
+    if (batch == null || nowNanos - batchStartNanos < lingerNanos) {
+      return 0;
+    }
+    flushBatch();
+    return 1;
+  }
+
+  /**
+   * Queues the open batch, if any.
+   */
+  void flushBatch() {
+    ByteBuf b = batch;
+    if (b != null) {
+      batch = null;
+      offer(b);
+    }
+  }
+
+  private void dispose() {
+    disposed = true;
+    fanOut.removeSession(this);
+    drain();
+  }
+
+  private void drain() {
+    if (WIP.getAndIncrement(this) != 0) {
+      return;
+    }
+    int missed = 1;
+    for (;;) {
+      if (disposed) {
+        clear();
+      } else {
+        FluxSink<ByteBuffer> s = sink;
+        if (s != null) {
+          long r = s.requestedFromDownstream();
+          while (r-- > 0) {
+            ByteBuf slice = poll();
+            if (slice == null) {
+              break;
+            }
+            BACKLOG.decrementAndGet(this);
+            try {
+              s.next(slice.nioBuffer());
+            } finally {
+              slice.release();
+            }
+          }
+        }
+      }
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+
+  private ByteBuf poll() {
+    return conflatingQueue != null ? conflatingQueue.poll() : queue.poll();
+  }
+
+  private void clear() {
+    ByteBuf slice;
+    while ((slice = poll()) != null) {
+      BACKLOG.decrementAndGet(this);
+      slice.release();
+    }
+  }
+}
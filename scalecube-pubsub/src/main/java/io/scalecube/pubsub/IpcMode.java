@@ -0,0 +1,25 @@
+package io.scalecube.pubsub;
+
+/**
+ * Whether topic streams travel over {@code aeron:ipc} between a server and the clients attached to the same media
+ * driver, which spares them the loopback UDP stack. Remote clients always receive them over UDP.
+ */
+public enum IpcMode {
+
+  /**
+   * Servers publish on IPC as well when they are the only IPC publisher of their driver; clients use IPC when the
+   * server they connect to does so on their own driver, see {@link io.scalecube.pubsub.aeron.IpcRegistry}.
+   */
+  AUTO,
+
+  /**
+   * Like {@link #AUTO} for servers, but failing if another server already publishes on IPC; clients use IPC without
+   * checking, for a server known to share their driver.
+   */
+  ALWAYS,
+
+  /**
+   * UDP only.
+   */
+  NEVER
+}
@@ -0,0 +1,136 @@
+package io.scalecube.pubsub;
+
+import io.scalecube.pubsub.journal.Journal;
+import io.scalecube.pubsub.journal.Compactor;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Where and how the server journals published messages, see {@link PubSub.Builder#journal(Journaling, String...)}.
+ *
+ * <p>Each journaled qualifier gets a {@link Journal} of its own in a subdirectory of {@link #of(Path) the directory},
+ * made of segment files of {@link #segmentLength(int)} bytes with an index entry every {@link #indexInterval(int)}
+ * bytes. Longer segments mean fewer files and mappings, a shorter interval means faster lookups for a bigger index.
+ *
+ * <p>Journals of {@link PubSub.Builder#compact(String...) compacted} topics are compacted every
+ * {@link #compactionInterval(Duration)}, each pass collecting up to {@link #compactionKeys(int)} keys, see
+ * {@link Compactor}.
+ */
+public final class Journaling {
+
+  static final int DEFAULT_SEGMENT_LENGTH = 64 * 1024 * 1024;
+  static final int DEFAULT_INDEX_INTERVAL = 4096;
+  static final Duration DEFAULT_COMPACTION_INTERVAL = Duration.ofMinutes(1);
+  static final int DEFAULT_COMPACTION_KEYS = 256 * 1024;
+
+  private static final int MIN_SEGMENT_LENGTH = 64 * 1024;
+  private static final int MAX_SEGMENT_LENGTH = 1 << 30;
+
+  private final Path directory;
+  private final int segmentLength;
+  private final int indexInterval;
+  private final Duration compactionInterval;
+  private final int compactionKeys;
+
+  private Journaling(Path directory, int segmentLength, int indexInterval, Duration compactionInterval,
+      int compactionKeys) {
+    this.directory = directory;
+    this.segmentLength = segmentLength;
+    this.indexInterval = indexInterval;
+    this.compactionInterval = compactionInterval;
+    this.compactionKeys = compactionKeys;
+  }
+
+  /**
+   * Journals into given directory with 64 MB segments and an index entry every 4 KB, compacting every minute up to 256K
+   * keys at a time.
+   *
+   * @param directory root directory of the journals, created if needed.
+   * @return journaling settings.
+   */
+  public static Journaling of(Path directory) {
+    return new Journaling(Objects.requireNonNull(directory), DEFAULT_SEGMENT_LENGTH, DEFAULT_INDEX_INTERVAL,
+        DEFAULT_COMPACTION_INTERVAL, DEFAULT_COMPACTION_KEYS);
+  }
+
+  /**
+   * Sets the length of a segment file, which bounds the length of a message too.
+   *
+   * @param segmentLength length in bytes, between 64 KB and 1 GB.
+   * @return journaling settings.
+   */
+  public Journaling segmentLength(int segmentLength) {
+    if (segmentLength < MIN_SEGMENT_LENGTH || segmentLength > MAX_SEGMENT_LENGTH) {
+      throw new IllegalArgumentException("segmentLength must be between " + MIN_SEGMENT_LENGTH + " and "
+          + MAX_SEGMENT_LENGTH + ": " + segmentLength);
+    }
+    return new Journaling(directory, segmentLength, indexInterval, compactionInterval, compactionKeys);
+  }
+
+  /**
+   * Sets how many bytes of journal one index entry covers at most.
+   *
+   * @param indexInterval interval in bytes.
+   * @return journaling settings.
+   */
+  public Journaling indexInterval(int indexInterval) {
+    if (indexInterval <= 0) {
+      throw new IllegalArgumentException("indexInterval must be positive: " + indexInterval);
+    }
+    return new Journaling(directory, segmentLength, indexInterval, compactionInterval, compactionKeys);
+  }
+
+  /**
+   * Sets the delay between two compaction passes over the journals of compacted topics.
+   *
+   * @param compactionInterval positive delay.
+   * @return journaling settings.
+   */
+  public Journaling compactionInterval(Duration compactionInterval) {
+    if (compactionInterval.isNegative() || compactionInterval.isZero()) {
+      throw new IllegalArgumentException("compactionInterval must be positive: " + compactionInterval);
+    }
+    return new Journaling(directory, segmentLength, indexInterval, compactionInterval, compactionKeys);
+  }
+
+  /**
+   * Sets how many keys a compaction pass collects at most before rewriting segments, which bounds the heap it takes to
+   * 32 to 64 bytes per key. Journals with more keys take several passes.
+   *
+   * @param compactionKeys positive number of keys.
+   * @return journaling settings.
+   */
+  public Journaling compactionKeys(int compactionKeys) {
+    if (compactionKeys <= 0) {
+      throw new IllegalArgumentException("compactionKeys must be positive: " + compactionKeys);
+    }
+    return new Journaling(directory, segmentLength, indexInterval, compactionInterval, compactionKeys);
+  }
+
+  Path directory() {
+    return directory;
+  }
+
+  int segmentLength() {
+    return segmentLength;
+  }
+
+  int indexInterval() {
+    return indexInterval;
+  }
+
+  Duration compactionInterval() {
+    return compactionInterval;
+  }
+
+  int compactionKeys() {
+    return compactionKeys;
+  }
+
+  @Override
+  public String toString() {
+    return "Journaling{directory=" + directory + ", segmentLength=" + segmentLength + ", indexInterval="
+        + indexInterval + ", compactionInterval=" + compactionInterval + ", compactionKeys=" + compactionKeys + '}';
+  }
+}
@@ -0,0 +1,287 @@
+package io.scalecube.pubsub;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.agrona.BitUtil;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latest encoded message per qualifier and stream id, kept off-heap so the cache can hold millions of keys without
+ * weighing on the collector.
+ *
+ * <p>Records are appended to a direct buffer, each holding its key next to the encoded message:
+ *
+ * <pre>
+ *   int recordLength | int encodedLength | long streamId | int qualifierLength | qualifier | encoded message
+ * </pre>
+ *
+ * <p>A newer message overwrites the record of its key when it fits, otherwise the record is marked free and the message
+ * appended. Once the buffer is full, live records are copied into a new buffer, twice as large if they take more than
+ * half of it. The only heap structure is an open-addressing map of primitive longs from a 64-bit key hash to the record
+ * offset; colliding keys probe the following hashes, so a lookup always compares the stored key.
+ *
+ * <p>Not thread safe, used from the fan-out thread only.
+ */
+final class LastValueCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LastValueCache.class);
+
+  static final int INITIAL_CAPACITY = 1024 * 1024;
+
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private static final int RECORD_LENGTH_OFFSET = 0;
+  private static final int ENCODED_LENGTH_OFFSET = 4;
+  private static final int STREAM_ID_OFFSET = 8;
+  private static final int QUALIFIER_LENGTH_OFFSET = 16;
+  private static final int HEADER_LENGTH = 20;
+
+  private static final int FREE = -1;
+  private static final long NO_STREAM_ID = Long.MIN_VALUE;
+  private static final long MISSING = -1;
+
+  private static final int QUALIFIER_CACHE_CAPACITY = 4096;
+
+  private final TopicFilter.QualifierMatcher topics;
+
+  private final Long2LongHashMap index = new Long2LongHashMap(MISSING);
+
+  // utf-8 bytes of recent qualifiers, saves encoding them per message
+  private final Map<String, byte[]> qualifiers = new HashMap<>();
+
+  private UnsafeBuffer buffer;
+  private int limit;
+  private int size;
+
+  /**
+   * Creates a cache.
+   *
+   * @param topics topics to cache.
+   * @param initialCapacity initial buffer capacity in bytes.
+   */
+  LastValueCache(TopicFilter topics, int initialCapacity) {
+    this.topics = topics.qualifiers();
+    this.buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(BitUtil.align(initialCapacity, 8)));
+  }
+
+  boolean accepts(String qualifier) {
+    return topics.accepts(qualifier);
+  }
+
+  /**
+   * Returns the number of cached keys.
+   *
+   * @return number of keys.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Stores a message as the latest of its key.
+   *
+   * @param message message.
+   * @param encoded encoded message, not released by this method.
+   */
+  void put(PubSubMessage message, ByteBuf encoded) {
+    byte[] qualifier = qualifierBytes(message.qualifier());
+    long streamId = message.streamId() == null ? NO_STREAM_ID : message.streamId();
+    int encodedLength = encoded.readableBytes();
+
+    long hash = hash(qualifier, streamId);
+    long offset;
+    while ((offset = index.get(hash)) != MISSING) {
+      if (keyEquals((int) offset, qualifier, streamId)) {
+        break;
+      }
+      hash++;
+    }
+
+    if (offset != MISSING) {
+      int recordOffset = (int) offset;
+      if (HEADER_LENGTH + qualifier.length + encodedLength <= buffer.getInt(recordOffset + RECORD_LENGTH_OFFSET)) {
+        buffer.putInt(recordOffset + ENCODED_LENGTH_OFFSET, encodedLength);
+        writeEncoded(recordOffset, qualifier.length, encoded);
+        return;
+      }
+      buffer.putInt(recordOffset + ENCODED_LENGTH_OFFSET, FREE);
+      size--;
+    }
+
+    int recordLength = BitUtil.align(HEADER_LENGTH + qualifier.length + encodedLength, 8);
+    boolean rehashed = false;
+    if (limit + recordLength > buffer.capacity()) {
+      rehashed = compact(recordLength);
+      if (!rehashed) {
+        if (offset != MISSING) {
+          // the key loses its freed record rather than serving a stale value
+          rehash();
+        }
+        return;
+      }
+    }
+    int recordOffset = limit;
+    buffer.putInt(recordOffset + RECORD_LENGTH_OFFSET, recordLength);
+    buffer.putInt(recordOffset + ENCODED_LENGTH_OFFSET, encodedLength);
+    buffer.putLong(recordOffset + STREAM_ID_OFFSET, streamId);
+    buffer.putInt(recordOffset + QUALIFIER_LENGTH_OFFSET, qualifier.length);
+    buffer.putBytes(recordOffset + HEADER_LENGTH, qualifier);
+    writeEncoded(recordOffset, qualifier.length, encoded);
+    limit += recordLength;
+    size++;
+
+    if (offset != MISSING && !rehashed) {
+      // takes over the slot of the freed record
+      index.put(hash, recordOffset);
+    } else {
+      insert(qualifier, streamId, recordOffset);
+    }
+  }
+
+  /**
+   * Hands a copy of every cached message of given topics to {@code sink}.
+   *
+   * @param filter topics of interest.
+   * @param sink receives heap copies of the encoded messages, ownership passes on.
+   * @return number of messages handed out.
+   */
+  int snapshot(TopicFilter filter, Consumer<ByteBuf> sink) {
+    Map<String, Boolean> matches = new HashMap<>();
+    int count = 0;
+    for (int offset = 0; offset < limit; offset += buffer.getInt(offset + RECORD_LENGTH_OFFSET)) {
+      int encodedLength = buffer.getInt(offset + ENCODED_LENGTH_OFFSET);
+      if (encodedLength == FREE) {
+        continue;
+      }
+      int qualifierLength = buffer.getInt(offset + QUALIFIER_LENGTH_OFFSET);
+      String qualifier = buffer.getStringWithoutLengthUtf8(offset + HEADER_LENGTH, qualifierLength);
+      if (!matches.computeIfAbsent(qualifier, filter::matches)) {
+        continue;
+      }
+      ByteBuf copy = Unpooled.buffer(encodedLength, encodedLength);
+      buffer.getBytes(offset + HEADER_LENGTH + qualifierLength, copy.array(), copy.arrayOffset(), encodedLength);
+      copy.writerIndex(encodedLength);
+      sink.accept(copy);
+      count++;
+    }
+    return count;
+  }
+
+  private void writeEncoded(int recordOffset, int qualifierLength, ByteBuf encoded) {
+    int length = encoded.readableBytes();
+    ByteBuffer nioBuffer = encoded.nioBuffer(encoded.readerIndex(), length);
+    buffer.putBytes(recordOffset + HEADER_LENGTH + qualifierLength, nioBuffer, nioBuffer.position(), length);
+  }
+
+  private boolean keyEquals(int offset, byte[] qualifier, long streamId) {
+    if (buffer.getLong(offset + STREAM_ID_OFFSET) != streamId
+        || buffer.getInt(offset + QUALIFIER_LENGTH_OFFSET) != qualifier.length) {
+      return false;
+    }
+    for (int i = 0; i < qualifier.length; i++) {
+      if (buffer.getByte(offset + HEADER_LENGTH + i) != qualifier[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void insert(byte[] qualifier, long streamId, int recordOffset) {
+    long hash = hash(qualifier, streamId);
+    while (index.get(hash) != MISSING) {
+      hash++;
+    }
+    index.put(hash, recordOffset);
+  }
+
+  /**
+   * Copies the live records into a fresh buffer, growing it if they would fill more than half of it.
+   *
+   * @return {@code false} if a record of given length doesn't fit even into the largest buffer.
+   */
+  private boolean compact(int recordLength) {
+    int live = 0;
+    for (int offset = 0; offset < limit; offset += buffer.getInt(offset + RECORD_LENGTH_OFFSET)) {
+      if (buffer.getInt(offset + ENCODED_LENGTH_OFFSET) != FREE) {
+        live += buffer.getInt(offset + RECORD_LENGTH_OFFSET);
+      }
+    }
+    long required = (long) live + recordLength;
+    long capacity = buffer.capacity();
+    while (required * 2 > capacity && capacity < MAX_CAPACITY) {
+      capacity *= 2;
+    }
+    if (required > capacity) {
+      LOGGER.warn("Last value cache is full at {} bytes, dropping a message", capacity);
+      return false;
+    }
+
+    UnsafeBuffer compacted = new UnsafeBuffer(ByteBuffer.allocateDirect((int) Math.min(capacity, MAX_CAPACITY)));
+    int compactedLimit = 0;
+    for (int offset = 0; offset < limit; offset += buffer.getInt(offset + RECORD_LENGTH_OFFSET)) {
+      int length = buffer.getInt(offset + RECORD_LENGTH_OFFSET);
+      if (buffer.getInt(offset + ENCODED_LENGTH_OFFSET) != FREE) {
+        compacted.putBytes(compactedLimit, buffer, offset, length);
+        compactedLimit += length;
+      }
+    }
+    buffer = compacted;
+    limit = compactedLimit;
+    rehash();
+    LOGGER.debug("Compacted last value cache: {} keys in {} of {} bytes", size, limit, buffer.capacity());
+    return true;
+  }
+
+  private void rehash() {
+    index.clear();
+    byte[] qualifier = new byte[0];
+    for (int offset = 0; offset < limit; offset += buffer.getInt(offset + RECORD_LENGTH_OFFSET)) {
+      if (buffer.getInt(offset + ENCODED_LENGTH_OFFSET) == FREE) {
+        continue;
+      }
+      int qualifierLength = buffer.getInt(offset + QUALIFIER_LENGTH_OFFSET);
+      if (qualifier.length != qualifierLength) {
+        qualifier = new byte[qualifierLength];
+      }
+      buffer.getBytes(offset + HEADER_LENGTH, qualifier);
+      insert(qualifier, buffer.getLong(offset + STREAM_ID_OFFSET), offset);
+    }
+  }
+
+  private byte[] qualifierBytes(String qualifier) {
+    byte[] bytes = qualifiers.get(qualifier);
+    if (bytes == null) {
+      if (qualifiers.size() >= QUALIFIER_CACHE_CAPACITY) {
+        qualifiers.clear();
+      }
+      bytes = qualifier.getBytes(UTF_8);
+      qualifiers.put(qualifier, bytes);
+    }
+    return bytes;
+  }
+
+  /**
+   * FNV-1a over the qualifier bytes and the stream id, finished with the MurmurHash3 mixer.
+   */
+  private static long hash(byte[] qualifier, long streamId) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : qualifier) {
+      hash = (hash ^ b) * 0x100000001b3L;
+    }
+    hash = (hash ^ streamId) * 0x100000001b3L;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9a62b3fc5f3L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
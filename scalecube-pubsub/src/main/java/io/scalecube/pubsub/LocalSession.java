@@ -0,0 +1,180 @@
+package io.scalecube.pubsub;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.OneToOneConcurrentArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.ipc.aeron.AeronUtils;
+
+/**
+ * Session of a client living in the same JVM as the server, see {@link LocalTransport}.
+ *
+ * <p>The fan-out hands published {@link PubSubMessage}s over as they are, through a single-producer queue, so neither
+ * codec nor media driver is involved. They are emitted from a worker of the parallel scheduler honouring the
+ * downstream demand, which keeps a slow subscriber off the fan-out thread. The queue length counts as backlog towards
+ * {@link TopicPublisher#tryNext}, which holds publishers back while the session is behind, as it does for the sessions
+ * of remote clients.
+ *
+ * <p>The queue is bounded and nothing is dropped: {@link TopicPublisher#tryNext} refuses messages while they might not
+ * fit into the queue, {@link TopicPublisher#next} waits while the queue is full, and should the fan-out still find it
+ * full, it waits as well until the session has caught up or is gone.
+ *
+ * <p>The session is removed from the fan-out once the client {@link #close() closes} it or cancels its inbound.
+ */
+final class LocalSession {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LocalSession.class);
+
+  static final int DEFAULT_CAPACITY = 1024;
+
+  private static final AtomicIntegerFieldUpdater<LocalSession> WIP =
+      AtomicIntegerFieldUpdater.newUpdater(LocalSession.class, "wip");
+
+  private static final AtomicIntegerFieldUpdater<LocalSession> BACKLOG =
+      AtomicIntegerFieldUpdater.newUpdater(LocalSession.class, "backlog");
+
+  private final FanOut fanOut;
+
+  private final OneToOneConcurrentArrayQueue<PubSubMessage> queue;
+
+  private final Scheduler.Worker worker = Schedulers.parallel().createWorker();
+
+  private final Runnable drain = this::drain;
+
+  private volatile FluxSink<PubSubMessage> sink;
+
+  private volatile boolean disposed;
+
+  private volatile int wip;
+
+  private volatile int backlog;
+
+  /**
+   * Creates a local session.
+   *
+   * @param fanOut fan-out the session is registered with.
+   * @param capacity queue capacity, rounded up to a power of two.
+   */
+  LocalSession(FanOut fanOut, int capacity) {
+    this.fanOut = fanOut;
+    this.queue = new OneToOneConcurrentArrayQueue<>(capacity);
+  }
+
+  /**
+   * Returns the messages routed to this session.
+   *
+   * @return flux of published messages, shared with the publisher and other local sessions: don't modify them.
+   */
+  Flux<PubSubMessage> inbound() {
+    return Flux.create(sink -> {
+      this.sink = sink;
+      sink.onRequest(n -> schedule());
+      sink.onDispose(this::dispose);
+      schedule();
+    }, FluxSink.OverflowStrategy.IGNORE);
+  }
+
+  /**
+   * Handles a subscribe or unsubscribe request of the client.
+   *
+   * @param request control message.
+   */
+  void onRequest(PubSubMessage request) {
+    fanOut.onRequest(this, request);
+  }
+
+  int backlog() {
+    return backlog;
+  }
+
+  /**
+   * Returns the number of messages the queue has room for.
+   *
+   * @return free slots, 0 while the queue is full.
+   */
+  int remaining() {
+    return Math.max(0, queue.capacity() - backlog);
+  }
+
+  /**
+   * Completes the inbound and removes the session from the fan-out; messages still queued are dropped.
+   */
+  void close() {
+    FluxSink<PubSubMessage> s = sink;
+    if (s != null) {
+      s.complete();
+    }
+    dispose();
+  }
+
+  /**
+   * Enqueues a published message, waiting while the queue is full, called from the fan-out thread only. The message is
+   * left out once the session is disposed or the fan-out stopped meanwhile.
+   *
+   * @param message published message.
+   */
+  void offer(PubSubMessage message) {
+    if (disposed) {
+      return;
+    }
+    if (!queue.offer(message)) {
+      LOGGER.debug("Local session is {} messages behind, waiting for it", backlog);
+      IdleStrategy idle = AeronUtils.newBackoffIdleStrategy();
+      do {
+        if (disposed || fanOut.isStopped()) {
+          return;
+        }
+        idle.idle();
+      } while (!queue.offer(message));
+    }
+    BACKLOG.incrementAndGet(this);
+    schedule();
+  }
+
+  private void dispose() {
+    if (disposed) {
+      return;
+    }
+    disposed = true;
+    fanOut.removeSession(this);
+    // queued messages go with the session once the fan-out has let go of it
+    worker.dispose();
+  }
+
+  private void schedule() {
+    if (WIP.getAndIncrement(this) == 0) {
+      try {
+        worker.schedule(drain);
+      } catch (RejectedExecutionException e) {
+        // disposed meanwhile
+      }
+    }
+  }
+
+  private void drain() {
+    int missed = 1;
+    for (;;) {
+      FluxSink<PubSubMessage> s = sink;
+      if (!disposed && s != null) {
+        long r = s.requestedFromDownstream();
+        while (r-- > 0) {
+          PubSubMessage message = queue.poll();
+          if (message == null) {
+            break;
+          }
+          BACKLOG.decrementAndGet(this);
+          s.next(message);
+        }
+      }
+      missed = WIP.addAndGet(this, -missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+}
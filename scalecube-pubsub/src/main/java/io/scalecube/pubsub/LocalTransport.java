@@ -0,0 +1,86 @@
+package io.scalecube.pubsub;
+
+import io.scalecube.pubsub.codec.MessageCodec;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import reactor.core.publisher.UnicastProcessor;
+
+/**
+ * Servers of this JVM by the host and port they were started with, so that clients of the same JVM can skip codec and
+ * media driver: a client connecting to a registered server gets a {@link LocalSession} of its fan-out instead of an
+ * Aeron connection. Remote clients of the same server keep using Aeron.
+ */
+final class LocalTransport {
+
+  private static final Map<String, Server> SERVERS = new ConcurrentHashMap<>();
+
+  private LocalTransport() {}
+
+  /**
+   * Registers a server.
+   *
+   * @param host host the server listens on.
+   * @param port port the server listens on.
+   * @param server the server's fan-out.
+   */
+  static void bind(String host, int port, Server server) {
+    SERVERS.put(key(host, port), server);
+  }
+
+  static void unbind(String host, int port, Server server) {
+    SERVERS.remove(key(host, port), server);
+  }
+
+  /**
+   * Looks up a server of this JVM.
+   *
+   * @param host host the client connects to.
+   * @param port port the client connects to.
+   * @return server, {@code null} if not running in this JVM.
+   */
+  static Server lookup(String host, int port) {
+    return SERVERS.get(key(host, port));
+  }
+
+  private static String key(String host, int port) {
+    return host + ":" + port;
+  }
+
+  /**
+   * Server side of the local transport.
+   */
+  static final class Server {
+
+    private final FanOut fanOut;
+    private final int capacity;
+    private final Runnable onConnect;
+
+    /**
+     * Creates a local server.
+     *
+     * @param fanOut fan-out of the server.
+     * @param capacity queue capacity of each local session.
+     * @param onConnect called for every client connecting.
+     */
+    Server(FanOut fanOut, int capacity, Runnable onConnect) {
+      this.fanOut = fanOut;
+      this.capacity = capacity;
+      this.onConnect = onConnect;
+    }
+
+    /**
+     * Connects a client of this JVM.
+     *
+     * @param codec codec of the client, only used by flyweight listeners.
+     * @return subscriber of the client.
+     */
+    TopicSubscriber connect(MessageCodec codec) {
+      LocalSession session = fanOut.newLocalSession(capacity);
+      UnicastProcessor<PubSubMessage> requests = UnicastProcessor.create();
+      // the subscriber closing completes its requests
+      requests.subscribe(session::onRequest, error -> session.close(), session::close);
+      onConnect.run();
+      return TopicSubscriber.local(session.inbound(), codec, requests.sink());
+    }
+  }
+}
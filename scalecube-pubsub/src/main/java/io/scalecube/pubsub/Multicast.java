@@ -0,0 +1,99 @@
+package io.scalecube.pubsub;
+
+import io.aeron.ChannelUriStringBuilder;
+import io.scalecube.pubsub.aeron.Shared;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Objects;
+
+/**
+ * UDP multicast group carrying the topic streams, see {@link PubSub.Builder#multicast(Multicast)}.
+ *
+ * <p>The server sends every message of a topic group once, to the group address, whatever the number of clients;
+ * clients receive by joining the group. Topic groups are told apart by stream id, so one group address serves all
+ * topics of a server. The network between server and clients has to route multicast.
+ */
+public final class Multicast {
+
+  private final String group;
+  private final int port;
+  private final String networkInterface;
+  private final int ttl;
+
+  private Multicast(String group, int port, String networkInterface, int ttl) {
+    this.group = group;
+    this.port = port;
+    this.networkInterface = networkInterface;
+    this.ttl = ttl;
+  }
+
+  /**
+   * Multicast group on the default interface with the default TTL.
+   *
+   * @param group multicast address, e.g. {@code 224.0.1.1}.
+   * @param port UDP port.
+   * @return multicast settings.
+   */
+  public static Multicast of(String group, int port) {
+    try {
+      if (!InetAddress.getByName(Objects.requireNonNull(group)).isMulticastAddress()) {
+        throw new IllegalArgumentException("Not a multicast address: " + group);
+      }
+    } catch (UnknownHostException e) {
+      throw new IllegalArgumentException("Unknown multicast group: " + group, e);
+    }
+    if (port <= 0 || port > 0xFFFF) {
+      throw new IllegalArgumentException("Invalid port: " + port);
+    }
+    return new Multicast(group, port, null, 0);
+  }
+
+  /**
+   * Sends and receives on given interface instead of the one the OS picks.
+   *
+   * @param networkInterface address of the interface, optionally with a subnet mask, e.g. {@code 192.168.1.0/24}.
+   * @return multicast settings.
+   */
+  public Multicast networkInterface(String networkInterface) {
+    return new Multicast(group, port, Objects.requireNonNull(networkInterface), ttl);
+  }
+
+  /**
+   * Sets how many routers the server's datagrams may pass, {@code 0} keeps the OS default.
+   *
+   * @param ttl time to live, at most 255.
+   * @return multicast settings.
+   */
+  public Multicast ttl(int ttl) {
+    if (ttl < 0 || ttl > 255) {
+      throw new IllegalArgumentException("ttl must be between 0 and 255: " + ttl);
+    }
+    return new Multicast(group, port, networkInterface, ttl);
+  }
+
+  /**
+   * Builds the channel both the server's publications and the clients' subscriptions use.
+   *
+   * @return channel uri.
+   */
+  String channel() {
+    ChannelUriStringBuilder channel = new ChannelUriStringBuilder()
+        .media("udp")
+        .reliable(Boolean.TRUE)
+        .mtu(Shared.MTU)
+        .endpoint(group + ":" + port);
+    if (networkInterface != null) {
+      channel.networkInterface(networkInterface);
+    }
+    if (ttl > 0) {
+      channel.ttl(ttl);
+    }
+    return channel.build();
+  }
+
+  @Override
+  public String toString() {
+    return "Multicast{group=" + group + ", port=" + port + ", networkInterface=" + networkInterface + ", ttl=" + ttl
+        + '}';
+  }
+}
@@ -1,25 +1,165 @@
 package io.scalecube.pubsub;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.FluxProcessor;
-import reactor.core.publisher.FluxSink;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.TopicProcessor;
+import reactor.core.publisher.SynchronousSink;
+import reactor.core.publisher.UnicastProcessor;
 import reactor.ipc.aeron.client.AeronClient;
 import reactor.ipc.aeron.server.AeronServer;
+import io.scalecube.pubsub.aeron.AeronResources;
+import io.scalecube.pubsub.aeron.IdleStrategyPreset;
+import io.scalecube.pubsub.aeron.IpcRegistry;
+import io.scalecube.pubsub.aeron.MediaDriverProfile;
+import io.scalecube.pubsub.aeron.SharedMediaDriver;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageCodec;
 import io.scalecube.pubsub.codec.MessageCodecException;
-import io.scalecube.pubsub.codec.PubSubMessageCodec;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.IdleStrategy;
 
-public class PubSub {
+/**
+ * Publish/subscribe over Aeron: {@link #server} publishes topics to the clients connecting to it, {@link #client}
+ * connects and subscribes. An instance starts a fan-out thread when built and Aeron resources when first needed;
+ * {@link #close()} it to stop them.
+ */
+public class PubSub implements AutoCloseable {
 
-  private static final PubSubMessageCodec codec = new PubSubMessageCodec();
-  FluxProcessor<PubSubMessage, PubSubMessage> subject = TopicProcessor.<PubSubMessage>create().serialize();
-  FluxSink<PubSubMessage> sink = subject.sink();
+  private final MessageCodec codec;
+  private final FanOut fanOut;
+  private final PublishQueue publishQueue;
+  private final boolean topicStreams;
+  private final Multicast multicast;
+  private final DestinationMode destinationMode;
+  private final Function<String, String> topicGroup;
+  private final int maxTopicStreams;
+  private final long topicStreamIdleTimeoutNanos;
+  private final int maxPendingMessages;
+  private final Supplier<IdleStrategy> idleStrategy;
+  private final int eventLoops;
+  private final String aeronDirectoryName;
+  private final boolean externalMediaDriver;
+  private final MediaDriverProfile mediaDriverProfile;
+  private final IpcMode ipcMode;
+  private final boolean localTransport;
+  private final int localSessionCapacity;
+  private AeronResources aeronResources;
+  // holds the IPC registration for the lifetime of this instance
+  private IpcRegistry ipcRegistry;
+  private boolean topicStreamsPublishing;
+  private boolean closed;
+
+  private PubSub(Builder builder) {
+    this.codec = builder.codec;
+    this.topicStreams = builder.topicStreams || builder.multicast != null
+        || builder.destinationMode == DestinationMode.MANUAL;
+    this.multicast = builder.multicast;
+    this.destinationMode = builder.destinationMode;
+    this.topicGroup = builder.topicGroup;
+    this.maxTopicStreams = builder.maxTopicStreams;
+    this.topicStreamIdleTimeoutNanos = builder.topicStreamIdleTimeout.toNanos();
+    this.maxPendingMessages = builder.maxPendingMessages;
+    this.idleStrategy = builder.idleStrategy;
+    this.eventLoops = builder.eventLoops;
+    this.mediaDriverProfile = builder.mediaDriverProfile;
+    this.aeronDirectoryName = builder.aeronDirectoryName != null
+        ? builder.aeronDirectoryName
+        : mediaDriverProfile.aeronDirectoryName();
+    this.externalMediaDriver = builder.externalMediaDriver;
+    this.ipcMode = builder.ipcMode;
+    this.localTransport = builder.localTransport;
+    this.localSessionCapacity = builder.localSessionCapacity;
+    this.fanOut = new FanOut(codec, builder.batching);
+    if (builder.conflatedTopics != null) {
+      fanOut.conflate(builder.conflatedTopics);
+    }
+    if (builder.lastValueTopics != null) {
+      fanOut.lastValueCache(builder.lastValueTopics);
+    }
+    if (builder.sequencedTopics != null) {
+      fanOut.sequence(builder.retransmitWindow, builder.retransmitWindowBytes, builder.sequencedTopics);
+    }
+    if (builder.journaling != null) {
+      fanOut.journal(builder.journaling, builder.journaledTopics);
+      if (builder.compactedTopics != null) {
+        fanOut.compact(builder.compactedTopics);
+      }
+    }
+    this.publishQueue = new PublishQueue(fanOut, builder.publishQueueCapacity);
+    publishQueue.start();
+  }
+
+  synchronized AeronResources aeronResources() {
+    if (closed) {
+      throw new IllegalStateException("PubSub is closed");
+    }
+    if (aeronResources == null) {
+      SharedMediaDriver driver = externalMediaDriver
+          ? SharedMediaDriver.external(aeronDirectoryName)
+          : SharedMediaDriver.acquire(aeronDirectoryName, mediaDriverProfile::toContext);
+      aeronResources = AeronResources.start(driver, "pubsub", idleStrategy, eventLoops);
+    }
+    return aeronResources;
+  }
+
+  /**
+   * Starts publishing on the topic streams, over IPC as well if no other server does so through the same driver.
+   */
+  synchronized void publishOnTopicStreams(String host, int port) {
+    if (!topicStreamsPublishing) {
+      topicStreamsPublishing = true;
+      AeronResources resources = aeronResources();
+      String ipcChannel = null;
+      if (ipcMode != IpcMode.NEVER) {
+        ipcRegistry = IpcRegistry.register(aeronDirectoryName, port + 1);
+        if (ipcRegistry != null) {
+          ipcChannel = TopicStreams.IPC_CHANNEL;
+        } else if (ipcMode == IpcMode.ALWAYS) {
+          throw new IllegalStateException("Another server publishes on IPC through " + aeronDirectoryName);
+        }
+      }
+      String channel;
+      if (multicast != null) {
+        channel = multicast.channel();
+      } else if (destinationMode == DestinationMode.MANUAL) {
+        channel = TopicStreams.manualChannel(host, port + 1);
+      } else {
+        channel = TopicStreams.channel(host, port + 1);
+      }
+      fanOut.topicStreams(resources.aeron(), channel, ipcChannel, topicGroup, maxTopicStreams,
+          topicStreamIdleTimeoutNanos);
+    }
+  }
+
+  /**
+   * Picks the channel a client receives the topic streams on: IPC if the server publishes on it through the same
+   * driver.
+   */
+  String topicStreamsChannel(String host, int port, int clientPort) {
+    boolean ipc = ipcMode == IpcMode.ALWAYS
+        || ipcMode == IpcMode.AUTO && IpcRegistry.isRegistered(aeronDirectoryName, port + 1);
+    if (ipc) {
+      return TopicStreams.IPC_CHANNEL;
+    }
+    if (multicast != null) {
+      return multicast.channel();
+    }
+    return destinationMode == DestinationMode.MANUAL
+        ? TopicStreamSubscriptions.manualChannel(host, clientPort + 1)
+        : TopicStreamSubscriptions.channel(host, clientPort + 1, port + 1);
+  }
 
   public Mono<TopicSubscriber> client(String channel, String host, int port, int clientPort) {
+    LocalTransport.Server localServer = localTransport ? LocalTransport.lookup(host, port) : null;
+    if (localServer != null) {
+      return Mono.fromCallable(() -> localServer.connect(codec));
+    }
+
     CompletableFuture<TopicSubscriber> topicFuture = new CompletableFuture<>();
 
     AeronClient client = AeronClient.create(channel, options -> {
@@ -27,14 +167,28 @@ public class PubSub {
       options.clientChannel("aeron:udp?endpoint=" + host + ":" + clientPort);
     });
     client.newHandler((inbound, outbound) -> {
-      Flux<PubSubMessage> downstream = inbound.receive().map(bytes -> Unpooled.copiedBuffer(bytes)).map(byteBuf -> {
+      String streamsChannel = topicStreams ? topicStreamsChannel(host, port, clientPort) : null;
+      TopicStreamSubscriptions streams = topicStreams
+          ? new TopicStreamSubscriptions(aeronResources(), streamsChannel, codec)
+          : null;
+
+      UnicastProcessor<PubSubMessage> requests = UnicastProcessor.create();
+      if (streamsChannel != null && destinationMode == DestinationMode.MANUAL && multicast == null
+          && !TopicStreams.IPC_CHANNEL.equals(streamsChannel)) {
+        // ask the server to add us as a destination before anything else
+        requests.onNext(ControlMessages.endpoint(host + ":" + (clientPort + 1)));
+      }
+      Flux<PubSubMessage> outgoing = streams == null ? requests : requests.doOnNext(streams::onRequest);
+      outbound.send(outgoing.handle((PubSubMessage request, SynchronousSink<ByteBuffer> frames) -> {
         try {
-          return codec.decode(byteBuf);
+          frames.next(ControlMessages.encode(codec, request));
         } catch (MessageCodecException e) {
-          return PubSubMessage.error(e);
+          // already logged by the codec
         }
-      });
-      topicFuture.complete(new TopicSubscriber(downstream));
+      })).then().subscribe();
+
+      Flux<ByteBuffer> frames = streams == null ? inbound.receive() : streams.frames(inbound.receive());
+      topicFuture.complete(new TopicSubscriber(frames, codec, requests.sink()));
       return Mono.never();
     }).subscribe();
     return Mono.fromFuture(topicFuture);
@@ -42,26 +196,451 @@ public class PubSub {
 
   public Flux<TopicPublisher> server(String channel, String host, int port) {
     return Flux.create(emitter -> {
+      if (topicStreams) {
+        publishOnTopicStreams(host, port);
+      }
+      if (localTransport) {
+        LocalTransport.Server localServer = new LocalTransport.Server(fanOut, localSessionCapacity,
+            () -> emitter.next(publisher()));
+        LocalTransport.bind(host, port, localServer);
+        emitter.onDispose(() -> LocalTransport.unbind(host, port, localServer));
+      }
       AeronServer server = AeronServer.create(channel, options -> {
         options.serverChannel("aeron:udp?endpoint=" + host + ":" + port);
       });
 
       server.newHandler((inbound, outbound) -> {
-        outbound.send(subject.map(msg -> {
-          try {
-            return codec.encode(msg);
-          } catch (MessageCodecException e) {
-            return null;
-          }
-        }).map(buf -> ((ByteBuf) buf).nioBuffer())).then().subscribe();
-
-        emitter.next(new TopicPublisher(sink));
+        FanOutSession session = fanOut.newSession();
+        inbound.receive().subscribe(frame -> fanOut.onRequest(session, frame));
+        outbound.send(session.outbound()).then().subscribe();
+
+        emitter.next(publisher());
         return Mono.never();
       }).subscribe();
     });
   }
 
+  FanOut fanOut() {
+    return fanOut;
+  }
+
+  TopicPublisher publisher() {
+    return new TopicPublisher(publishQueue, fanOut, maxPendingMessages);
+  }
+
+  /**
+   * Stops the fan-out thread, then closes the Aeron client and event loops, releasing the media driver, withdraws the
+   * IPC registration and closes the journals. Messages still queued for the fan-out are dropped. Closing twice has no
+   * effect.
+   */
+  @Override
+  public void close() {
+    publishQueue.close();
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      CloseHelper.quietClose(aeronResources);
+      CloseHelper.quietClose(ipcRegistry);
+      fanOut.close();
+    }
+  }
+
   public static PubSub create() {
-    return new PubSub();
+    return builder().build();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static class Builder {
+
+    static final int DEFAULT_MAX_PENDING_MESSAGES = 8192;
+
+    private MessageCodec codec = new BinaryMessageCodec();
+    private boolean topicStreams;
+    private Multicast multicast;
+    private DestinationMode destinationMode = DestinationMode.DYNAMIC;
+    private Function<String, String> topicGroup = TopicStreams.hashedGroups(TopicStreams.DEFAULT_TOPIC_GROUPS);
+    private int maxTopicStreams = TopicStreams.DEFAULT_MAX_STREAMS;
+    private Duration topicStreamIdleTimeout = Duration.ofNanos(TopicStreams.DEFAULT_IDLE_TIMEOUT_NANOS);
+    private int maxPendingMessages = DEFAULT_MAX_PENDING_MESSAGES;
+    private int publishQueueCapacity = PublishQueue.DEFAULT_CAPACITY;
+    private Batching batching = Batching.none();
+    private String[] conflatedTopics;
+    private String[] lastValueTopics;
+    private Journaling journaling;
+    private String[] journaledTopics;
+    private String[] compactedTopics;
+    private String[] sequencedTopics;
+    private int retransmitWindow;
+    private long retransmitWindowBytes = RetransmitWindow.DEFAULT_MAX_BYTES;
+    private Supplier<IdleStrategy> idleStrategy = IdleStrategyPreset.BACKOFF;
+    private int eventLoops = 1;
+    private String aeronDirectoryName;
+    private boolean externalMediaDriver;
+    private MediaDriverProfile mediaDriverProfile = MediaDriverProfile.defaults();
+    private IpcMode ipcMode = IpcMode.AUTO;
+    private boolean localTransport;
+    private int localSessionCapacity = LocalSession.DEFAULT_CAPACITY;
+
+    Builder() {}
+
+    /**
+     * Sets the wire codec, both ends of a connection have to use the same one. Defaults to {@link BinaryMessageCodec};
+     * use {@link io.scalecube.pubsub.codec.PubSubMessageCodec} to get human readable JSON frames for debugging.
+     *
+     * @param codec codec for {@link PubSubMessage}s.
+     * @return this builder.
+     */
+    public Builder codec(MessageCodec codec) {
+      this.codec = Objects.requireNonNull(codec);
+      return this;
+    }
+
+    /**
+     * Publishes every topic group on its own Aeron stream instead of the client sessions, so a busy topic doesn't delay
+     * the others and clients only receive the streams they subscribed to. The server then needs {@code port + 1} for
+     * the stream control endpoint and each client {@code clientPort + 1} to receive the streams. Both ends have to
+     * agree on this setting. Messages published before a client joined a stream are not delivered to it.
+     *
+     * @param topicStreams whether to use dedicated streams per topic group.
+     * @return this builder.
+     */
+    public Builder topicStreams(boolean topicStreams) {
+      this.topicStreams = topicStreams;
+      return this;
+    }
+
+    /**
+     * Publishes the topic streams to a UDP multicast group instead of sending them to every client: the server sends
+     * each message once however many clients listen. Turns {@link #topicStreams(boolean) topic streams} on; clients
+     * have to use the same group. Neither {@code port + 1} nor {@code clientPort + 1} are used then.
+     *
+     * @param multicast multicast group, e.g. {@code Multicast.of("224.0.1.1", 40457).ttl(1)}.
+     * @return this builder.
+     */
+    public Builder multicast(Multicast multicast) {
+      this.multicast = Objects.requireNonNull(multicast);
+      return this;
+    }
+
+    /**
+     * Sets how clients become destinations of the topic streams, {@link DestinationMode#DYNAMIC} by default. With
+     * {@link DestinationMode#MANUAL} the server adds each client as its session starts and removes it when the session
+     * ends. Turns {@link #topicStreams(boolean) topic streams} on; both ends have to agree on this setting. Has no effect
+     * together with {@link #multicast(Multicast)}.
+     *
+     * @param destinationMode destination mode.
+     * @return this builder.
+     */
+    public Builder destinationMode(DestinationMode destinationMode) {
+      this.destinationMode = Objects.requireNonNull(destinationMode);
+      return this;
+    }
+
+    /**
+     * Sets how qualifiers map to topic groups when {@link #topicStreams(boolean) topic streams} are on; all
+     * qualifiers of a group share one stream. Defaults to hashing the qualifiers into 16 groups; however many groups
+     * the function yields, no more than {@link #maxTopicStreams(int)} streams are open.
+     *
+     * @param topicGroup maps a qualifier to the name of its group.
+     * @return this builder.
+     */
+    public Builder topicGroup(Function<String, String> topicGroup) {
+      this.topicGroup = Objects.requireNonNull(topicGroup);
+      return this;
+    }
+
+    /**
+     * Bounds the topic streams open at once, 64 by default. Past it, the streams of new topic groups are shared with
+     * the open ones; clients still only see the topics they subscribed to.
+     *
+     * @param maxTopicStreams maximum number of topic streams.
+     * @return this builder.
+     */
+    public Builder maxTopicStreams(int maxTopicStreams) {
+      if (maxTopicStreams <= 0) {
+        throw new IllegalArgumentException("maxTopicStreams must be positive: " + maxTopicStreams);
+      }
+      this.maxTopicStreams = maxTopicStreams;
+      return this;
+    }
+
+    /**
+     * Sets how long a topic stream stays open without a message, one minute by default. An idle stream is closed and
+     * its stream id reused; its topic groups get a stream again with their next message.
+     *
+     * @param topicStreamIdleTimeout idle time after which a topic stream is closed.
+     * @return this builder.
+     */
+    public Builder topicStreamIdleTimeout(Duration topicStreamIdleTimeout) {
+      if (topicStreamIdleTimeout.isNegative() || topicStreamIdleTimeout.isZero()) {
+        throw new IllegalArgumentException("topicStreamIdleTimeout must be positive: " + topicStreamIdleTimeout);
+      }
+      this.topicStreamIdleTimeout = topicStreamIdleTimeout;
+      return this;
+    }
+
+    /**
+     * Bounds the published messages queued but not sent yet, as seen by {@link TopicPublisher#tryNext(PubSubMessage)}:
+     * messages waiting for the fan-out plus the backlog of the slowest client. {@link TopicPublisher#next(PubSubMessage)}
+     * ignores the bound.
+     *
+     * @param maxPendingMessages maximum number of pending messages, defaults to {@value #DEFAULT_MAX_PENDING_MESSAGES}.
+     * @return this builder.
+     */
+    public Builder maxPendingMessages(int maxPendingMessages) {
+      if (maxPendingMessages <= 0) {
+        throw new IllegalArgumentException("maxPendingMessages must be positive: " + maxPendingMessages);
+      }
+      this.maxPendingMessages = maxPendingMessages;
+      return this;
+    }
+
+    /**
+     * Sets the capacity of the queue between publishers and the fan-out thread; {@link TopicPublisher#next} waits while
+     * it is full and {@link TopicPublisher#tryNext} reports back pressure.
+     *
+     * @param publishQueueCapacity capacity, rounded up to a power of two.
+     * @return this builder.
+     */
+    public Builder publishQueueCapacity(int publishQueueCapacity) {
+      if (publishQueueCapacity <= 0) {
+        throw new IllegalArgumentException("publishQueueCapacity must be positive: " + publishQueueCapacity);
+      }
+      this.publishQueueCapacity = publishQueueCapacity;
+      return this;
+    }
+
+    /**
+     * Sets how the server packs small messages into frames, {@link Batching#none()} by default. Pick
+     * {@link Batching#latency()} or {@link Batching#throughput()}; clients need no configuration.
+     *
+     * @param batching batching settings.
+     * @return this builder.
+     */
+    public Builder batching(Batching batching) {
+      this.batching = Objects.requireNonNull(batching);
+      return this;
+    }
+
+    /**
+     * Conflates given topics for clients falling behind: of the messages waiting to be sent to a client, only the
+     * newest per qualifier and {@link PubSubMessage#streamId() stream id} is kept, so the client's backlog is bounded
+     * by the number of keys rather than the publish rate. A client keeping up receives every message. Doesn't apply to
+     * {@link #topicStreams(boolean) topic streams}.
+     *
+     * @param topics qualifiers or patterns, see {@link TopicTrie}; none means every topic.
+     * @return this builder.
+     */
+    public Builder conflate(String... topics) {
+      this.conflatedTopics = topics.clone();
+      return this;
+    }
+
+    /**
+     * Keeps the newest message per qualifier and {@link PubSubMessage#streamId() stream id} of given topics off-heap on
+     * the server. A client subscribing to a topic first receives the cached messages of the topic, then a marker with
+     * qualifier {@link PubSubMessage#SNAPSHOT_QUALIFIER} plus the topic, then the live messages, without gap or
+     * duplicate. Only a connection's first listener of a topic triggers a snapshot. Clients of the same JVM, see
+     * {@link #localTransport(boolean)}, get no snapshot; with {@link #topicStreams(boolean) topic streams} the snapshot
+     * comes over the session and may interleave with the live messages.
+     *
+     * @param topics qualifiers or patterns, see {@link TopicTrie}; none means every topic.
+     * @return this builder.
+     */
+    public Builder lastValueCache(String... topics) {
+      this.lastValueTopics = topics.clone();
+      return this;
+    }
+
+    /**
+     * Journals the messages of given topics on the server: each qualifier gets an append-only journal of memory-mapped
+     * segment files, which clients replay from an offset or a point in time before switching to the live messages, see
+     * {@link TopicSubscriber#replay(String, long)}. Publishing a journaled message costs a sequential write into the
+     * mapped file. Replays reach clients of other JVMs only; with {@link #topicStreams(boolean) topic streams} the
+     * replay comes over the session and may interleave with the live messages.
+     *
+     * @param journaling journal directory and segment settings.
+     * @param topics qualifiers or patterns, see {@link TopicTrie}; none means every topic.
+     * @return this builder.
+     */
+    public Builder journal(Journaling journaling, String... topics) {
+      this.journaling = Objects.requireNonNull(journaling);
+      this.journaledTopics = topics.clone();
+      return this;
+    }
+
+    /**
+     * Compacts the journals of given topics by key: a background thread rewrites their sealed segments keeping only the
+     * newest message per {@link PubSubMessage#streamId() stream id}, messages without one sharing a key, see
+     * {@link Journaling#compactionInterval(java.time.Duration)}. A message without data stays as the tombstone of its
+     * key. A client subscribing to a compacted topic first receives the compacted journals of the matching qualifiers,
+     * then a marker with qualifier {@link PubSubMessage#SNAPSHOT_QUALIFIER} plus the topic, then the live messages,
+     * without gap or duplicate. Segments written since the last compaction may still hold older values of a key, which
+     * come before the newest one. Takes precedence over {@link #lastValueCache(String...)} for the topics of both; same
+     * restrictions otherwise.
+     *
+     * @param topics journaled qualifiers or patterns, see {@link TopicTrie}; none means every journaled topic.
+     * @return this builder.
+     */
+    public Builder compact(String... topics) {
+      this.compactedTopics = topics.clone();
+      return this;
+    }
+
+    /**
+     * Stamps the messages of given topics with a {@link PubSubMessage#sequence() sequence} per qualifier, counting from
+     * 0 for the lifetime of the server, so that clients detect gaps, see {@link TopicSubscriber#gaps()}. The last
+     * messages of each qualifier are kept in memory, as encoded for the clients, and a client reconnecting after losing
+     * its connection {@link TopicSubscriber#resume(String, long) resumes} a qualifier from the last sequence it got:
+     * it receives the missing messages, if the window still holds them all, then the live ones. Costs a sequence and a
+     * retained frame per message, and the window's memory, which is its length times the number of qualifiers, up to
+     * {@link #retransmitWindowBytes(long)}.
+     *
+     * @param retransmitWindow messages kept per qualifier.
+     * @param topics qualifiers or patterns, see {@link TopicTrie}; none means every topic.
+     * @return this builder.
+     */
+    public Builder sequence(int retransmitWindow, String... topics) {
+      if (retransmitWindow <= 0) {
+        throw new IllegalArgumentException("retransmitWindow must be positive: " + retransmitWindow);
+      }
+      this.retransmitWindow = retransmitWindow;
+      this.sequencedTopics = topics.clone();
+      return this;
+    }
+
+    /**
+     * Bounds the messages kept for resuming clients across all qualifiers, 64 MiB by default, see
+     * {@link #sequence(int, String...)}. Past it, the messages of the qualifiers published least recently are dropped;
+     * their sequences go on, but clients can't resume them from before that.
+     *
+     * @param retransmitWindowBytes bytes of encoded messages.
+     * @return this builder.
+     */
+    public Builder retransmitWindowBytes(long retransmitWindowBytes) {
+      if (retransmitWindowBytes <= 0) {
+        throw new IllegalArgumentException("retransmitWindowBytes must be positive: " + retransmitWindowBytes);
+      }
+      this.retransmitWindowBytes = retransmitWindowBytes;
+      return this;
+    }
+
+    /**
+     * Sets how the Aeron event loop polling the topic streams idles, {@link IdleStrategyPreset#BACKOFF} by default.
+     *
+     * @param idleStrategy supplier of a new idle strategy, e.g. {@link IdleStrategyPreset#LOW_LATENCY}.
+     * @return this builder.
+     */
+    public Builder idleStrategy(Supplier<IdleStrategy> idleStrategy) {
+      this.idleStrategy = Objects.requireNonNull(idleStrategy);
+      return this;
+    }
+
+    /**
+     * Sets how many event loop threads poll the topic streams. Streams are spread by measured load and rebalanced
+     * periodically.
+     *
+     * @param eventLoops number of event loops, 1 by default.
+     * @return this builder.
+     */
+    public Builder eventLoops(int eventLoops) {
+      if (eventLoops <= 0) {
+        throw new IllegalArgumentException("eventLoops must be positive: " + eventLoops);
+      }
+      this.eventLoops = eventLoops;
+      return this;
+    }
+
+    /**
+     * Sets the directory of the media driver used for topic streams. All {@link PubSub} instances and example clients of
+     * the JVM using the same directory share one in-process driver, see {@link SharedMediaDriver}. A driver already
+     * running in the directory, embedded by the application or in another process, is attached to rather than
+     * replaced, which lets a server and a client attached to it use {@link IpcMode IPC}.
+     *
+     * @param aeronDirectoryName driver directory, the one of the {@link #mediaDriverProfile(MediaDriverProfile) profile}
+     *     by default.
+     * @return this builder.
+     */
+    public Builder aeronDirectoryName(String aeronDirectoryName) {
+      this.aeronDirectoryName = Objects.requireNonNull(aeronDirectoryName);
+      return this;
+    }
+
+    /**
+     * Attaches to a media driver running in its own process instead of launching one in this JVM.
+     *
+     * @param externalMediaDriver whether the driver in {@link #aeronDirectoryName(String)} is managed externally.
+     * @return this builder.
+     */
+    public Builder externalMediaDriver(boolean externalMediaDriver) {
+      this.externalMediaDriver = externalMediaDriver;
+      return this;
+    }
+
+    /**
+     * Sets the settings the media driver is launched with, e.g. {@link MediaDriverProfile#lowLatencyDedicated()} or
+     * {@link MediaDriverProfile#sharedLowFootprint()}. Has no effect on an external driver, nor on a driver another
+     * instance already launched in the same directory.
+     *
+     * @param mediaDriverProfile driver settings, {@link MediaDriverProfile#defaults()} by default.
+     * @return this builder.
+     */
+    public Builder mediaDriverProfile(MediaDriverProfile mediaDriverProfile) {
+      this.mediaDriverProfile = Objects.requireNonNull(mediaDriverProfile);
+      return this;
+    }
+
+    /**
+     * Sets whether topic streams travel over {@code aeron:ipc} between ends attached to the same media driver,
+     * {@link IpcMode#AUTO} by default. Only applies with {@link #topicStreams(boolean) topic streams} on.
+     *
+     * @param ipcMode IPC mode.
+     * @return this builder.
+     */
+    public Builder ipcMode(IpcMode ipcMode) {
+      this.ipcMode = Objects.requireNonNull(ipcMode);
+      return this;
+    }
+
+    /**
+     * Lets clients and servers of the same JVM skip codec and media driver: a client connecting to the host and port
+     * of a server in this JVM gets the published messages handed over as they are, through a bounded queue, see
+     * {@link #localSessionCapacity(int)}. Both ends have to enable it, remote clients keep using Aeron.
+     *
+     * @param localTransport whether to short-circuit connections within the JVM.
+     * @return this builder.
+     */
+    public Builder localTransport(boolean localTransport) {
+      this.localTransport = localTransport;
+      return this;
+    }
+
+    /**
+     * Bounds the queue of each client of the same JVM, 1024 messages by default, see {@link #localTransport(boolean)}.
+     * Nothing is dropped for a slow client: {@link TopicPublisher#tryNext} refuses messages while they might not fit
+     * into its queue and {@link TopicPublisher#next} waits while its queue is full.
+     *
+     * @param localSessionCapacity queue capacity, rounded up to a power of two.
+     * @return this builder.
+     */
+    public Builder localSessionCapacity(int localSessionCapacity) {
+      if (localSessionCapacity <= 0) {
+        throw new IllegalArgumentException("localSessionCapacity must be positive: " + localSessionCapacity);
+      }
+      this.localSessionCapacity = localSessionCapacity;
+      return this;
+    }
+
+    public PubSub build() {
+      if (compactedTopics != null && journaling == null) {
+        throw new IllegalStateException("Compacted topics need a journal, see journal(Journaling, String...)");
+      }
+      return new PubSub(this);
+    }
   }
 }
@@ -1,5 +1,7 @@
 package io.scalecube.pubsub;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.scalecube.pubsub.codec.MessageCodecException;
 import java.util.Objects;
 
@@ -7,10 +9,35 @@ public class PubSubMessage {
 
   public static final String QUALIFIER_FIELD = "q";
   public static final String STREAM_ID_FIELD = "sid";
+  public static final String SEQUENCE_FIELD = "seq";
   public static final String DATA_FIELD = "d";
 
+  public static final String ERROR_QUALIFIER = "/io.scalecube/error";
+
+  /**
+   * Qualifier prefix of the marker ending the snapshot a server with a last value cache sends on subscription, followed
+   * by the topic subscribed to, e.g. {@code /io.scalecube/snapshot/prices/**}. The marker's stream id is the number of
+   * snapshot messages before it; every message after it is live.
+   */
+  public static final String SNAPSHOT_QUALIFIER = "/io.scalecube/snapshot";
+
+  /**
+   * Qualifier prefix of the marker a journaling server sends once a replay has caught up, followed by the replayed
+   * topic. The marker's stream id is the journal offset the first live message after it gets, {@code -1} if the topic
+   * is not journaled.
+   */
+  public static final String REPLAYED_QUALIFIER = "/io.scalecube/replayed";
+
+  /**
+   * Qualifier prefix of the marker a sequencing server sends once a resume has been handled, followed by the resumed
+   * topic. The marker's stream id is the sequence the first live message after it gets, {@code -1} if the missing
+   * messages had left the retransmit window and only the live ones follow.
+   */
+  public static final String RESUMED_QUALIFIER = "/io.scalecube/resumed";
+
   private String qualifier;
   private Long streamId;
+  private Long sequence;
   private Object data;
 
   /**
@@ -23,15 +50,17 @@ public class PubSubMessage {
     Builder builder = new Builder();
     builder.qualifier = msg.qualifier();
     builder.streamId = msg.streamId();
+    builder.sequence = msg.sequence();
     builder.data = msg.data();
     return builder;
   }
 
   PubSubMessage() {}
 
-  private PubSubMessage(String qualifier, Long streamId, Object data) {
+  private PubSubMessage(String qualifier, Long streamId, Long sequence, Object data) {
     this.qualifier = qualifier;
     this.streamId = streamId;
+    this.sequence = sequence;
     this.data = data;
   }
 
@@ -47,16 +76,41 @@ public class PubSubMessage {
     return streamId;
   }
 
+  /**
+   * Returns the position of this message in its topic, stamped by a server sequencing the topic: the messages of a
+   * qualifier get 0, 1, 2 and so on, see {@link PubSub.Builder#sequence(int, String...)}.
+   *
+   * @return sequence or {@code null} if the topic is not sequenced.
+   */
+  public Long sequence() {
+    return sequence;
+  }
+
   public <T> T data() {
     // noinspection unchecked
     return (T) data;
   }
 
+  /**
+   * Returns a copy of this message which owns its data. Messages received by {@link TopicSubscriber} keep their data
+   * as a view of the received frame, which keeps the whole frame, e.g. a batch of messages, from being collected while
+   * the message is held.
+   *
+   * @return message with its own copy of the data.
+   */
+  public PubSubMessage copy() {
+    Object copiedData = data instanceof ByteBuf ? Unpooled.copiedBuffer((ByteBuf) data) : data;
+    return new PubSubMessage(qualifier, streamId, sequence, copiedData);
+  }
+
   @Override
   public String toString() {
     final StringBuilder sb = new StringBuilder("GatewayMessage{");
     sb.append("qualifier='").append(qualifier).append('\'');
     sb.append(", streamId=").append(streamId);
+    if (sequence != null) {
+      sb.append(", sequence=").append(sequence);
+    }
     sb.append(", data=").append(data);
     sb.append('}');
     return sb.toString();
@@ -66,6 +120,7 @@ public class PubSubMessage {
 
     private String qualifier;
     private Long streamId;
+    private Long sequence;
     private Object data;
 
     Builder() {}
@@ -80,6 +135,11 @@ public class PubSubMessage {
       return this;
     }
 
+    public Builder sequence(Long sequence) {
+      this.sequence = sequence;
+      return this;
+    }
+
     public Builder data(Object data) {
       this.data = Objects.requireNonNull(data);
       return this;
@@ -91,11 +151,11 @@ public class PubSubMessage {
      * @return {@link PubSubMessage} with parameters from current builder.
      */
     public PubSubMessage build() {
-      return new PubSubMessage(qualifier, streamId, data);
+      return new PubSubMessage(qualifier, streamId, sequence, data);
     }
   }
 
   public static PubSubMessage error(MessageCodecException e) {
-    return PubSubMessage.builder().qualifier("/io.scalecube/error").data(e).build();
+    return PubSubMessage.builder().qualifier(ERROR_QUALIFIER).data(e).build();
   }
 }
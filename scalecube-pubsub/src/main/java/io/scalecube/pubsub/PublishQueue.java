@@ -0,0 +1,127 @@
+package io.scalecube.pubsub;
+
+import java.util.function.Consumer;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.AgentRunner;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.ManyToOneConcurrentArrayQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.ipc.aeron.AeronUtils;
+
+/**
+ * Hands published messages over from any number of publisher threads to the single thread running the {@link FanOut}.
+ *
+ * <p>Publishers claim a slot of a bounded many-to-one array queue with a CAS, without taking a lock; one agent thread
+ * runs the tasks handed over to the fan-out, drains the queue into the fan-out, then lets it flush its open batches,
+ * and backs off while there is nothing to do.
+ */
+final class PublishQueue implements Agent {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PublishQueue.class);
+
+  static final int DEFAULT_CAPACITY = 16384;
+
+  private static final int DRAIN_LIMIT = 256;
+
+  private final ManyToOneConcurrentArrayQueue<PubSubMessage> queue;
+  private final FanOut fanOut;
+  private final Consumer<PubSubMessage> onMessage;
+
+  private AgentRunner runner;
+  private Thread thread;
+  private volatile boolean closed;
+
+  /**
+   * Creates a queue, {@link #start()} it to have it drained.
+   *
+   * @param fanOut fan-out receiving the messages.
+   * @param capacity queue capacity, rounded up to a power of two.
+   */
+  PublishQueue(FanOut fanOut, int capacity) {
+    this.queue = new ManyToOneConcurrentArrayQueue<>(capacity);
+    this.fanOut = fanOut;
+    this.onMessage = fanOut::onMessage;
+  }
+
+  /**
+   * Starts the drain thread.
+   */
+  synchronized void start() {
+    if (runner == null) {
+      runner = new AgentRunner(AeronUtils.newBackoffIdleStrategy(),
+          ex -> LOGGER.error("Unexpected exception in fan-out", ex), null, this);
+      thread = AgentRunner.startOnThread(runner);
+    }
+  }
+
+  /**
+   * Enqueues a message unless the queue is full or closed.
+   *
+   * @param message published message.
+   * @return {@code false} if the queue is full or closed, see {@link #isClosed()}.
+   */
+  boolean offer(PubSubMessage message) {
+    return !closed && queue.offer(message);
+  }
+
+  /**
+   * Enqueues a message, waiting for a free slot while the queue is full.
+   *
+   * @param message published message.
+   * @throws IllegalStateException if the queue is closed, before or while waiting.
+   */
+  void put(PubSubMessage message) {
+    checkOpen();
+    if (queue.offer(message)) {
+      return;
+    }
+    IdleStrategy idle = AeronUtils.newBackoffIdleStrategy();
+    while (!queue.offer(message)) {
+      checkOpen();
+      idle.idle();
+    }
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("Publish queue is closed");
+    }
+  }
+
+  int size() {
+    return queue.size();
+  }
+
+  @Override
+  public int doWork() {
+    return fanOut.runTasks() + queue.drain(onMessage, DRAIN_LIMIT) + fanOut.flushBatches();
+  }
+
+  @Override
+  public String roleName() {
+    return "pubsub-fan-out";
+  }
+
+  /**
+   * Refuses further messages, stops the drain thread and waits for it to end. The runner doesn't wait for a thread that
+   * hasn't started running yet, so the thread is joined here as well.
+   */
+  synchronized void close() {
+    closed = true;
+    fanOut.stop();
+    if (runner != null) {
+      runner.close();
+      runner = null;
+      try {
+        thread.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      thread = null;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package io.scalecube.pubsub;
+
+/**
+ * Outcome of {@link TopicPublisher#tryNext(PubSubMessage)}.
+ */
+public enum PublishStatus {
+
+  /**
+   * The message was queued for delivery.
+   */
+  ACCEPTED,
+
+  /**
+   * Too many messages are queued but not yet sent, the message was not taken.
+   */
+  BACK_PRESSURED,
+
+  /**
+   * No client is connected, the message was not taken.
+   */
+  NOT_CONNECTED,
+
+  /**
+   * The server is closed, the message was not taken.
+   */
+  CLOSED
+}
@@ -0,0 +1,188 @@
+package io.scalecube.pubsub;
+
+import io.netty.buffer.ByteBuf;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import org.agrona.collections.Object2LongHashMap;
+
+/**
+ * Per-qualifier sequence of the messages of given topics, with the last encoded messages of each qualifier kept for a
+ * client resuming after a reconnect.
+ *
+ * <p>The messages of a qualifier are numbered from 0 on, for the lifetime of the server. Each qualifier keeps a ring of
+ * its last {@code capacity} frames, retained slices of the encoded messages the sessions get, so keeping them costs no
+ * copy. Once the frames of all rings take more than {@code maxBytes}, the rings of the qualifiers published least
+ * recently are dropped: their frames are released and only their next sequence is kept, a long per qualifier, so that
+ * numbering goes on. Resuming such a qualifier fails like resuming beyond the window.
+ *
+ * <p>Not thread safe, used from the fan-out thread only.
+ */
+final class RetransmitWindow {
+
+  static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+  private static final long NO_SEQUENCE = -1;
+
+  private final TopicFilter.QualifierMatcher topics;
+  private final int capacity;
+  private final long maxBytes;
+
+  // least recently published first
+  private final LinkedHashMap<String, Ring> rings = new LinkedHashMap<>(16, 0.75f, true);
+  // next sequence of the qualifiers whose ring was dropped
+  private final Object2LongHashMap<String> evicted = new Object2LongHashMap<>(NO_SEQUENCE);
+  // bytes of the frames of all rings
+  private long bytes;
+
+  /**
+   * Creates a window.
+   *
+   * @param topics topics to sequence.
+   * @param capacity messages kept per qualifier.
+   * @param maxBytes bytes of frames kept for all qualifiers.
+   */
+  RetransmitWindow(TopicFilter topics, int capacity, long maxBytes) {
+    this.topics = topics.qualifiers();
+    this.capacity = capacity;
+    this.maxBytes = maxBytes;
+  }
+
+  boolean accepts(String qualifier) {
+    return topics.accepts(qualifier);
+  }
+
+  /**
+   * Hands out the next sequence of a qualifier.
+   *
+   * @param qualifier sequenced qualifier.
+   * @return sequence of the message being published.
+   */
+  long next(String qualifier) {
+    Ring ring = rings.get(qualifier);
+    if (ring == null) {
+      ring = new Ring(capacity);
+      long sequence = evicted.removeKey(qualifier);
+      ring.nextSequence = sequence == NO_SEQUENCE ? 0 : sequence;
+      rings.put(qualifier, ring);
+    }
+    return ring.nextSequence++;
+  }
+
+  /**
+   * Returns the sequence the next message of a qualifier gets.
+   *
+   * @param qualifier qualifier.
+   * @return next sequence.
+   */
+  long nextSequence(String qualifier) {
+    Ring ring = rings.get(qualifier);
+    if (ring != null) {
+      return ring.nextSequence;
+    }
+    long sequence = evicted.getValue(qualifier);
+    return sequence == NO_SEQUENCE ? 0 : sequence;
+  }
+
+  /**
+   * Returns the bytes of the frames kept.
+   *
+   * @return bytes.
+   */
+  long bytes() {
+    return bytes;
+  }
+
+  /**
+   * Keeps an encoded message, pushing the oldest one of its qualifier out once the ring is full.
+   *
+   * @param qualifier sequenced qualifier.
+   * @param sequence sequence of the message, as handed out by {@link #next(String)}.
+   * @param encoded encoded message, retained by this method.
+   */
+  void put(String qualifier, long sequence, ByteBuf encoded) {
+    Ring ring = rings.get(qualifier);
+    if (ring == null) {
+      // dropped since its sequence was handed out
+      return;
+    }
+    int slot = (int) (sequence % capacity);
+    ByteBuf previous = ring.frames[slot];
+    if (previous != null) {
+      bytes -= previous.readableBytes();
+      previous.release();
+    }
+    ring.frames[slot] = encoded.retainedSlice();
+    ring.sequences[slot] = sequence;
+    bytes += encoded.readableBytes();
+    evict(ring);
+  }
+
+  private void evict(Ring current) {
+    Iterator<Map.Entry<String, Ring>> iterator = rings.entrySet().iterator();
+    while (bytes > maxBytes && iterator.hasNext()) {
+      Map.Entry<String, Ring> entry = iterator.next();
+      Ring ring = entry.getValue();
+      if (ring == current) {
+        // the most recent one, a single qualifier may take it all
+        break;
+      }
+      iterator.remove();
+      evicted.put(entry.getKey(), ring.nextSequence);
+      for (ByteBuf frame : ring.frames) {
+        if (frame != null) {
+          bytes -= frame.readableBytes();
+          frame.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Hands the messages of a qualifier following given sequence over to a consumer, provided the window still holds all
+   * of them.
+   *
+   * @param qualifier qualifier.
+   * @param lastSequence sequence of the last message the client received, {@code -1} for none.
+   * @param consumer takes a reference of each encoded message.
+   * @return {@code false}, and nothing handed over, if some of the messages are gone.
+   */
+  boolean retransmit(String qualifier, long lastSequence, Consumer<ByteBuf> consumer) {
+    long next = nextSequence(qualifier);
+    if (lastSequence < -1 || lastSequence >= next) {
+      // from before a restart of the server
+      return false;
+    }
+    if (next - lastSequence - 1 > capacity) {
+      return false;
+    }
+    Ring ring = rings.get(qualifier);
+    if (ring == null) {
+      return lastSequence == next - 1;
+    }
+    for (long sequence = lastSequence + 1; sequence < next; sequence++) {
+      int slot = (int) (sequence % capacity);
+      if (ring.frames[slot] == null || ring.sequences[slot] != sequence) {
+        // a message that failed to encode, nobody got it
+        return false;
+      }
+    }
+    for (long sequence = lastSequence + 1; sequence < next; sequence++) {
+      consumer.accept(ring.frames[(int) (sequence % capacity)].retainedSlice());
+    }
+    return true;
+  }
+
+  private static final class Ring {
+
+    private final ByteBuf[] frames;
+    private final long[] sequences;
+    private long nextSequence;
+
+    private Ring(int capacity) {
+      this.frames = new ByteBuf[capacity];
+      this.sequences = new long[capacity];
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package io.scalecube.pubsub;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Client side check of a received message against the topics a listener asked for. The server only sends what the
+ * client is subscribed to, but several listeners with different topics share one connection.
+ */
+final class TopicFilter {
+
+  private final String[] patterns;
+
+  private TopicFilter(String[] patterns) {
+    this.patterns = patterns;
+  }
+
+  /**
+   * Creates a filter.
+   *
+   * @param patterns topic patterns of interest, see {@link TopicTrie}; none means every topic.
+   * @return filter.
+   */
+  static TopicFilter of(String... patterns) {
+    return new TopicFilter(patterns.length == 0 ? null : patterns.clone());
+  }
+
+  /**
+   * Returns the topic patterns this filter accepts.
+   *
+   * @return patterns or {@code null} for every topic.
+   */
+  String[] patterns() {
+    return patterns;
+  }
+
+  /**
+   * Returns a matcher for the qualifiers of published messages, remembering the outcome for recent qualifiers.
+   *
+   * @return new matcher, not thread safe.
+   */
+  QualifierMatcher qualifiers() {
+    return new QualifierMatcher(this);
+  }
+
+  boolean matches(CharSequence qualifier) {
+    if (patterns == null) {
+      return true;
+    }
+    if (qualifier == null) {
+      return false;
+    }
+    for (String pattern : patterns) {
+      if (TopicTrie.matches(pattern, qualifier) || isMarkerOf(PubSubMessage.SNAPSHOT_QUALIFIER, pattern, qualifier)
+          || isMarkerOf(PubSubMessage.REPLAYED_QUALIFIER, pattern, qualifier)
+          || isMarkerOf(PubSubMessage.RESUMED_QUALIFIER, pattern, qualifier)) {
+        return true;
+      }
+    }
+    // decoding errors are reported to every listener
+    return PubSubMessage.ERROR_QUALIFIER.contentEquals(qualifier);
+  }
+
+  /**
+   * Server side check of a published qualifier against this filter, for the topics the fan-out treats specially:
+   * conflated, cached, journaled or sequenced ones. Error messages, patterns and messages without qualifier never
+   * match. Outcomes are kept for the last few thousand qualifiers, so a message is usually checked with a single
+   * lookup.
+   */
+  static final class QualifierMatcher {
+
+    private static final int CAPACITY = 4096;
+
+    private final TopicFilter filter;
+
+    private final Map<String, Boolean> results = new HashMap<>();
+
+    private QualifierMatcher(TopicFilter filter) {
+      this.filter = filter;
+    }
+
+    boolean accepts(String qualifier) {
+      if (qualifier == null) {
+        return false;
+      }
+      Boolean result = results.get(qualifier);
+      if (result == null) {
+        if (results.size() >= CAPACITY) {
+          results.clear();
+        }
+        // patterns are no qualifiers, nothing is published on them
+        result = filter.matches(qualifier) && !PubSubMessage.ERROR_QUALIFIER.equals(qualifier)
+            && qualifier.indexOf('*') < 0;
+        results.put(qualifier, result);
+      }
+      return result;
+    }
+  }
+
+  // markers ending a snapshot, a replay or a resume of a topic go to the listeners of that very topic
+  private static boolean isMarkerOf(String prefix, String pattern, CharSequence qualifier) {
+    if (qualifier.length() != prefix.length() + pattern.length()) {
+      return false;
+    }
+    for (int i = 0; i < qualifier.length(); i++) {
+      char expected = i < prefix.length() ? prefix.charAt(i) : pattern.charAt(i - prefix.length());
+      if (qualifier.charAt(i) != expected) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
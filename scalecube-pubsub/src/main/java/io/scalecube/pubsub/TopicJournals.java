@@ -0,0 +1,260 @@
+package io.scalecube.pubsub;
+
+import io.netty.buffer.ByteBuf;
+import io.scalecube.pubsub.journal.Compactor;
+import io.scalecube.pubsub.journal.Journal;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link Journal}s of the server, one per journaled qualifier, opened on first use.
+ *
+ * <p>Journals of compacted topics are keyed by stream id, messages without one sharing a key, and compacted by a
+ * {@link Compactor} on a thread of their own; compactions are installed on the fan-out thread.
+ *
+ * <p>Fan-out thread only.
+ */
+final class TopicJournals {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TopicJournals.class);
+
+  private static final Journal[] NO_JOURNALS = new Journal[0];
+
+  private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+  private final Journaling journaling;
+  private final TopicFilter.QualifierMatcher topics;
+
+  // null values stand for journals that failed to open
+  private final Map<String, Journal> journals = new HashMap<>();
+
+  // null unless compacting
+  private TopicFilter compactedTopics;
+  private Executor installer;
+  private ScheduledExecutorService compactor;
+
+  // compacted qualifiers with a journal, found on disk or opened since; null until first needed
+  private Set<String> compactedQualifiers;
+
+  // journals the compactor goes through, and those of them waiting for a compaction to be installed
+  private final List<Journal> compactedJournals = new CopyOnWriteArrayList<>();
+  private final Set<Journal> installing = ConcurrentHashMap.newKeySet();
+
+  private boolean closed;
+
+  /**
+   * Creates the journals.
+   *
+   * @param journaling journaling settings.
+   * @param topics topics to journal.
+   */
+  TopicJournals(Journaling journaling, TopicFilter topics) {
+    this.journaling = journaling;
+    this.topics = topics.qualifiers();
+  }
+
+  /**
+   * Compacts the journals of given topics in the background. Has to be called before any message is journaled.
+   *
+   * @param topics topics to compact, journaled ones.
+   * @param installer runs tasks on the fan-out thread.
+   */
+  void compact(TopicFilter topics, Executor installer) {
+    this.compactedTopics = topics;
+    this.installer = installer;
+    this.compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "pubsub-compactor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long interval = journaling.compactionInterval().toNanos();
+    Compactor passes = new Compactor(journaling.compactionKeys());
+    compactor.scheduleWithFixedDelay(() -> compactAll(passes), interval, interval, TimeUnit.NANOSECONDS);
+  }
+
+  boolean accepts(String qualifier) {
+    return topics.accepts(qualifier);
+  }
+
+  /**
+   * Appends a published message to the journal of its qualifier. Failures are logged, the message is delivered anyway.
+   *
+   * @param message published message of a journaled qualifier.
+   * @param encoded encoded message, not released by this method.
+   */
+  void append(PubSubMessage message, ByteBuf encoded) {
+    Journal journal = journal(message.qualifier());
+    if (journal == null) {
+      return;
+    }
+    Long streamId = message.streamId();
+    try {
+      journal.append(System.currentTimeMillis(), streamId == null ? Journal.NO_KEY : streamId,
+          encoded.nioBuffer(encoded.readerIndex(), encoded.readableBytes()));
+    } catch (Exception e) {
+      LOGGER.error("Failed to journal message of {}", message.qualifier(), e);
+    }
+  }
+
+  /**
+   * Returns the journal of a qualifier.
+   *
+   * @param qualifier qualifier.
+   * @return journal, {@code null} if the qualifier is not journaled or its journal failed to open.
+   */
+  Journal journal(String qualifier) {
+    if (!accepts(qualifier)) {
+      return null;
+    }
+    Journal journal = journals.get(qualifier);
+    if (journal == null && !journals.containsKey(qualifier)) {
+      try {
+        journal = Journal.open(journaling.directory().resolve(directoryName(qualifier)),
+            journaling.segmentLength(), journaling.indexInterval());
+      } catch (Exception e) {
+        LOGGER.error("Failed to open journal of {}, not journaling it", qualifier, e);
+      }
+      journals.put(qualifier, journal);
+      if (journal != null && isCompacted(qualifier)) {
+        if (compactedQualifiers != null) {
+          compactedQualifiers.add(qualifier);
+        }
+        compactedJournals.add(journal);
+      }
+    }
+    return journal;
+  }
+
+  private boolean isCompacted(String qualifier) {
+    return compactedTopics != null && compactedTopics.matches(qualifier);
+  }
+
+  /**
+   * Returns the journals of the compacted qualifiers matching a topic, to bootstrap a subscriber from.
+   *
+   * @param topic topic pattern, {@code null} for every topic.
+   * @return journals, opened if needed.
+   */
+  Journal[] compacted(String topic) {
+    if (compactedTopics == null) {
+      return NO_JOURNALS;
+    }
+    if (compactedQualifiers == null) {
+      compactedQualifiers = new TreeSet<>(journals.keySet());
+      File[] directories = journaling.directory().toFile().listFiles(File::isDirectory);
+      if (directories != null) {
+        for (File directory : directories) {
+          compactedQualifiers.add(qualifierOf(directory.getName()));
+        }
+      }
+      compactedQualifiers.removeIf(qualifier -> !accepts(qualifier) || !isCompacted(qualifier));
+    }
+    TopicFilter filter = topic == null ? TopicFilter.of() : TopicFilter.of(topic);
+    List<Journal> result = new ArrayList<>();
+    for (String qualifier : compactedQualifiers) {
+      if (filter.matches(qualifier)) {
+        Journal journal = journal(qualifier);
+        if (journal != null) {
+          result.add(journal);
+        }
+      }
+    }
+    return result.toArray(NO_JOURNALS);
+  }
+
+  // compactor thread
+  private void compactAll(Compactor passes) {
+    for (Journal journal : compactedJournals) {
+      if (installing.contains(journal)) {
+        continue;
+      }
+      try {
+        Compactor.Result result = passes.compact(journal);
+        if (result != null) {
+          installing.add(journal);
+          installer.execute(() -> install(journal, result));
+        }
+      } catch (Exception e) {
+        LOGGER.error("Failed to compact journal", e);
+      }
+    }
+  }
+
+  private void install(Journal journal, Compactor.Result result) {
+    try {
+      if (!closed) {
+        journal.install(result);
+        LOGGER.debug("Installed compaction {}", result);
+      }
+    } catch (IOException e) {
+      LOGGER.error("Failed to install compaction {}", result, e);
+    } finally {
+      installing.remove(journal);
+    }
+  }
+
+  /**
+   * Stops compacting and closes the journals, compactions not installed yet are dropped. Called once the fan-out thread
+   * has stopped.
+   */
+  void close() {
+    closed = true;
+    if (compactor != null) {
+      compactor.shutdownNow();
+      try {
+        // a pass maps segment files of the journals
+        if (!compactor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+          LOGGER.warn("Compactor still running after {} s", CLOSE_TIMEOUT_SECONDS);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    compactedJournals.clear();
+    for (Journal journal : journals.values()) {
+      if (journal != null) {
+        journal.close();
+      }
+    }
+    journals.clear();
+  }
+
+  /**
+   * Escapes a qualifier into a file name.
+   *
+   * @param qualifier qualifier.
+   * @return directory name of the qualifier's journal.
+   */
+  static String directoryName(String qualifier) {
+    try {
+      // dots too, so that no qualifier turns into . or ..
+      return URLEncoder.encode(qualifier, "UTF-8").replace(".", "%2E");
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static String qualifierOf(String directoryName) {
+    try {
+      return URLDecoder.decode(directoryName, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
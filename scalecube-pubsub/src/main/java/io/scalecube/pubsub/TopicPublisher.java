@@ -1,16 +1,99 @@
 package io.scalecube.pubsub;
 
-import reactor.core.publisher.FluxSink;
+import java.time.Duration;
+import org.agrona.concurrent.IdleStrategy;
+import reactor.core.publisher.Mono;
+import reactor.ipc.aeron.AeronUtils;
 
 public class TopicPublisher {
 
-  private FluxSink<PubSubMessage> sink;
+  private static final Duration RETRY_DELAY = Duration.ofMillis(1);
 
-  public TopicPublisher(FluxSink<PubSubMessage> sink) {
-    this.sink = sink;
+  private PublishQueue queue;
+  private FanOut fanOut;
+  private int maxPendingMessages;
+
+  /**
+   * Creates a publisher feeding the fan-out of a server.
+   *
+   * @param queue queue feeding the fan-out.
+   * @param fanOut fan-out keeping count of the messages not sent yet.
+   * @param maxPendingMessages bound for {@link #tryNext(PubSubMessage)}.
+   */
+  TopicPublisher(PublishQueue queue, FanOut fanOut, int maxPendingMessages) {
+    this.queue = queue;
+    this.fanOut = fanOut;
+    this.maxPendingMessages = maxPendingMessages;
   }
 
+  /**
+   * Publishes a message regardless of how many messages are still waiting to be sent, waiting only while the publish
+   * queue or the queue of a client in the same JVM is full.
+   *
+   * @param message message to publish.
+   * @throws IllegalStateException if the server is closed, before or while waiting.
+   */
   public void next(PubSubMessage message) {
-    sink.next(message);
+    if (fanOut.isLocalSessionFull()) {
+      IdleStrategy idle = AeronUtils.newBackoffIdleStrategy();
+      do {
+        if (queue.isClosed()) {
+          throw new IllegalStateException("Publish queue is closed");
+        }
+        idle.idle();
+      } while (fanOut.isLocalSessionFull());
+    }
+    fanOut.acquire();
+    try {
+      queue.put(message);
+    } catch (IllegalStateException e) {
+      fanOut.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Publishes a message unless the server falls behind: the message is refused while the messages waiting for the
+   * fan-out plus the backlog of the slowest client reach the configured bound, or might not fit into the queue of a
+   * client in the same JVM. Never blocks.
+   *
+   * @param message message to publish.
+   * @return whether the message was taken.
+   */
+  public PublishStatus tryNext(PubSubMessage message) {
+    if (queue.isClosed()) {
+      return PublishStatus.CLOSED;
+    }
+    if (!fanOut.hasSessions()) {
+      return PublishStatus.NOT_CONNECTED;
+    }
+    if (!fanOut.tryAcquire(maxPendingMessages)) {
+      return PublishStatus.BACK_PRESSURED;
+    }
+    if (!queue.offer(message)) {
+      fanOut.release();
+      return queue.isClosed() ? PublishStatus.CLOSED : PublishStatus.BACK_PRESSURED;
+    }
+    return PublishStatus.ACCEPTED;
+  }
+
+  /**
+   * Publishes a message as soon as {@link #tryNext(PubSubMessage)} takes it, retrying while back pressured or not
+   * connected. Cancel the returned mono to give up.
+   *
+   * @param message message to publish.
+   * @return mono completing once the message was accepted, failing with {@link IllegalStateException} once the server
+   *     is closed.
+   */
+  public Mono<Void> send(PubSubMessage message) {
+    return Mono.fromCallable(() -> tryNext(message))
+        .doOnNext(status -> {
+          if (status == PublishStatus.CLOSED) {
+            throw new IllegalStateException("Server is closed");
+          }
+        })
+        .filter(status -> status == PublishStatus.ACCEPTED)
+        .repeatWhenEmpty(attempts -> attempts.delayElements(RETRY_DELAY))
+        .then();
   }
 }
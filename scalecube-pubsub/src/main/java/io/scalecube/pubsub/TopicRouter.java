@@ -0,0 +1,130 @@
+package io.scalecube.pubsub;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Routing index of the server: which sessions want messages of which qualifier.
+ *
+ * <p>Subscriptions are topic patterns kept in a {@link TopicTrie}. Resolved routes are cached per qualifier, so a
+ * repeated qualifier costs one hash lookup and returns a precomputed array of sessions. Every subscription change bumps
+ * a version which invalidates the cached routes at once.
+ *
+ * @param <S> session type.
+ */
+final class TopicRouter<S> {
+
+  private static final int CACHE_CAPACITY = 4096;
+
+  private final S[] empty;
+
+  private final Map<String, Route<S>> cache = new ConcurrentHashMap<>();
+
+  private volatile S[] allTopics;
+
+  private volatile long version;
+
+  // guarded by this
+  private final TopicTrie<S> trie = new TopicTrie<>();
+  private final Map<S, Set<String>> patterns = new HashMap<>();
+  private final Set<S> allTopicsSubscriptions = new HashSet<>();
+
+  /**
+   * Creates a router.
+   *
+   * @param empty empty array of the session type, returned for routes without sessions.
+   */
+  TopicRouter(S[] empty) {
+    this.empty = empty;
+    this.allTopics = empty;
+  }
+
+  /**
+   * Returns the sessions a message with given qualifier has to be written to.
+   *
+   * @param qualifier message qualifier, may be {@code null}.
+   * @return sessions, never {@code null}.
+   */
+  S[] route(String qualifier) {
+    if (qualifier == null) {
+      return allTopics;
+    }
+    Route<S> route = cache.get(qualifier);
+    if (route != null && route.version == version) {
+      return route.sessions;
+    }
+    return resolve(qualifier);
+  }
+
+  private synchronized S[] resolve(String qualifier) {
+    Set<S> sessions = new HashSet<>(allTopicsSubscriptions);
+    trie.match(qualifier, sessions);
+    S[] result = sessions.isEmpty() ? empty : sessions.toArray(empty);
+    if (cache.size() >= CACHE_CAPACITY) {
+      cache.clear();
+    }
+    cache.put(qualifier, new Route<>(version, result));
+    return result;
+  }
+
+  /**
+   * Registers interest of a session.
+   *
+   * @param session subscribing session.
+   * @param pattern topic pattern, see {@link TopicTrie}, or {@code null} for every topic including messages without
+   *        qualifier.
+   */
+  synchronized void subscribe(S session, String pattern) {
+    boolean changed;
+    if (pattern == null) {
+      changed = allTopicsSubscriptions.add(session);
+      allTopics = allTopicsSubscriptions.toArray(empty);
+    } else {
+      changed = trie.add(pattern, session);
+      patterns.computeIfAbsent(session, s -> new HashSet<>()).add(pattern);
+    }
+    if (changed) {
+      version++;
+    }
+  }
+
+  synchronized void unsubscribe(S session, String pattern) {
+    boolean changed;
+    if (pattern == null) {
+      changed = allTopicsSubscriptions.remove(session);
+      allTopics = allTopicsSubscriptions.toArray(empty);
+    } else {
+      changed = trie.remove(pattern, session);
+      Set<String> sessionPatterns = patterns.get(session);
+      if (sessionPatterns != null && sessionPatterns.remove(pattern) && sessionPatterns.isEmpty()) {
+        patterns.remove(session);
+      }
+    }
+    if (changed) {
+      version++;
+    }
+  }
+
+  synchronized void remove(S session) {
+    Set<String> sessionPatterns = patterns.remove(session);
+    if (sessionPatterns != null) {
+      sessionPatterns.forEach(pattern -> trie.remove(pattern, session));
+    }
+    allTopicsSubscriptions.remove(session);
+    allTopics = allTopicsSubscriptions.toArray(empty);
+    version++;
+  }
+
+  private static final class Route<S> {
+    final long version;
+    final S[] sessions;
+
+    Route(long version, S[] sessions) {
+      this.version = version;
+      this.sessions = sessions;
+    }
+  }
+}
@@ -0,0 +1,231 @@
+package io.scalecube.pubsub;
+
+import io.aeron.ChannelUriStringBuilder;
+import io.aeron.Subscription;
+import io.netty.buffer.Unpooled;
+import io.scalecube.pubsub.aeron.AeronResources;
+import io.scalecube.pubsub.aeron.FragmentLimit;
+import io.scalecube.pubsub.aeron.Shared;
+import io.scalecube.pubsub.codec.MessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.UnicastProcessor;
+
+/**
+ * Client side of {@link TopicStreams}: joins the Aeron streams of the topics the client is subscribed to and leaves
+ * them once nobody listens anymore.
+ *
+ * <p>Interest is taken from the subscribe/unsubscribe requests going out on the session, stream ids from the
+ * assignments the server advertises on it. Both may change from different threads, so every change re-evaluates the
+ * joined streams under this object's lock.
+ */
+final class TopicStreamSubscriptions {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TopicStreamSubscriptions.class);
+
+  // a topic stream may burst while others are quiet, let it catch up but share the loop when several are busy
+  private static final FragmentLimit FRAGMENT_LIMIT = FragmentLimit.adaptive(8, 256);
+
+  private final AeronResources resources;
+  private final String channel;
+  private final MessageCodec codec;
+
+  /**
+   * Subscribed topic patterns with their subscribe count, {@code null} key for every topic.
+   */
+  private final Map<String, Integer> patterns = new HashMap<>();
+
+  /**
+   * Advertised stream id per qualifier, {@code null} key for messages without qualifier.
+   */
+  private final Map<String, Integer> assignments = new HashMap<>();
+
+  private final Map<Integer, Stream> joined = new HashMap<>();
+
+  private final UnicastProcessor<Flux<ByteBuffer>> streams = UnicastProcessor.create();
+
+  /**
+   * Creates topic stream subscriptions.
+   *
+   * @param resources aeron client and event loop polling the streams.
+   * @param channel subscription channel, see {@link #channel(String, int, int)}.
+   * @param codec wire codec.
+   */
+  TopicStreamSubscriptions(AeronResources resources, String channel, MessageCodec codec) {
+    this.resources = resources;
+    this.channel = channel;
+    this.codec = codec;
+  }
+
+  /**
+   * Builds the subscription channel joining the server's dynamic multi-destination-cast publication.
+   *
+   * @param host host of both ends.
+   * @param port local port the streams are received on.
+   * @param controlPort server control port.
+   * @return channel uri.
+   */
+  static String channel(String host, int port, int controlPort) {
+    return new ChannelUriStringBuilder()
+        .media("udp")
+        .reliable(Boolean.TRUE)
+        .mtu(Shared.MTU)
+        .endpoint(host + ":" + port)
+        .controlEndpoint(host + ":" + controlPort)
+        .controlMode("dynamic")
+        .build();
+  }
+
+  /**
+   * Builds the subscription channel receiving from a server in {@link DestinationMode#MANUAL}, which sends to the
+   * endpoint the client announces.
+   *
+   * @param host host the streams are received on.
+   * @param port local port the streams are received on.
+   * @return channel uri.
+   */
+  static String manualChannel(String host, int port) {
+    return new ChannelUriStringBuilder()
+        .media("udp")
+        .reliable(Boolean.TRUE)
+        .mtu(Shared.MTU)
+        .endpoint(host + ":" + port)
+        .build();
+  }
+
+  /**
+   * Merges the frames received on the session with the frames of all joined streams. Stream assignments are consumed
+   * here and don't show up in the result.
+   *
+   * @param sessionFrames frames received on the session.
+   * @return all frames for this client.
+   */
+  Flux<ByteBuffer> frames(Flux<ByteBuffer> sessionFrames) {
+    return Flux.merge(streams.startWith(sessionFrames.filter(frame -> !onControl(frame))), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Takes note of a request sent to the server.
+   *
+   * @param request outgoing request.
+   */
+  synchronized void onRequest(PubSubMessage request) {
+    if (ControlMessages.is(request, ControlMessages.SUBSCRIBE_QUALIFIER)) {
+      patterns.merge(ControlMessages.topic(request, ControlMessages.SUBSCRIBE_QUALIFIER), 1, Integer::sum);
+    } else if (ControlMessages.isReplay(request)) {
+      // the server subscribes once the replay has caught up
+      patterns.merge(ControlMessages.replayTopic(request), 1, Integer::sum);
+    } else if (ControlMessages.is(request, ControlMessages.RESUME_FROM_QUALIFIER)) {
+      patterns.merge(ControlMessages.topic(request, ControlMessages.RESUME_FROM_QUALIFIER), 1, Integer::sum);
+    } else if (ControlMessages.is(request, ControlMessages.UNSUBSCRIBE_QUALIFIER)) {
+      patterns.computeIfPresent(ControlMessages.topic(request, ControlMessages.UNSUBSCRIBE_QUALIFIER),
+          (pattern, count) -> count == 1 ? null : count - 1);
+    } else {
+      return;
+    }
+    update();
+  }
+
+  private boolean onControl(ByteBuffer frame) {
+    PubSubMessage message;
+    try {
+      message = codec.decode(Unpooled.wrappedBuffer(frame.duplicate()));
+    } catch (MessageCodecException e) {
+      // let the listeners deal with it
+      return false;
+    }
+    if (!ControlMessages.is(message, ControlMessages.STREAM_QUALIFIER) || message.streamId() == null) {
+      return false;
+    }
+    synchronized (this) {
+      assignments.put(ControlMessages.topic(message, ControlMessages.STREAM_QUALIFIER),
+          message.streamId().intValue());
+      update();
+    }
+    return true;
+  }
+
+  private void update() {
+    Set<Integer> needed = new HashSet<>();
+    for (Map.Entry<String, Integer> assignment : assignments.entrySet()) {
+      if (isNeeded(assignment.getKey())) {
+        needed.add(assignment.getValue());
+      }
+    }
+
+    for (Iterator<Map.Entry<Integer, Stream>> it = joined.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Integer, Stream> entry = it.next();
+      if (!needed.contains(entry.getKey())) {
+        entry.getValue().close();
+        it.remove();
+      }
+    }
+    for (Integer streamId : needed) {
+      if (!joined.containsKey(streamId)) {
+        Stream stream = new Stream(resources.aeron().addSubscription(channel, streamId));
+        joined.put(streamId, stream);
+        streams.onNext(stream.frames());
+        LOGGER.debug("Joined stream {}", streamId);
+      }
+    }
+  }
+
+  private boolean isNeeded(String qualifier) {
+    if (patterns.containsKey(null)) {
+      return true;
+    }
+    if (qualifier == null) {
+      return false;
+    }
+    for (String pattern : patterns.keySet()) {
+      if (TopicTrie.matches(pattern, qualifier)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * A joined stream, polled by the event loop as far as its frames are requested.
+   */
+  private final class Stream {
+
+    private final Subscription subscription;
+
+    private volatile FluxSink<ByteBuffer> sink;
+
+    private Stream(Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    private Flux<ByteBuffer> frames() {
+      return Flux.create(sink -> {
+        this.sink = sink;
+        // fragments live in the term buffer only for the duration of the handler, hand out a copy
+        resources.eventLoop().addSubscription(subscription, (buffer, offset, length, header) -> {
+          byte[] bytes = new byte[length];
+          buffer.getBytes(offset, bytes);
+          sink.next(ByteBuffer.wrap(bytes));
+        }, pooler -> sink.onRequest(pooler::request), FRAGMENT_LIMIT);
+      }, FluxSink.OverflowStrategy.IGNORE);
+    }
+
+    private void close() {
+      resources.eventLoop().removeSubscription(subscription);
+      subscription.close();
+      FluxSink<ByteBuffer> s = sink;
+      if (s != null) {
+        s.complete();
+      }
+      LOGGER.debug("Left stream {}", subscription.streamId());
+    }
+  }
+}
@@ -0,0 +1,618 @@
+package io.scalecube.pubsub;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import io.aeron.Aeron;
+import io.aeron.ChannelUri;
+import io.aeron.ChannelUriStringBuilder;
+import io.aeron.CommonContext;
+import io.aeron.Publication;
+import io.aeron.logbuffer.BufferClaim;
+import io.netty.buffer.ByteBuf;
+import io.scalecube.pubsub.aeron.Shared;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageBatch;
+import io.scalecube.pubsub.codec.MessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.agrona.DirectBuffer;
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Server side of topic streams: every topic group gets its own Aeron stream id on one channel, so subscribers poll
+ * only the images of the topics they want and a flood on one topic can't head-of-line block another.
+ *
+ * <p>Stream ids are allocated when a topic group publishes its first message and handed to {@code onAssignment} so
+ * they can be advertised to the clients. Used from the fan-out thread only, except {@link #assignments()}.
+ *
+ * <p>Every stream maps term buffers in the media driver, so their number is bounded: once {@code maxStreams} are open,
+ * a new group shares one of the open streams, chosen by its hash. A stream nothing was published on for
+ * {@code idleTimeoutNanos} is closed, its qualifiers are unassigned and its stream id is handed out again; they get a
+ * stream anew, and are advertised again, with their next message. Clients filter what they receive by topic, so sharing
+ * or reusing a stream id costs bandwidth only.
+ *
+ * <p>With {@link BinaryMessageCodec} a message that fits into a single frame is encoded straight into the term buffer
+ * through {@link Publication#tryClaim}; larger messages and other codecs take a pooled buffer and {@code offer}. With
+ * {@link Batching} on, messages are encoded into the open batch of their stream instead, see {@link #flushBatches}.
+ *
+ * <p>The fan-out thread never waits for a publication. A frame a back-pressured publication doesn't take is parked
+ * with the publication and offered again by {@link #retryParked} on the next duty cycle; frames of the same
+ * publication published while one is parked are dropped and counted, see {@link #drops()}. The other topics go on
+ * unaffected.
+ *
+ * <p>With an IPC channel every topic group is also published on {@code aeron:ipc} under the same stream id, for
+ * clients attached to the same media driver; see {@link IpcMode}.
+ *
+ * <p>On a {@link DestinationMode#MANUAL} channel the destinations are managed here: {@link #addDestination} and
+ * {@link #removeDestination} apply to every topic stream, present and future, and may be called from any thread.
+ */
+final class TopicStreams {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TopicStreams.class);
+
+  static final int BASE_STREAM_ID = Shared.STREAM_ID + 1;
+
+  static final String IPC_CHANNEL = new ChannelUriStringBuilder().media("ipc").build();
+
+  static final int DEFAULT_TOPIC_GROUPS = 16;
+  static final int DEFAULT_MAX_STREAMS = 64;
+  static final long DEFAULT_IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  /**
+   * Key of messages without qualifier in {@link #assignments}, which doesn't take {@code null} keys.
+   */
+  private static final String NO_QUALIFIER = "";
+
+  private final Aeron aeron;
+  private final String channel;
+  private final String ipcChannel;
+  private final boolean manual;
+  private final MessageCodec codec;
+  private final BinaryMessageCodec binaryCodec;
+  private final Batching batching;
+  private final Function<String, String> topicGroup;
+  private final BiConsumer<String, Integer> onAssignment;
+  private final int maxStreams;
+  private final long idleTimeoutNanos;
+
+  // written by the fan-out thread under this object's lock, which destination changes take as well
+  private final Map<String, TopicStream> streams = new HashMap<>();
+  // destination endpoints with their number of sessions, guarded by this
+  private final Map<String, Integer> destinations = new HashMap<>();
+  private final List<TopicStream> streamList = new ArrayList<>();
+  private final Map<String, Integer> assignments = new ConcurrentHashMap<>();
+  private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[0]);
+  private final BufferClaim bufferClaim = new BufferClaim();
+  private int nextStreamId = BASE_STREAM_ID + 1;
+  // stream ids of closed streams, handed out again first
+  private final IntArrayList freeStreamIds = new IntArrayList();
+  private long lastIdleCheckNanos = System.nanoTime();
+  private long drops;
+
+  /**
+   * Creates topic streams.
+   *
+   * @param aeron aeron client.
+   * @param channel publication channel shared by all topic streams.
+   * @param ipcChannel channel to publish on for co-located clients as well, {@code null} for none.
+   * @param codec wire codec.
+   * @param batching how to pack messages into frames.
+   * @param topicGroup maps a qualifier to the group whose stream carries it.
+   * @param onAssignment notified whenever a qualifier gets assigned a stream id.
+   * @param maxStreams streams open at most, groups beyond share them.
+   * @param idleTimeoutNanos time without a message after which a stream is closed.
+   */
+  TopicStreams(Aeron aeron, String channel, String ipcChannel, MessageCodec codec, Batching batching,
+      Function<String, String> topicGroup, BiConsumer<String, Integer> onAssignment, int maxStreams,
+      long idleTimeoutNanos) {
+    this.aeron = aeron;
+    this.channel = channel;
+    this.ipcChannel = ipcChannel;
+    this.manual = CommonContext.MDC_CONTROL_MODE_MANUAL
+        .equals(ChannelUri.parse(channel).get(CommonContext.MDC_CONTROL_MODE_PARAM_NAME));
+    this.codec = codec;
+    this.binaryCodec = codec instanceof BinaryMessageCodec ? (BinaryMessageCodec) codec : null;
+    this.batching = batching;
+    this.topicGroup = topicGroup;
+    this.onAssignment = onAssignment;
+    this.maxStreams = maxStreams;
+    this.idleTimeoutNanos = idleTimeoutNanos;
+  }
+
+  /**
+   * Returns a grouping that hashes qualifiers into a fixed number of groups.
+   *
+   * @param groups number of groups.
+   * @return maps a qualifier to its group.
+   */
+  static Function<String, String> hashedGroups(int groups) {
+    return qualifier -> "#" + Math.floorMod(qualifier.hashCode(), groups);
+  }
+
+  /**
+   * Builds the publication channel: dynamic multi-destination-cast, clients join through the control endpoint.
+   *
+   * @param host server host.
+   * @param controlPort server control port.
+   * @return channel uri.
+   */
+  static String channel(String host, int controlPort) {
+    return new ChannelUriStringBuilder()
+        .media("udp")
+        .reliable(Boolean.TRUE)
+        .mtu(Shared.MTU)
+        .controlEndpoint(host + ":" + controlPort)
+        .controlMode("dynamic")
+        .build();
+  }
+
+  /**
+   * Builds the publication channel for {@link DestinationMode#MANUAL}: multi-destination-cast to the destinations
+   * added by the server.
+   *
+   * @param host server host.
+   * @param controlPort server control port.
+   * @return channel uri.
+   */
+  static String manualChannel(String host, int controlPort) {
+    return new ChannelUriStringBuilder()
+        .media("udp")
+        .reliable(Boolean.TRUE)
+        .mtu(Shared.MTU)
+        .controlEndpoint(host + ":" + controlPort)
+        .controlMode(CommonContext.MDC_CONTROL_MODE_MANUAL)
+        .build();
+  }
+
+  /**
+   * Adds a client endpoint to the topic streams of a {@link DestinationMode#MANUAL} channel, ignored on other channels.
+   *
+   * @param endpoint {@code host:port} the client receives on.
+   */
+  synchronized void addDestination(String endpoint) {
+    if (!manual) {
+      LOGGER.warn("Ignored destination {}, the topic streams don't take destinations", endpoint);
+      return;
+    }
+    if (destinations.merge(endpoint, 1, Integer::sum) == 1) {
+      String destination = destination(endpoint);
+      for (TopicStream stream : streams.values()) {
+        stream.publications[0].addDestination(destination);
+      }
+      LOGGER.debug("Added destination {}", endpoint);
+    }
+  }
+
+  /**
+   * Removes a client endpoint once the last session that announced it has gone away.
+   *
+   * @param endpoint {@code host:port} the client received on.
+   */
+  synchronized void removeDestination(String endpoint) {
+    Integer sessions = destinations.get(endpoint);
+    if (sessions == null) {
+      return;
+    }
+    if (sessions > 1) {
+      destinations.put(endpoint, sessions - 1);
+      return;
+    }
+    destinations.remove(endpoint);
+    String destination = destination(endpoint);
+    for (TopicStream stream : streams.values()) {
+      stream.publications[0].removeDestination(destination);
+    }
+    LOGGER.debug("Removed destination {}", endpoint);
+  }
+
+  /**
+   * Returns the client endpoints the topic streams are sent to, see {@link #addDestination}.
+   *
+   * @return copy of the endpoints.
+   */
+  synchronized Set<String> destinations() {
+    return new HashSet<>(destinations.keySet());
+  }
+
+  private static String destination(String endpoint) {
+    return new ChannelUriStringBuilder().media("udp").endpoint(endpoint).build();
+  }
+
+  /**
+   * Returns the stream assignments made so far.
+   *
+   * @return map of qualifier ({@code ""} for messages without qualifier) to Aeron stream id.
+   */
+  Map<String, Integer> assignments() {
+    return assignments;
+  }
+
+  static String qualifierOf(String assignmentKey) {
+    return NO_QUALIFIER.equals(assignmentKey) ? null : assignmentKey;
+  }
+
+  /**
+   * Returns the number of open streams.
+   *
+   * @return streams.
+   */
+  int streamCount() {
+    return streamList.size();
+  }
+
+  /**
+   * Closes the streams nothing was published on for the idle timeout, checking at most every tenth of it; called on
+   * every duty cycle of the fan-out thread.
+   *
+   * @param nowNanos current {@link System#nanoTime()}.
+   * @return number of streams closed.
+   */
+  int closeIdle(long nowNanos) {
+    if (nowNanos - lastIdleCheckNanos < idleTimeoutNanos / 10) {
+      return 0;
+    }
+    lastIdleCheckNanos = nowNanos;
+    int closed = 0;
+    for (int i = streamList.size() - 1; i >= 0; i--) {
+      TopicStream stream = streamList.get(i);
+      if (nowNanos - stream.lastPublishNanos >= idleTimeoutNanos) {
+        close(stream);
+        closed++;
+      }
+    }
+    return closed;
+  }
+
+  private synchronized void close(TopicStream stream) {
+    flush(stream);
+    int streamId = stream.publications[0].streamId();
+    streams.values().removeIf(value -> value == stream);
+    streamList.remove(stream);
+    assignments.values().removeIf(id -> id == streamId);
+    for (Publication publication : stream.publications) {
+      publication.close();
+    }
+    if (streamId != BASE_STREAM_ID) {
+      freeStreamIds.addInt(streamId);
+    }
+    LOGGER.debug("Closed idle stream {}", streamId);
+  }
+
+  /**
+   * Returns the number of frames dropped because their publication was back pressured.
+   *
+   * @return dropped frames, batches counting once.
+   */
+  long drops() {
+    return drops;
+  }
+
+  /**
+   * Publishes a message on the stream of its topic, parking it with a back-pressured publication, see
+   * {@link #retryParked()}.
+   *
+   * @param message published message.
+   * @throws MessageCodecException in case the message can't be encoded.
+   */
+  void publish(PubSubMessage message) throws MessageCodecException {
+    TopicStream stream = stream(message.qualifier());
+
+    if (binaryCodec != null) {
+      int length = binaryCodec.encodedLength(message);
+      if (reserve(stream, length)) {
+        int offset = stream.batchLength;
+        try {
+          binaryCodec.encode(message, stream.batch, offset);
+        } catch (MessageCodecException e) {
+          stream.batchLength = offset - MessageBatch.LENGTH_PREFIX;
+          throw e;
+        }
+        stream.batchLength += length;
+        return;
+      }
+      if (length <= stream.maxPayloadLength) {
+        for (int i = 0; i < stream.publications.length; i++) {
+          claim(stream, i, message, length);
+        }
+        return;
+      }
+    }
+
+    ByteBuf encoded = codec.encode(message);
+    try {
+      publish(stream, encoded);
+    } finally {
+      encoded.release();
+    }
+  }
+
+  /**
+   * Publishes a message already encoded, e.g. for the last value cache or a journal, on the stream of its topic: the
+   * encoded bytes are copied into the open batch, the claimed frame or the publication, without encoding again.
+   *
+   * @param message published message.
+   * @param encoded the message encoded by the wire codec, not released by this method.
+   */
+  void publish(PubSubMessage message, ByteBuf encoded) {
+    publish(stream(message.qualifier()), encoded);
+  }
+
+  private void publish(TopicStream stream, ByteBuf encoded) {
+    int length = encoded.readableBytes();
+    if (reserve(stream, length)) {
+      stream.batch.putBytes(stream.batchLength, encoded.nioBuffer(), length);
+      stream.batchLength += length;
+      return;
+    }
+    ByteBuffer nioBuffer = encoded.nioBuffer();
+    buffer.wrap(nioBuffer, nioBuffer.position(), nioBuffer.remaining());
+    for (int i = 0; i < stream.publications.length; i++) {
+      if (length <= stream.maxPayloadLength) {
+        claim(stream, i, buffer, length);
+      } else {
+        offer(stream, i, buffer, length);
+      }
+    }
+  }
+
+  /**
+   * Sends the batches that have been open for at least the configured linger.
+   *
+   * @param nowNanos current {@link System#nanoTime()}.
+   * @return number of batches sent.
+   */
+  int flushBatches(long nowNanos) {
+    if (!batching.isEnabled()) {
+      return 0;
+    }
+    int flushed = 0;
+    for (int i = 0, n = streamList.size(); i < n; i++) {
+      TopicStream stream = streamList.get(i);
+      if (stream.batchLength > 0 && nowNanos - stream.batchStartNanos >= batching.lingerNanos()) {
+        flush(stream);
+        flushed++;
+      }
+    }
+    return flushed;
+  }
+
+  /**
+   * Offers the parked frames again, called on every duty cycle of the fan-out thread.
+   *
+   * @return number of parked frames taken by their publications.
+   */
+  int retryParked() {
+    int sent = 0;
+    for (int i = 0, n = streamList.size(); i < n; i++) {
+      TopicStream stream = streamList.get(i);
+      for (int j = 0; j < stream.publications.length; j++) {
+        if (stream.parkedLengths[j] > 0 && unpark(stream, j)) {
+          sent++;
+        }
+      }
+    }
+    return sent;
+  }
+
+  /**
+   * Makes room for a message of given length in the open batch of the stream and writes its length prefix, sending
+   * the batch first if the message doesn't fit anymore.
+   *
+   * @return {@code false} if batching is off or the message is too big for any batch.
+   */
+  private boolean reserve(TopicStream stream, int length) {
+    if (!batching.isEnabled()) {
+      return false;
+    }
+    int maxBatchLength = Math.min(batching.maxBatchLength(), stream.maxPayloadLength);
+    if (!MessageBatch.fits(length, maxBatchLength)) {
+      flush(stream);
+      return false;
+    }
+    if (stream.batchLength + MessageBatch.LENGTH_PREFIX + length > maxBatchLength) {
+      flush(stream);
+    }
+    if (stream.batchLength == 0) {
+      if (stream.batch == null) {
+        stream.batch = new UnsafeBuffer(new byte[maxBatchLength]);
+      }
+      stream.batch.putByte(0, MessageBatch.BATCH_MARKER);
+      stream.batchLength = MessageBatch.HEADER_LENGTH;
+      stream.batchStartNanos = System.nanoTime();
+    }
+    stream.batch.putShort(stream.batchLength, (short) length, LITTLE_ENDIAN);
+    stream.batchLength += MessageBatch.LENGTH_PREFIX;
+    return true;
+  }
+
+  private void flush(TopicStream stream) {
+    if (stream.batchLength > MessageBatch.HEADER_LENGTH) {
+      for (int i = 0; i < stream.publications.length; i++) {
+        offer(stream, i, stream.batch, stream.batchLength);
+      }
+    }
+    stream.batchLength = 0;
+  }
+
+  private void claim(TopicStream stream, int index, PubSubMessage message, int length)
+      throws MessageCodecException {
+    if (!unpark(stream, index)) {
+      drop(stream, index);
+      return;
+    }
+    Publication publication = stream.publications[index];
+    long result = publication.tryClaim(length, bufferClaim);
+    if (result < 0) {
+      if (isBackPressure(publication, result)) {
+        binaryCodec.encode(message, stream.parkingSpace(index, length), 0);
+        stream.parkedLengths[index] = length;
+      }
+      return;
+    }
+    try {
+      binaryCodec.encode(message, bufferClaim.buffer(), bufferClaim.offset());
+    } catch (MessageCodecException e) {
+      bufferClaim.abort();
+      throw e;
+    }
+    bufferClaim.commit();
+  }
+
+  private void claim(TopicStream stream, int index, DirectBuffer buffer, int length) {
+    if (!unpark(stream, index)) {
+      drop(stream, index);
+      return;
+    }
+    Publication publication = stream.publications[index];
+    long result = publication.tryClaim(length, bufferClaim);
+    if (result < 0) {
+      if (isBackPressure(publication, result)) {
+        stream.parkingSpace(index, length).putBytes(0, buffer, 0, length);
+        stream.parkedLengths[index] = length;
+      }
+      return;
+    }
+    bufferClaim.buffer().putBytes(bufferClaim.offset(), buffer, 0, length);
+    bufferClaim.commit();
+  }
+
+  private void offer(TopicStream stream, int index, DirectBuffer buffer, int length) {
+    if (!unpark(stream, index)) {
+      drop(stream, index);
+      return;
+    }
+    Publication publication = stream.publications[index];
+    long result = publication.offer(buffer, 0, length);
+    if (result < 0 && isBackPressure(publication, result)) {
+      stream.parkingSpace(index, length).putBytes(0, buffer, 0, length);
+      stream.parkedLengths[index] = length;
+    }
+  }
+
+  /**
+   * Offers the frame parked with a publication, if any.
+   *
+   * @return {@code false} if the frame is still parked.
+   */
+  private static boolean unpark(TopicStream stream, int index) {
+    int length = stream.parkedLengths[index];
+    if (length == 0) {
+      return true;
+    }
+    Publication publication = stream.publications[index];
+    long result = publication.offer(stream.parked[index], 0, length);
+    if (result < 0 && isBackPressure(publication, result)) {
+      return false;
+    }
+    stream.parkedLengths[index] = 0;
+    return true;
+  }
+
+  private void drop(TopicStream stream, int index) {
+    if (drops++ == 0) {
+      LOGGER.warn("Stream {} is back pressured, dropping messages", stream.publications[index].streamId());
+    }
+  }
+
+  private static boolean isBackPressure(Publication publication, long result) {
+    if (result == Publication.BACK_PRESSURED || result == Publication.ADMIN_ACTION) {
+      return true;
+    }
+    // not connected: nobody has joined the stream yet, closed or max position: nothing to retry
+    LOGGER.debug("Dropped message on stream {}: {}", publication.streamId(), result);
+    return false;
+  }
+
+  private TopicStream stream(String qualifier) {
+    String key = qualifier == null ? NO_QUALIFIER : qualifier;
+    String group = qualifier == null ? NO_QUALIFIER : topicGroup.apply(qualifier);
+
+    TopicStream stream = streams.get(group);
+    if (stream == null) {
+      stream = newStream(group);
+    }
+    stream.lastPublishNanos = System.nanoTime();
+
+    int streamId = stream.publications[0].streamId();
+    if (!assignments.containsKey(key)) {
+      assignments.put(key, streamId);
+      onAssignment.accept(qualifier, streamId);
+    }
+    return stream;
+  }
+
+  private synchronized TopicStream newStream(String group) {
+    if (streamList.size() >= maxStreams) {
+      TopicStream shared = streamList.get(Math.floorMod(group.hashCode(), streamList.size()));
+      streams.put(group, shared);
+      return shared;
+    }
+    int streamId;
+    if (NO_QUALIFIER.equals(group)) {
+      streamId = BASE_STREAM_ID;
+    } else if (!freeStreamIds.isEmpty()) {
+      streamId = freeStreamIds.fastUnorderedRemove(freeStreamIds.size() - 1);
+    } else {
+      streamId = nextStreamId++;
+    }
+    Publication publication = aeron.addPublication(channel, streamId);
+    for (String endpoint : destinations.keySet()) {
+      publication.addDestination(destination(endpoint));
+    }
+    TopicStream stream = ipcChannel == null
+        ? new TopicStream(publication)
+        : new TopicStream(publication, aeron.addPublication(ipcChannel, streamId));
+    streams.put(group, stream);
+    streamList.add(stream);
+    LOGGER.debug("Topic group '{}' assigned stream {}", group, streamId);
+    return stream;
+  }
+
+  /**
+   * Publications of a topic group, network first, the frames parked with them and its open batch.
+   */
+  private static final class TopicStream {
+
+    private final Publication[] publications;
+    private final int maxPayloadLength;
+    private final UnsafeBuffer[] parked;
+    private final int[] parkedLengths;
+
+    private UnsafeBuffer batch;
+    private int batchLength;
+    private long batchStartNanos;
+    private long lastPublishNanos;
+
+    private TopicStream(Publication... publications) {
+      this.publications = publications;
+      int maxPayloadLength = Integer.MAX_VALUE;
+      for (Publication publication : publications) {
+        maxPayloadLength = Math.min(maxPayloadLength, publication.maxPayloadLength());
+      }
+      this.maxPayloadLength = maxPayloadLength;
+      this.parked = new UnsafeBuffer[publications.length];
+      this.parkedLengths = new int[publications.length];
+    }
+
+    private UnsafeBuffer parkingSpace(int index, int length) {
+      UnsafeBuffer space = parked[index];
+      if (space == null || space.capacity() < length) {
+        space = new UnsafeBuffer(new byte[Math.max(length, maxPayloadLength)]);
+        parked[index] = space;
+      }
+      return space;
+    }
+  }
+}
@@ -1,16 +1,459 @@
 package io.scalecube.pubsub;
 
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import io.netty.buffer.Unpooled;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageBatch;
+import io.scalecube.pubsub.codec.MessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import io.scalecube.pubsub.codec.PubSubMessageFlyweight;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.collections.ArrayUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
 
 public class TopicSubscriber {
+  private static final Logger LOGGER = LoggerFactory.getLogger(TopicSubscriber.class);
+
+  private MessageCodec codec;
+  private FluxSink<PubSubMessage> requests;
+  private volatile boolean closed;
+
+  // frames or messages as received, shared by all listeners; only emitted while there are message listeners
+  private final Flux<Received> received;
+  // numbers the received frames or messages, so that a listener skips the ones received before it subscribed
+  private final AtomicLong arrivals = new AtomicLong();
+  private final AtomicInteger messageListeners = new AtomicInteger();
+  // handed every frame on the receiving thread, copy on write
+  private volatile FlyweightListener[] flyweightListeners = new FlyweightListener[0];
+  // local messages encoded for the flyweight listeners, receiving thread only
+  private final ExpandableArrayBuffer encodeBuffer = new ExpandableArrayBuffer();
+  private final UnsafeBuffer frameBuffer = new UnsafeBuffer(new byte[0]);
 
-  private Flux<PubSubMessage> downstream;
+  // listeners per topic, null key stands for every topic; guarded by this
+  private final Map<String, Integer> interest = new HashMap<>();
 
-  public TopicSubscriber(Flux<PubSubMessage> downstream) {
-    this.downstream = downstream;
+  // last sequence received per sequenced qualifier
+  private final Map<String, Long> sequences = new ConcurrentHashMap<>();
+  private final AtomicLong gaps = new AtomicLong();
+
+  /**
+   * Creates a subscriber over a client connection.
+   *
+   * @param frames frames received from the server, batches included, subscribed to once on the first listener and
+   *     shared by all.
+   * @param codec wire codec.
+   * @param requests requests to be sent to the server.
+   */
+  public TopicSubscriber(Flux<ByteBuffer> frames, MessageCodec codec, FluxSink<PubSubMessage> requests) {
+    this(frames, null, codec, requests);
   }
 
-  public Flux<PubSubMessage> listen() {
-    return downstream;
+  private TopicSubscriber(Flux<ByteBuffer> frames, Flux<PubSubMessage> messages, MessageCodec codec,
+      FluxSink<PubSubMessage> requests) {
+    this.codec = codec;
+    this.requests = requests;
+    Flux<Received> source = messages != null
+        ? messages.handle((message, sink) -> {
+          long index = arrivals.getAndIncrement();
+          if (flyweightListeners.length > 0) {
+            dispatch(message);
+          }
+          if (messageListeners.get() > 0) {
+            sink.next(new Received(index, null, message));
+          }
+        })
+        : frames.handle((frame, sink) -> {
+          long index = arrivals.getAndIncrement();
+          if (flyweightListeners.length > 0) {
+            dispatch(frame);
+          }
+          if (messageListeners.get() > 0) {
+            sink.next(new Received(index, frame, null));
+          }
+        });
+    // not fused, so that frames are numbered as they arrive rather than as the listeners drain them
+    this.received = source.hide().publish().autoConnect();
+  }
+
+  /**
+   * Creates a subscriber over a {@link LocalSession}.
+   *
+   * @param messages messages routed to the session, subscribed to once on the first listener and shared by all.
+   * @param codec codec encoding the messages for flyweight listeners.
+   * @param requests requests to be handed to the session.
+   * @return subscriber.
+   */
+  static TopicSubscriber local(Flux<PubSubMessage> messages, MessageCodec codec, FluxSink<PubSubMessage> requests) {
+    return new TopicSubscriber(null, messages, codec, requests);
+  }
+
+  /**
+   * Returns the messages of given topics. Topics are qualifiers or wildcard patterns such as {@code /prices/**}, see
+   * {@link TopicTrie}. The server is told about the topics on subscription and only sends matching messages; when the
+   * last listener of a topic cancels, the server stops sending it.
+   *
+   * <p>Data of each message is a view of the received frame. Frames are copied out of the term buffer on receipt and
+   * never reused, so messages may be kept as they are; {@link PubSubMessage#copy()} detaches one from a larger batch
+   * frame. Connected to a server of the same JVM, messages are the published instances themselves and must not be
+   * modified.
+   *
+   * @param topics qualifiers or patterns of interest, none means every topic.
+   * @return flux of received messages.
+   */
+  public Flux<PubSubMessage> listen(String... topics) {
+    TopicFilter filter = TopicFilter.of(topics);
+    return messages(filter)
+        .doOnSubscribe(s -> subscribe(filter))
+        .doFinally(s -> unsubscribe(filter));
+  }
+
+  /**
+   * Returns the messages of a journaled topic from given journal offset on, then the live ones. The server replays its
+   * journal of the topic, sends a marker with qualifier {@link PubSubMessage#REPLAYED_QUALIFIER} plus the topic, whose
+   * stream id is the offset of the first live message, then the live messages without gap or duplicate; offsets of the
+   * live messages follow on one by one. Messages older than the journal's first record are gone.
+   *
+   * <p>The topic must not have other listeners on this connection, otherwise only its live messages follow. Connected
+   * to a server of the same JVM, there is neither replay nor marker, only the live messages. With topic streams the
+   * live messages come on their own Aeron stream and are not ordered with the replay: some may come before the marker,
+   * and again in the replay.
+   *
+   * @param topic journaled qualifier, no pattern.
+   * @param fromOffset journal offset of the first message.
+   * @return flux of replayed, then live messages.
+   */
+  public Flux<PubSubMessage> replay(String topic, long fromOffset) {
+    return replay(topic, ControlMessages.replayFrom(topic, fromOffset));
+  }
+
+  /**
+   * Returns the messages of a journaled topic published since given instant, then the live ones, see
+   * {@link #replay(String, long)}.
+   *
+   * @param topic journaled qualifier, no pattern.
+   * @param since instant of the first message, as told by the server's clock.
+   * @return flux of replayed, then live messages.
+   */
+  public Flux<PubSubMessage> replay(String topic, Instant since) {
+    return replay(topic, ControlMessages.replaySince(topic, since.toEpochMilli()));
+  }
+
+  /**
+   * Returns the messages of a sequenced topic following given sequence, then the live ones, typically on a new
+   * connection after the previous one was lost. The server retransmits the messages following the sequence from its
+   * retransmit window, sends a marker with qualifier {@link PubSubMessage#RESUMED_QUALIFIER} plus the topic, whose
+   * stream id is the sequence of the first live message, then the live messages without gap or duplicate. If the window no
+   * longer holds all of the missing messages, the marker's stream id is {@code -1}, only the live messages follow and
+   * the skipped sequences count as {@link #gaps()}.
+   *
+   * <p>The topic must not have other listeners on this connection, otherwise only its live messages follow. Connected
+   * to a server of the same JVM, there is neither retransmission nor marker, only the live messages.
+   *
+   * @param topic sequenced qualifier, no pattern.
+   * @param lastSequence sequence of the last message received, e.g. {@link #lastSequence(String)} of the previous
+   *     subscriber; {@code -1} for none.
+   * @return flux of retransmitted, then live messages.
+   */
+  public Flux<PubSubMessage> resume(String topic, long lastSequence) {
+    checkQualifier(topic);
+    TopicFilter filter = TopicFilter.of(topic);
+    return messages(filter)
+        .doOnSubscribe(s -> {
+          if (lastSequence >= 0) {
+            // before anything arrives, so that a failed resume shows as a gap
+            sequences.merge(topic, lastSequence, Math::max);
+          }
+          requestReplay(topic, ControlMessages.resumeFrom(topic, lastSequence));
+        })
+        .doFinally(s -> unsubscribe(filter));
+  }
+
+  /**
+   * Returns the sequence of the last message of a sequenced qualifier received through {@link #listen(String...)},
+   * {@link #replay(String, long)} or {@link #resume(String, long)}; flyweight listeners see the sequence of every
+   * message themselves, see {@link PubSubMessageFlyweight#sequence()}.
+   *
+   * @param qualifier qualifier, no pattern.
+   * @return last sequence, {@code -1} if none was received.
+   */
+  public long lastSequence(String qualifier) {
+    return sequences.getOrDefault(qualifier, -1L);
+  }
+
+  /**
+   * Returns how many sequences were skipped between consecutive messages of a qualifier received so far, see
+   * {@link #lastSequence(String)}. Skipped sequences are messages lost, but also messages left out on purpose by
+   * {@link PubSub.Builder#conflate(String...) conflation} or a snapshot of the newest messages per stream id.
+   *
+   * @return number of sequences skipped.
+   */
+  public long gaps() {
+    return gaps.get();
+  }
+
+  /**
+   * Stops sending requests to the server. Connected to a server of the same JVM, the client's session is removed from
+   * the server and every listener completes; over Aeron the connection stays open. Closing twice has no effect.
+   */
+  public void close() {
+    if (!closed) {
+      closed = true;
+      requests.complete();
+    }
+  }
+
+  private Flux<PubSubMessage> replay(String topic, PubSubMessage request) {
+    checkQualifier(topic);
+    TopicFilter filter = TopicFilter.of(topic);
+    return messages(filter)
+        .doOnSubscribe(s -> requestReplay(topic, request))
+        .doFinally(s -> unsubscribe(filter));
+  }
+
+  private static void checkQualifier(String topic) {
+    if (topic == null || topic.indexOf('*') >= 0) {
+      throw new IllegalArgumentException("Expected a qualifier, not a pattern: " + topic);
+    }
+  }
+
+  /**
+   * Returns the messages received from the time of subscription on. Whatever the shared flux had buffered before, e.g.
+   * for a slow listener, was sent for the other listeners and is skipped.
+   */
+  private Flux<PubSubMessage> messages(TopicFilter filter) {
+    return Flux.defer(() -> {
+      // counted first, so that every frame numbered from start on is emitted
+      messageListeners.incrementAndGet();
+      long start = arrivals.get();
+      return received.filter(r -> r.index >= start);
+    }).concatMapIterable(Received::messages)
+        .filter(message -> filter.matches(message.qualifier()))
+        .doFinally(s -> messageListeners.decrementAndGet());
+  }
+
+  private List<PubSubMessage> decode(ByteBuffer frame) {
+    List<PubSubMessage> messages = new ArrayList<>(1);
+    for (ByteBuffer message : MessageBatch.frames(frame)) {
+      try {
+        // decode over the received frame itself, message data stays a view of it
+        messages.add(codec.decode(Unpooled.wrappedBuffer(message)));
+      } catch (MessageCodecException e) {
+        messages.add(PubSubMessage.error(e));
+      }
+    }
+    return messages;
+  }
+
+  private void track(PubSubMessage message) {
+    Long sequence = message.sequence();
+    if (sequence == null || message.qualifier() == null) {
+      return;
+    }
+    sequences.merge(message.qualifier(), sequence, (last, next) -> {
+      if (next > last + 1) {
+        gaps.addAndGet(next - last - 1);
+        LOGGER.warn("Missed {} messages of {} after sequence {}", next - last - 1, message.qualifier(), last);
+      }
+      return Math.max(last, next);
+    });
+  }
+
+  /**
+   * Hot path alternative to {@link #listen(String...)}: every received message is handed to {@code handler} through a
+   * single reused {@link PubSubMessageFlyweight}, on the receiving thread, straight from the received frame and batches
+   * unpacked in place, so nothing is allocated per message as long as there are no {@link #listen(String...)}
+   * listeners on this subscriber as well. The flyweight is only valid within the callback, use
+   * {@link PubSubMessageFlyweight#copy()} to keep a message; the handler must not block. Requires
+   * {@link BinaryMessageCodec}. Connected to a server of the same JVM, messages are encoded for the flyweight, so
+   * {@link #listen(String...)} is cheaper there.
+   *
+   * @param handler callback invoked for every received message.
+   * @param topics qualifiers or patterns of interest, none means every topic.
+   * @return disposable to stop listening.
+   */
+  public Disposable listen(Consumer<PubSubMessageFlyweight> handler, String... topics) {
+    if (!(codec instanceof BinaryMessageCodec)) {
+      throw new IllegalStateException("Flyweight listening requires " + BinaryMessageCodec.class.getSimpleName());
+    }
+    FlyweightListener listener = new FlyweightListener(TopicFilter.of(topics), handler);
+    // keeps the frames coming, they are handed over to the listener before the shared flux
+    return received.doOnSubscribe(s -> {
+      subscribe(listener.filter);
+      addFlyweightListener(listener);
+    }).doFinally(s -> {
+      removeFlyweightListener(listener);
+      unsubscribe(listener.filter);
+    }).subscribe();
+  }
+
+  private synchronized void addFlyweightListener(FlyweightListener listener) {
+    flyweightListeners = ArrayUtil.add(flyweightListeners, listener);
+  }
+
+  private synchronized void removeFlyweightListener(FlyweightListener listener) {
+    flyweightListeners = ArrayUtil.remove(flyweightListeners, listener);
+  }
+
+  private void dispatch(ByteBuffer frame) {
+    frameBuffer.wrap(frame, frame.position(), frame.remaining());
+    int length = frameBuffer.capacity();
+    if (length == 0 || frameBuffer.getByte(0) != MessageBatch.BATCH_MARKER) {
+      dispatch(frameBuffer, 0, length);
+      return;
+    }
+    int index = MessageBatch.HEADER_LENGTH;
+    while (index + MessageBatch.LENGTH_PREFIX <= length) {
+      int messageLength = frameBuffer.getShort(index, LITTLE_ENDIAN) & 0xFFFF;
+      index += MessageBatch.LENGTH_PREFIX;
+      if (index + messageLength > length) {
+        LOGGER.error("Truncated batch: message of {} bytes at {}, skipping the rest", messageLength, index);
+        return;
+      }
+      dispatch(frameBuffer, index, messageLength);
+      index += messageLength;
+    }
+  }
+
+  private void dispatch(PubSubMessage message) {
+    int length;
+    try {
+      length = ((BinaryMessageCodec) codec).encode(message, encodeBuffer, 0);
+    } catch (MessageCodecException e) {
+      // already logged by the codec
+      return;
+    }
+    dispatch(encodeBuffer, 0, length);
+  }
+
+  private void dispatch(DirectBuffer buffer, int offset, int length) {
+    for (FlyweightListener listener : flyweightListeners) {
+      PubSubMessageFlyweight flyweight = listener.flyweight;
+      try {
+        flyweight.wrap(buffer, offset, length);
+      } catch (RuntimeException e) {
+        LOGGER.error("Failed to decode message, skipping it", e);
+        return;
+      }
+      if (listener.filter.matches(flyweight.qualifier())) {
+        try {
+          listener.handler.accept(flyweight);
+        } catch (RuntimeException e) {
+          LOGGER.error("Flyweight listener failed on {}", flyweight, e);
+        }
+      }
+    }
+  }
+
+  private synchronized void subscribe(TopicFilter filter) {
+    if (filter.patterns() == null) {
+      subscribe((String) null);
+    } else {
+      for (String topic : filter.patterns()) {
+        subscribe(topic);
+      }
+    }
+  }
+
+  private void subscribe(String topic) {
+    if (!interest.containsKey(topic)) {
+      // sequences of qualifiers nobody listened to would count the messages in between as missed
+      sequences.keySet().removeIf(qualifier -> matches(topic, qualifier) && !isListened(qualifier));
+    }
+    if (interest.merge(topic, 1, Integer::sum) == 1) {
+      requests.next(ControlMessages.subscribe(topic));
+    }
+  }
+
+  private synchronized void requestReplay(String topic, PubSubMessage request) {
+    if (interest.merge(topic, 1, Integer::sum) != 1) {
+      LOGGER.warn("Topic {} has other listeners on this connection, not replaying it", topic);
+      return;
+    }
+    requests.next(request);
+  }
+
+  private synchronized void unsubscribe(TopicFilter filter) {
+    if (filter.patterns() == null) {
+      unsubscribe((String) null);
+    } else {
+      for (String topic : filter.patterns()) {
+        unsubscribe(topic);
+      }
+    }
+  }
+
+  private void unsubscribe(String topic) {
+    if (interest.merge(topic, -1, Integer::sum) == 0) {
+      interest.remove(topic);
+      requests.next(ControlMessages.unsubscribe(topic));
+    }
+  }
+
+  private boolean isListened(String qualifier) {
+    for (String topic : interest.keySet()) {
+      if (matches(topic, qualifier)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean matches(String topic, String qualifier) {
+    return topic == null || TopicTrie.matches(topic, qualifier);
+  }
+
+  private static final class FlyweightListener {
+
+    private final TopicFilter filter;
+    private final Consumer<PubSubMessageFlyweight> handler;
+    private final PubSubMessageFlyweight flyweight = new PubSubMessageFlyweight();
+
+    private FlyweightListener(TopicFilter filter, Consumer<PubSubMessageFlyweight> handler) {
+      this.filter = filter;
+      this.handler = handler;
+    }
+  }
+
+  /**
+   * A frame or message as received for the message listeners, decoded and tracked once however many listeners get it.
+   * The shared flux hands it to the listeners one after the other, so it is never used by two threads at once.
+   */
+  private final class Received {
+
+    private final long index;
+    private final ByteBuffer frame;
+    private List<PubSubMessage> messages;
+
+    private Received(long index, ByteBuffer frame, PubSubMessage message) {
+      this.index = index;
+      this.frame = frame;
+      this.messages = message != null ? Collections.singletonList(message) : null;
+    }
+
+    private List<PubSubMessage> messages() {
+      if (messages == null) {
+        messages = decode(frame.duplicate());
+        messages.forEach(TopicSubscriber.this::track);
+      }
+      return messages;
+    }
   }
 }
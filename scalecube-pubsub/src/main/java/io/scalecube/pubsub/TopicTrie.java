@@ -0,0 +1,180 @@
+package io.scalecube.pubsub;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of hierarchical topic patterns over {@code /} separated qualifiers, e.g. {@code /prices/EUR}.
+ *
+ * <p>A pattern segment {@code *} matches exactly one qualifier segment, {@code **} matches zero or more segments; so
+ * {@code /prices/*}{@code /EUR} matches {@code /prices/spot/EUR} and {@code /prices/**} matches every qualifier under
+ * {@code /prices}. Matching a qualifier against the whole index walks one path per wildcard branch, which costs time
+ * proportional to the qualifier depth rather than to the number of patterns.
+ *
+ * <p>Not thread safe.
+ *
+ * @param <T> type of values registered per pattern.
+ */
+final class TopicTrie<T> {
+
+  static final char SEPARATOR = '/';
+  static final String ANY_SEGMENT = "*";
+  static final String ANY_SEGMENTS = "**";
+
+  private final Node<T> root = new Node<>();
+
+  /**
+   * Registers a value under given pattern.
+   *
+   * @param pattern topic pattern.
+   * @param value value to be returned for matching qualifiers.
+   * @return {@code true} if the value was not yet registered under the pattern.
+   */
+  boolean add(String pattern, T value) {
+    Node<T> node = root;
+    for (String segment : split(pattern)) {
+      node = node.children.computeIfAbsent(segment, s -> new Node<>());
+    }
+    return node.values.add(value);
+  }
+
+  /**
+   * Unregisters a value from given pattern, pruning nodes left empty.
+   *
+   * @param pattern topic pattern.
+   * @param value registered value.
+   * @return {@code true} if the value was registered under the pattern.
+   */
+  boolean remove(String pattern, T value) {
+    return remove(root, split(pattern), 0, value);
+  }
+
+  private static <T> boolean remove(Node<T> node, String[] segments, int index, T value) {
+    if (index == segments.length) {
+      return node.values.remove(value);
+    }
+    Node<T> child = node.children.get(segments[index]);
+    if (child == null || !remove(child, segments, index + 1, value)) {
+      return false;
+    }
+    if (child.isEmpty()) {
+      node.children.remove(segments[index]);
+    }
+    return true;
+  }
+
+  /**
+   * Collects values of all patterns matching given qualifier.
+   *
+   * @param qualifier message qualifier.
+   * @param into collection to add matching values to.
+   */
+  void match(String qualifier, Collection<? super T> into) {
+    match(root, split(qualifier), 0, into);
+  }
+
+  private static <T> void match(Node<T> node, String[] segments, int index, Collection<? super T> into) {
+    if (index == segments.length) {
+      into.addAll(node.values);
+    } else {
+      Node<T> exact = node.children.get(segments[index]);
+      if (exact != null) {
+        match(exact, segments, index + 1, into);
+      }
+      Node<T> anySegment = node.children.get(ANY_SEGMENT);
+      if (anySegment != null && anySegment != exact) {
+        match(anySegment, segments, index + 1, into);
+      }
+    }
+    Node<T> anySegments = node.children.get(ANY_SEGMENTS);
+    if (anySegments != null) {
+      for (int i = index; i <= segments.length; i++) {
+        match(anySegments, segments, i, into);
+      }
+    }
+  }
+
+  boolean isEmpty() {
+    return root.isEmpty();
+  }
+
+  /**
+   * Checks a single pattern against a qualifier without allocating, with the same semantics as the index.
+   *
+   * @param pattern topic pattern.
+   * @param qualifier message qualifier.
+   * @return {@code true} if the qualifier matches the pattern.
+   */
+  static boolean matches(String pattern, CharSequence qualifier) {
+    return matches(pattern, 0, qualifier, 0);
+  }
+
+  /*
+   * p and q are the start of the current pattern and qualifier segment; a position past the end of the sequence means
+   * all of its segments have been consumed.
+   */
+  private static boolean matches(String pattern, int p, CharSequence qualifier, int q) {
+    if (p > pattern.length()) {
+      return q > qualifier.length();
+    }
+    int patternEnd = segmentEnd(pattern, p);
+    if (regionEquals(pattern, p, patternEnd, ANY_SEGMENTS)) {
+      for (int i = q; ; i = segmentEnd(qualifier, i) + 1) {
+        if (matches(pattern, patternEnd + 1, qualifier, i)) {
+          return true;
+        }
+        if (i > qualifier.length()) {
+          return false;
+        }
+      }
+    }
+    if (q > qualifier.length()) {
+      return false;
+    }
+    int qualifierEnd = segmentEnd(qualifier, q);
+    boolean segmentMatches = regionEquals(pattern, p, patternEnd, ANY_SEGMENT)
+        || segmentEquals(pattern, p, patternEnd, qualifier, q, qualifierEnd);
+    return segmentMatches && matches(pattern, patternEnd + 1, qualifier, qualifierEnd + 1);
+  }
+
+  private static int segmentEnd(CharSequence sequence, int start) {
+    int i = start;
+    while (i < sequence.length() && sequence.charAt(i) != SEPARATOR) {
+      i++;
+    }
+    return i;
+  }
+
+  private static boolean regionEquals(String pattern, int start, int end, String segment) {
+    return end - start == segment.length() && pattern.regionMatches(start, segment, 0, segment.length());
+  }
+
+  private static boolean segmentEquals(String pattern, int p, int patternEnd, CharSequence qualifier, int q,
+      int qualifierEnd) {
+    if (patternEnd - p != qualifierEnd - q) {
+      return false;
+    }
+    for (int i = 0; i < patternEnd - p; i++) {
+      if (pattern.charAt(p + i) != qualifier.charAt(q + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String[] split(String topic) {
+    return topic.split(String.valueOf(SEPARATOR), -1);
+  }
+
+  private static final class Node<T> {
+    final Map<String, Node<T>> children = new HashMap<>();
+    final Set<T> values = new LinkedHashSet<>();
+
+    boolean isEmpty() {
+      return children.isEmpty() && values.isEmpty();
+    }
+  }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2011-2017 Pivotal Software Inc, All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.scalecube.pubsub.aeron;
+
+
+import io.aeron.FragmentAssembler;
+import io.aeron.Subscription;
+import io.aeron.logbuffer.FragmentHandler;
+import org.agrona.collections.ArrayUtil;
+import org.agrona.concurrent.IdleStrategy;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.ipc.aeron.ControlMessageSubscriber;
+import reactor.ipc.aeron.ControlPoolerFragmentHandler;
+import reactor.ipc.aeron.DataMessageSubscriber;
+import reactor.ipc.aeron.DataPoolerFragmentHandler;
+import reactor.ipc.aeron.PoolerSubscriber;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+public class AeronEventLoop implements Runnable {
+
+  private static final Logger logger = Loggers.getLogger(AeronEventLoop.class);
+
+  private static final long LOAD_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final String name;
+
+  private final ExecutorService executor;
+
+  private final IdleStrategy idleStrategy;
+
+  private volatile boolean isRunning;
+
+  private volatile InnerPooler[] poolers = new InnerPooler[0];
+
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+  // fragments polled during the last load window
+  private volatile long load;
+
+  public AeronEventLoop(String name) {
+    this(name, IdleStrategyPreset.BACKOFF.get());
+  }
+
+  /**
+   * Creates an event loop.
+   *
+   * @param name name of the event loop thread.
+   * @param idleStrategy what the loop does when a round over all subscriptions found no work, see
+   *     {@link IdleStrategyPreset}; owned by this loop.
+   */
+  public AeronEventLoop(String name, IdleStrategy idleStrategy) {
+    this.name = name;
+    this.idleStrategy = idleStrategy;
+    this.executor = createExecutor(name);
+  }
+
+  private ExecutorService createExecutor(String name) {
+    return Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, name + "-[pooler]");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  // FIXME: Thread-safety
+  public void initialise() {
+    if (!isRunning) {
+      isRunning = true;
+      executor.submit(this);
+    }
+  }
+
+  public void addControlSubscription(Subscription subscription, ControlMessageSubscriber subscriber) {
+    InnerPooler pooler = new InnerPooler(subscription, subscriber);
+    addPooler(pooler);
+  }
+
+  public void addDataSubscription(Subscription subscription, DataMessageSubscriber subscriber) {
+    addDataSubscription(subscription, subscriber, FragmentLimit.DEFAULT);
+  }
+
+  public void addDataSubscription(Subscription subscription, DataMessageSubscriber subscriber,
+      FragmentLimit fragmentLimit) {
+    InnerPooler pooler = new InnerPooler(subscription, new DataPoolerFragmentHandler(subscriber), subscriber,
+        fragmentLimit);
+    addPooler(pooler);
+  }
+
+  /**
+   * Polls given subscription with a custom fragment handler. The subscription is polled only as far as
+   * {@code subscriber} requests, which it can do through the {@link org.reactivestreams.Subscription} passed to
+   * {@link PoolerSubscriber#onSubscribe} before this method returns.
+   */
+  public void addSubscription(Subscription subscription, FragmentHandler handler, PoolerSubscriber subscriber) {
+    addSubscription(subscription, handler, subscriber, FragmentLimit.DEFAULT);
+  }
+
+  /**
+   * Same as {@link #addSubscription(Subscription, FragmentHandler, PoolerSubscriber)}, polling up to
+   * {@code fragmentLimit} fragments per round.
+   */
+  public void addSubscription(Subscription subscription, FragmentHandler handler, PoolerSubscriber subscriber,
+      FragmentLimit fragmentLimit) {
+    InnerPooler pooler = new InnerPooler(subscription, handler, subscriber, fragmentLimit);
+    addPooler(pooler);
+  }
+
+  synchronized void addPooler(InnerPooler pooler) {
+    this.poolers = ArrayUtil.add(poolers, pooler);
+  }
+
+  /**
+   * Returns the fragments this loop polled during the last second.
+   */
+  public long load() {
+    return load;
+  }
+
+  public int subscriptionCount() {
+    return poolers.length;
+  }
+
+  /**
+   * Runs a task on the loop thread between two polling rounds.
+   */
+  void execute(Runnable task) {
+    tasks.offer(task);
+  }
+
+  /**
+   * Finds the subscription that polled the most fragments during the last second while staying below given load.
+   *
+   * @return subscription or {@code null} if there is none.
+   */
+  Subscription busiestSubscriptionBelow(long maxLoad) {
+    Subscription busiest = null;
+    long busiestLoad = 0;
+    for (InnerPooler pooler : poolers) {
+      long poolerLoad = pooler.load;
+      if (poolerLoad > busiestLoad && poolerLoad < maxLoad) {
+        busiest = pooler.subscription;
+        busiestLoad = poolerLoad;
+      }
+    }
+    return busiest;
+  }
+
+  public Mono<Void> shutdown() {
+    return Mono.create(sink -> {
+      isRunning = false;
+      AtomicBoolean shouldRetry = new AtomicBoolean(true);
+      sink.onCancel(() -> shouldRetry.set(false));
+      executor.shutdown();
+      try {
+        while (shouldRetry.get()) {
+          boolean isTerminated = executor.awaitTermination(1, TimeUnit.SECONDS);
+          if (isTerminated) {
+            break;
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      sink.success();
+
+      logger.debug("Terminated");
+    });
+  }
+
+  @Override
+  public void run() {
+    logger.debug("[{}] Started", name);
+
+    int busy = 0;
+    long windowEnd = System.nanoTime() + LOAD_WINDOW_NANOS;
+    while (isRunning) {
+      InnerPooler[] ss = poolers;
+      int nReceived = 0;
+      int nBusy = 0;
+      for (InnerPooler data : ss) {
+        int n = data.poll(busy);
+        if (n > 0) {
+          nReceived += n;
+          nBusy++;
+        }
+      }
+      busy = nBusy;
+
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        task.run();
+      }
+
+      long now = System.nanoTime();
+      if (now - windowEnd >= 0) {
+        updateLoad(ss);
+        windowEnd = now + LOAD_WINDOW_NANOS;
+      }
+
+      idleStrategy.idle(nReceived);
+    }
+
+    logger.debug("[{}] Terminated", name);
+  }
+
+  private void updateLoad(InnerPooler[] ss) {
+    long total = 0;
+    for (InnerPooler pooler : ss) {
+      pooler.load = pooler.windowFragments;
+      pooler.windowFragments = 0;
+      total += pooler.load;
+    }
+    load = total;
+  }
+
+  public void removeSubscription(Subscription subscription) {
+    removePooler(subscription);
+  }
+
+  synchronized InnerPooler removePooler(Subscription subscription) {
+    InnerPooler[] ss = poolers;
+    for (int i = 0; i < ss.length; i++) {
+      InnerPooler pooler = ss[i];
+      if (pooler.subscription == subscription) {
+        this.poolers = ArrayUtil.remove(poolers, i);
+        return pooler;
+      }
+    }
+    return null;
+  }
+
+  static class InnerPooler implements org.reactivestreams.Subscription {
+
+    final Subscription subscription;
+
+    final FragmentHandler handler;
+
+    final FragmentLimit fragmentLimit;
+
+    // event loop thread only
+    int limit;
+
+    // event loop thread only
+    long windowFragments;
+
+    // fragments polled during the last load window
+    volatile long load;
+
+    volatile long requested = 0;
+
+    private static final AtomicLongFieldUpdater<InnerPooler> REQUESTED =
+        AtomicLongFieldUpdater.newUpdater(InnerPooler.class, "requested");
+
+    InnerPooler(Subscription subscription, ControlMessageSubscriber subscriber) {
+      this(subscription, new ControlPoolerFragmentHandler(subscriber), subscriber, FragmentLimit.DEFAULT);
+    }
+
+    private InnerPooler(Subscription subscription, FragmentHandler handler, PoolerSubscriber subscriber,
+        FragmentLimit fragmentLimit) {
+      this.subscription = subscription;
+      this.handler = new FragmentAssembler(handler);
+      this.fragmentLimit = fragmentLimit;
+      this.limit = fragmentLimit.initial();
+      if (subscriber != null)
+        subscriber.onSubscribe(this);
+    }
+
+    /**
+     * Polls up to the current fragment limit, as far as requested.
+     *
+     * @param busyPoolers poolers of the loop that polled anything in the previous round.
+     * @return fragments polled.
+     */
+    int poll(int busyPoolers) {
+      int r = (int) Math.min(requested, limit);
+      int nPolled = 0;
+      if (r > 0) {
+        nPolled = subscription.poll(handler, r);
+        if (nPolled > 0) {
+          Operators.produced(REQUESTED, this, nPolled);
+          windowFragments += nPolled;
+        }
+        // a poll cut short by demand says nothing about the backlog
+        if (r == limit) {
+          limit = fragmentLimit.next(limit, nPolled, busyPoolers);
+        }
+      }
+      return nPolled;
+    }
+
+    @Override
+    public void request(long n) {
+      Operators.addCap(REQUESTED, this, n);
+    }
+
+    @Override
+    public void cancel() {}
+  }
+
+}
@@ -0,0 +1,151 @@
+package io.scalecube.pubsub.aeron;
+
+import io.aeron.Subscription;
+import io.aeron.logbuffer.FragmentHandler;
+import java.util.function.Supplier;
+import org.agrona.concurrent.IdleStrategy;
+import reactor.core.publisher.Mono;
+import reactor.ipc.aeron.ControlMessageSubscriber;
+import reactor.ipc.aeron.DataMessageSubscriber;
+import reactor.ipc.aeron.PoolerSubscriber;
+import reactor.util.Logger;
+import reactor.util.Loggers;
+
+/**
+ * A fixed number of {@link AeronEventLoop}s, each on its own thread, sharing the subscriptions of one Aeron client.
+ *
+ * <p>A new subscription goes to the loop that polled the fewest fragments during the last second, the one with fewer
+ * subscriptions on a tie. {@link #rebalance()} moves a busy subscription off the busiest loop: the move is carried out
+ * by that loop between two polling rounds, so the subscription is never polled by two threads and keeps its position,
+ * demand and partially assembled messages.
+ */
+public class AeronEventLoopGroup {
+
+  private static final Logger logger = Loggers.getLogger(AeronEventLoopGroup.class);
+
+  private final AeronEventLoop[] loops;
+
+  /**
+   * Creates a group of event loops.
+   *
+   * @param name prefix of the loop thread names.
+   * @param size number of loops.
+   * @param idleStrategy supplier of an idle strategy per loop.
+   */
+  public AeronEventLoopGroup(String name, int size, Supplier<IdleStrategy> idleStrategy) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("size must be positive: " + size);
+    }
+    this.loops = new AeronEventLoop[size];
+    for (int i = 0; i < size; i++) {
+      loops[i] = new AeronEventLoop(size == 1 ? name : name + "-" + i, idleStrategy.get());
+    }
+  }
+
+  public void initialise() {
+    for (AeronEventLoop loop : loops) {
+      loop.initialise();
+    }
+  }
+
+  public int size() {
+    return loops.length;
+  }
+
+  AeronEventLoop loop(int index) {
+    return loops[index];
+  }
+
+  public void addControlSubscription(Subscription subscription, ControlMessageSubscriber subscriber) {
+    leastLoaded().addControlSubscription(subscription, subscriber);
+  }
+
+  public void addDataSubscription(Subscription subscription, DataMessageSubscriber subscriber) {
+    leastLoaded().addDataSubscription(subscription, subscriber);
+  }
+
+  public void addDataSubscription(Subscription subscription, DataMessageSubscriber subscriber,
+      FragmentLimit fragmentLimit) {
+    leastLoaded().addDataSubscription(subscription, subscriber, fragmentLimit);
+  }
+
+  public void addSubscription(Subscription subscription, FragmentHandler handler, PoolerSubscriber subscriber) {
+    leastLoaded().addSubscription(subscription, handler, subscriber);
+  }
+
+  public void addSubscription(Subscription subscription, FragmentHandler handler, PoolerSubscriber subscriber,
+      FragmentLimit fragmentLimit) {
+    leastLoaded().addSubscription(subscription, handler, subscriber, fragmentLimit);
+  }
+
+  /**
+   * Stops polling given subscription, whichever loop it is on.
+   */
+  public synchronized void removeSubscription(Subscription subscription) {
+    for (AeronEventLoop loop : loops) {
+      if (loop.removePooler(subscription) != null) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Moves one subscription from the busiest to the idlest loop, if that makes the load more even: the moved
+   * subscription is the busiest one below the load difference of the two loops.
+   *
+   * @return {@code true} if a move was scheduled.
+   */
+  public synchronized boolean rebalance() {
+    AeronEventLoop busiest = loops[0];
+    AeronEventLoop idlest = loops[0];
+    for (AeronEventLoop loop : loops) {
+      if (loop.load() > busiest.load()) {
+        busiest = loop;
+      }
+      if (loop.load() < idlest.load()) {
+        idlest = loop;
+      }
+    }
+    if (busiest == idlest) {
+      return false;
+    }
+
+    Subscription hot = busiest.busiestSubscriptionBelow(busiest.load() - idlest.load());
+    if (hot == null) {
+      return false;
+    }
+
+    AeronEventLoop from = busiest;
+    AeronEventLoop to = idlest;
+    from.execute(() -> move(hot, from, to));
+    return true;
+  }
+
+  private synchronized void move(Subscription subscription, AeronEventLoop from, AeronEventLoop to) {
+    AeronEventLoop.InnerPooler pooler = from.removePooler(subscription);
+    if (pooler != null) {
+      to.addPooler(pooler);
+      logger.debug("Moved subscription {} to a less loaded event loop", subscription.streamId());
+    }
+  }
+
+  public Mono<Void> shutdown() {
+    Mono<?>[] shutdowns = new Mono<?>[loops.length];
+    for (int i = 0; i < loops.length; i++) {
+      shutdowns[i] = loops[i].shutdown();
+    }
+    return Mono.when(shutdowns);
+  }
+
+  private AeronEventLoop leastLoaded() {
+    AeronEventLoop result = loops[0];
+    for (int i = 1; i < loops.length; i++) {
+      AeronEventLoop loop = loops[i];
+      if (loop.load() < result.load()
+          || (loop.load() == result.load() && loop.subscriptionCount() < result.subscriptionCount())) {
+        result = loop;
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,102 @@
+package io.scalecube.pubsub.aeron;
+
+import io.aeron.Aeron;
+import java.time.Duration;
+import java.util.function.Supplier;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.IdleStrategy;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+
+/**
+ * Aeron client, the shared media driver it talks to and the event loops polling its subscriptions. With more than one
+ * event loop the subscriptions are rebalanced every few seconds.
+ */
+public final class AeronResources implements AutoCloseable {
+
+  private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(5);
+
+  private static final Duration REBALANCE_INTERVAL = Duration.ofSeconds(5);
+
+  private final SharedMediaDriver driver;
+  private final Aeron aeron;
+  private final AeronEventLoopGroup eventLoop;
+  private final Disposable rebalancing;
+
+  private AeronResources(SharedMediaDriver driver, Aeron aeron, AeronEventLoopGroup eventLoop) {
+    this.driver = driver;
+    this.aeron = aeron;
+    this.eventLoop = eventLoop;
+    this.rebalancing = eventLoop.size() > 1
+        ? Flux.interval(REBALANCE_INTERVAL).subscribe(tick -> eventLoop.rebalance())
+        : Disposables.disposed();
+  }
+
+  /**
+   * Connects to the shared in-process media driver of the default directory and starts an event loop.
+   *
+   * @param name name used for the event loop thread.
+   * @return started resources.
+   */
+  public static AeronResources start(String name) {
+    return start(name, IdleStrategyPreset.BACKOFF);
+  }
+
+  /**
+   * Connects to the shared in-process media driver of the default directory and starts an event loop idling with
+   * given strategy.
+   *
+   * @param name name used for the event loop thread.
+   * @param idleStrategy idle strategy of the event loop.
+   * @return started resources.
+   */
+  public static AeronResources start(String name, Supplier<IdleStrategy> idleStrategy) {
+    return start(name, idleStrategy, 1);
+  }
+
+  /**
+   * Connects to the shared in-process media driver of the default directory and starts a group of event loops.
+   *
+   * @param name name used for the event loop threads.
+   * @param idleStrategy idle strategy of each event loop.
+   * @param eventLoops number of event loops.
+   * @return started resources.
+   */
+  public static AeronResources start(String name, Supplier<IdleStrategy> idleStrategy, int eventLoops) {
+    return start(SharedMediaDriver.acquire(), name, idleStrategy, eventLoops);
+  }
+
+  /**
+   * Connects to given media driver and starts a group of event loops.
+   *
+   * @param driver driver handle, released on {@link #close()}.
+   * @param name name used for the event loop threads.
+   * @param idleStrategy idle strategy of each event loop.
+   * @param eventLoops number of event loops.
+   * @return started resources.
+   */
+  public static AeronResources start(SharedMediaDriver driver, String name, Supplier<IdleStrategy> idleStrategy,
+      int eventLoops) {
+    Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(driver.aeronDirectoryName()));
+    AeronEventLoopGroup eventLoop = new AeronEventLoopGroup(name + "-aeron-event-loop", eventLoops, idleStrategy);
+    eventLoop.initialise();
+    return new AeronResources(driver, aeron, eventLoop);
+  }
+
+  public Aeron aeron() {
+    return aeron;
+  }
+
+  public AeronEventLoopGroup eventLoop() {
+    return eventLoop;
+  }
+
+  @Override
+  public void close() {
+    rebalancing.dispose();
+    eventLoop.shutdown().block(SHUTDOWN_TIMEOUT);
+    CloseHelper.quietClose(aeron);
+    CloseHelper.quietClose(driver);
+  }
+}
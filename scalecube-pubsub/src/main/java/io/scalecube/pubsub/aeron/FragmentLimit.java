@@ -0,0 +1,84 @@
+package io.scalecube.pubsub.aeron;
+
+/**
+ * How many fragments an {@link AeronEventLoop} polls from a subscription per round.
+ *
+ * <p>A fixed limit always polls up to the same number of fragments. An adaptive limit doubles while the subscription
+ * fills every poll (its images have a backlog) and halves while it doesn't, staying within {@code [min, max]}; when
+ * several subscriptions of the loop were busy in the previous round, it is also capped at an equal share of
+ * {@code max} so a burst on one of them doesn't starve the others.
+ */
+public final class FragmentLimit {
+
+  /**
+   * What the event loop used to poll per round.
+   */
+  public static final FragmentLimit DEFAULT = fixed(8);
+
+  private final int min;
+  private final int max;
+
+  private FragmentLimit(int min, int max) {
+    this.min = min;
+    this.max = max;
+  }
+
+  /**
+   * Polls up to {@code limit} fragments per round.
+   *
+   * @param limit fragments per round.
+   * @return fragment limit.
+   */
+  public static FragmentLimit fixed(int limit) {
+    return adaptive(limit, limit);
+  }
+
+  /**
+   * Adapts the fragments per round to the backlog, between {@code min} and {@code max}.
+   *
+   * @param min lower bound, where the limit starts.
+   * @param max upper bound.
+   * @return fragment limit.
+   */
+  public static FragmentLimit adaptive(int min, int max) {
+    if (min <= 0 || max < min) {
+      throw new IllegalArgumentException("Invalid fragment limit bounds: [" + min + ", " + max + "]");
+    }
+    return new FragmentLimit(min, max);
+  }
+
+  public boolean isAdaptive() {
+    return min != max;
+  }
+
+  int initial() {
+    return min;
+  }
+
+  /**
+   * Computes the limit for the next round.
+   *
+   * @param current limit of the round just polled.
+   * @param polled fragments polled in that round.
+   * @param busySubscriptions subscriptions of the loop that polled anything in the previous round.
+   * @return limit for the next round.
+   */
+  int next(int current, int polled, int busySubscriptions) {
+    if (!isAdaptive()) {
+      return max;
+    }
+    int next = current;
+    if (polled >= current) {
+      next = (int) Math.min(max, current * 2L);
+    } else if (polled < current / 2) {
+      next = current / 2;
+    }
+    int fairShare = busySubscriptions > 1 ? max / busySubscriptions : max;
+    return Math.max(min, Math.min(next, fairShare));
+  }
+
+  @Override
+  public String toString() {
+    return isAdaptive() ? "FragmentLimit{adaptive " + min + ".." + max + '}' : "FragmentLimit{" + max + '}';
+  }
+}
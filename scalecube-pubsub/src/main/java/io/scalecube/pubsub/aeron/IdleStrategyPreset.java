@@ -0,0 +1,66 @@
+package io.scalecube.pubsub.aeron;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.SleepingIdleStrategy;
+import org.agrona.concurrent.YieldingIdleStrategy;
+import reactor.ipc.aeron.AeronUtils;
+
+/**
+ * Idle strategies for an {@link AeronEventLoop}, from lowest latency to lowest CPU usage. Each call to {@link #get()}
+ * returns a new strategy, as strategies keep per thread state.
+ */
+public enum IdleStrategyPreset implements Supplier<IdleStrategy> {
+
+  /**
+   * Never gives up the core: lowest latency, one core per event loop at 100%. Pin it to an isolated core.
+   */
+  BUSY_SPIN {
+    @Override
+    public IdleStrategy get() {
+      return new BusySpinIdleStrategy();
+    }
+  },
+
+  /**
+   * Yields the thread when idle: low latency, still keeps a core busy unless other threads want it.
+   */
+  YIELDING {
+    @Override
+    public IdleStrategy get() {
+      return new YieldingIdleStrategy();
+    }
+  },
+
+  /**
+   * Spins, yields, then parks for up to 100 microseconds. The default.
+   */
+  BACKOFF {
+    @Override
+    public IdleStrategy get() {
+      return AeronUtils.newBackoffIdleStrategy();
+    }
+  },
+
+  /**
+   * Parks for a millisecond whenever idle: next to no CPU at rest, adds up to a millisecond of latency.
+   */
+  SLEEPING {
+    @Override
+    public IdleStrategy get() {
+      return new SleepingIdleStrategy(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+  };
+
+  /**
+   * Preset for production deployments with dedicated cores.
+   */
+  public static final IdleStrategyPreset LOW_LATENCY = BUSY_SPIN;
+
+  /**
+   * Preset for shared or staging hosts.
+   */
+  public static final IdleStrategyPreset LOW_CPU = SLEEPING;
+}
@@ -0,0 +1,148 @@
+package io.scalecube.pubsub.aeron;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.agrona.CloseHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tells clients which server publishes on {@code aeron:ipc} through their media driver.
+ *
+ * <p>IPC publications are told apart by stream id only, so a driver carries the IPC streams of one server at most. That
+ * server holds an exclusive lock on a file in the driver directory and writes its control port into it. A client
+ * attached to the same driver finds the file in the same directory. The operating system releases the lock when the
+ * server process dies, so a leftover file is not mistaken for a live server.
+ *
+ * <p>Registrations of this JVM are looked up in memory: closing any channel on the file would drop the process' lock.
+ */
+public final class IpcRegistry implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(IpcRegistry.class);
+
+  static final String FILE_NAME = "pubsub-ipc.lock";
+
+  // guarded by the class lock
+  private static final Map<File, IpcRegistry> LOCAL = new HashMap<>();
+
+  private final File file;
+  private final int controlPort;
+  private final FileChannel channel;
+  private final FileLock lock;
+
+  private IpcRegistry(File file, int controlPort, FileChannel channel, FileLock lock) {
+    this.file = file;
+    this.controlPort = controlPort;
+    this.channel = channel;
+    this.lock = lock;
+  }
+
+  /**
+   * Registers a server as the IPC publisher of given driver.
+   *
+   * @param aeronDirectoryName driver directory.
+   * @param controlPort control port identifying the server.
+   * @return registration, {@code null} if another server is registered already.
+   */
+  public static synchronized IpcRegistry register(String aeronDirectoryName, int controlPort) {
+    File file = file(aeronDirectoryName);
+    if (LOCAL.containsKey(file)) {
+      return null;
+    }
+    FileChannel channel = null;
+    try {
+      channel = new RandomAccessFile(file, "rw").getChannel();
+      FileLock lock = tryLock(channel, false);
+      if (lock == null) {
+        CloseHelper.quietClose(channel);
+        return null;
+      }
+      channel.truncate(0);
+      channel.write(ByteBuffer.wrap(String.valueOf(controlPort).getBytes(StandardCharsets.US_ASCII)), 0);
+      channel.force(true);
+      LOGGER.debug("Registered IPC publisher on port {} in {}", controlPort, aeronDirectoryName);
+      IpcRegistry registry = new IpcRegistry(file, controlPort, channel, lock);
+      LOCAL.put(file, registry);
+      return registry;
+    } catch (IOException e) {
+      CloseHelper.quietClose(channel);
+      LOGGER.warn("Failed to register IPC publisher in {}: {}", aeronDirectoryName, e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Tells whether the server with given control port is the live IPC publisher of given driver.
+   *
+   * @param aeronDirectoryName driver directory.
+   * @param controlPort control port identifying the server.
+   * @return {@code true} if clients of this driver can receive from the server over IPC.
+   */
+  public static synchronized boolean isRegistered(String aeronDirectoryName, int controlPort) {
+    File file = file(aeronDirectoryName);
+    IpcRegistry local = LOCAL.get(file);
+    if (local != null) {
+      return local.controlPort == controlPort;
+    }
+    if (!file.isFile()) {
+      return false;
+    }
+    try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+      FileLock lock = tryLock(channel, true);
+      if (lock != null) {
+        // nobody holds it: left behind by a server that's gone
+        lock.release();
+        return false;
+      }
+      ByteBuffer bytes = ByteBuffer.allocate(16);
+      int length = Math.max(channel.read(bytes, 0), 0);
+      String port = new String(bytes.array(), 0, length, StandardCharsets.US_ASCII).trim();
+      return String.valueOf(controlPort).equals(port);
+    } catch (IOException e) {
+      LOGGER.debug("Failed to read IPC registration in {}: {}", aeronDirectoryName, e.toString());
+      return false;
+    }
+  }
+
+  private static File file(String aeronDirectoryName) {
+    return new File(aeronDirectoryName, FILE_NAME).getAbsoluteFile();
+  }
+
+  /**
+   * Returns the lock, {@code null} if held by another process.
+   */
+  private static FileLock tryLock(FileChannel channel, boolean shared) throws IOException {
+    try {
+      return channel.tryLock(0, Long.MAX_VALUE, shared);
+    } catch (OverlappingFileLockException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Withdraws the registration.
+   */
+  @Override
+  public void close() {
+    synchronized (IpcRegistry.class) {
+      if (LOCAL.get(file) != this) {
+        return;
+      }
+      LOCAL.remove(file);
+    }
+    try {
+      channel.truncate(0);
+      lock.release();
+    } catch (IOException e) {
+      LOGGER.debug("Failed to release IPC registration {}: {}", file, e.toString());
+    }
+    CloseHelper.quietClose(channel);
+  }
+}
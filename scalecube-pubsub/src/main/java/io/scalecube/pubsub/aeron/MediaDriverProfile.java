@@ -0,0 +1,221 @@
+package io.scalecube.pubsub.aeron;
+
+import io.aeron.CommonContext;
+import io.aeron.driver.Configuration;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import java.io.File;
+import java.util.Objects;
+import org.agrona.concurrent.BusySpinIdleStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Media driver settings: threading mode, term buffer length, socket buffers, MTU, directory and whether term buffers
+ * are pre-touched. Start from {@link #defaults()} or one of the presets and adjust what's needed; unset values keep
+ * the Aeron defaults.
+ *
+ * <p>A profile only takes effect when it launches the driver: a {@link SharedMediaDriver} already running in the same
+ * directory keeps the settings it was launched with.
+ */
+public final class MediaDriverProfile {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MediaDriverProfile.class);
+
+  private static final String SHM = "/dev/shm";
+
+  private ThreadingMode threadingMode;
+  private int termBufferLength;
+  private int socketSndbufLength;
+  private int socketRcvbufLength;
+  private int mtuLength;
+  private String aeronDirectoryName;
+  // null keeps the Aeron default
+  private Boolean preTouch;
+  private boolean busySpin;
+
+  private MediaDriverProfile() {}
+
+  /**
+   * Aeron defaults.
+   *
+   * @return new profile.
+   */
+  public static MediaDriverProfile defaults() {
+    return new MediaDriverProfile();
+  }
+
+  /**
+   * Low latency on dedicated cores: a thread each for conductor, sender and receiver, sender and receiver busy
+   * spinning, 16 MB terms pre-touched on start, 2 MB socket buffers, directory on tmpfs.
+   *
+   * @return new profile.
+   */
+  public static MediaDriverProfile lowLatencyDedicated() {
+    MediaDriverProfile profile = new MediaDriverProfile();
+    profile.threadingMode = ThreadingMode.DEDICATED;
+    profile.busySpin = true;
+    profile.termBufferLength = 16 * 1024 * 1024;
+    profile.socketSndbufLength = 2 * 1024 * 1024;
+    profile.socketRcvbufLength = 2 * 1024 * 1024;
+    profile.preTouch = true;
+    profile.aeronDirectoryName = shmDirectory("scalecube-aeron");
+    return profile;
+  }
+
+  /**
+   * Small footprint for hosts running many processes: one driver thread for everything, 64 KB terms allocated as
+   * they are used, directory on tmpfs.
+   *
+   * @return new profile.
+   */
+  public static MediaDriverProfile sharedLowFootprint() {
+    MediaDriverProfile profile = new MediaDriverProfile();
+    profile.threadingMode = ThreadingMode.SHARED;
+    profile.termBufferLength = 64 * 1024;
+    profile.preTouch = false;
+    profile.aeronDirectoryName = shmDirectory("scalecube-aeron");
+    return profile;
+  }
+
+  /**
+   * Returns a directory under {@code /dev/shm}, where it is available, so the driver's files live in memory.
+   *
+   * @param name directory name.
+   * @return directory path, the Aeron default directory if there is no {@code /dev/shm}.
+   */
+  public static String shmDirectory(String name) {
+    return new File(SHM).isDirectory()
+        ? SHM + File.separator + name + "-" + System.getProperty("user.name", "default")
+        : CommonContext.getAeronDirectoryName();
+  }
+
+  public MediaDriverProfile threadingMode(ThreadingMode threadingMode) {
+    this.threadingMode = Objects.requireNonNull(threadingMode);
+    return this;
+  }
+
+  /**
+   * Sets the term buffer length of both network and IPC publications.
+   *
+   * @param termBufferLength power of two between 64 KB and 1 GB.
+   * @return this profile.
+   */
+  public MediaDriverProfile termBufferLength(int termBufferLength) {
+    this.termBufferLength = termBufferLength;
+    return this;
+  }
+
+  /**
+   * Sets the {@code SO_SNDBUF} of the driver's sockets. Aeron 1.10 reads socket buffer lengths from system properties
+   * once per JVM, so this only takes effect for the first driver launched in the JVM.
+   *
+   * @param socketSndbufLength bytes, 0 for the OS default.
+   * @return this profile.
+   */
+  public MediaDriverProfile socketSndbufLength(int socketSndbufLength) {
+    this.socketSndbufLength = socketSndbufLength;
+    return this;
+  }
+
+  /**
+   * Sets the {@code SO_RCVBUF} of the driver's sockets, with the same restriction as
+   * {@link #socketSndbufLength(int)}.
+   *
+   * @param socketRcvbufLength bytes.
+   * @return this profile.
+   */
+  public MediaDriverProfile socketRcvbufLength(int socketRcvbufLength) {
+    this.socketRcvbufLength = socketRcvbufLength;
+    return this;
+  }
+
+  /**
+   * Sets the default MTU of channels not setting their own.
+   *
+   * @param mtuLength bytes, multiple of 32.
+   * @return this profile.
+   */
+  public MediaDriverProfile mtuLength(int mtuLength) {
+    this.mtuLength = mtuLength;
+    return this;
+  }
+
+  public MediaDriverProfile aeronDirectoryName(String aeronDirectoryName) {
+    this.aeronDirectoryName = Objects.requireNonNull(aeronDirectoryName);
+    return this;
+  }
+
+  /**
+   * Allocates term buffers in full when a publication is created instead of page by page as they fill, which takes the
+   * page faults off the send path. Unless set, the Aeron default applies.
+   *
+   * @param preTouch whether to pre-touch term buffers.
+   * @return this profile.
+   */
+  public MediaDriverProfile preTouch(boolean preTouch) {
+    this.preTouch = preTouch;
+    return this;
+  }
+
+  /**
+   * Returns the directory of this profile.
+   *
+   * @return driver directory, the Aeron default unless set.
+   */
+  public String aeronDirectoryName() {
+    return aeronDirectoryName != null ? aeronDirectoryName : CommonContext.getAeronDirectoryName();
+  }
+
+  /**
+   * Creates a driver context with the settings of this profile.
+   *
+   * @return new driver context.
+   */
+  public MediaDriver.Context toContext() {
+    applySocketBuffers();
+
+    MediaDriver.Context context = new MediaDriver.Context().aeronDirectoryName(aeronDirectoryName());
+    if (threadingMode != null) {
+      context.threadingMode(threadingMode);
+    }
+    if (busySpin) {
+      context.senderIdleStrategy(new BusySpinIdleStrategy()).receiverIdleStrategy(new BusySpinIdleStrategy());
+    }
+    if (termBufferLength > 0) {
+      context.publicationTermBufferLength(termBufferLength).ipcTermBufferLength(termBufferLength);
+    }
+    if (mtuLength > 0) {
+      context.mtuLength(mtuLength);
+    }
+    if (preTouch != null) {
+      context.termBufferSparseFile(!preTouch);
+    }
+    return context;
+  }
+
+  private void applySocketBuffers() {
+    if (socketSndbufLength > 0) {
+      System.setProperty(Configuration.SOCKET_SNDBUF_LENGTH_PROP_NAME, String.valueOf(socketSndbufLength));
+    }
+    if (socketRcvbufLength > 0) {
+      System.setProperty(Configuration.SOCKET_RCVBUF_LENGTH_PROP_NAME, String.valueOf(socketRcvbufLength));
+    }
+    if ((socketSndbufLength > 0 && Configuration.SOCKET_SNDBUF_LENGTH != socketSndbufLength)
+        || (socketRcvbufLength > 0 && Configuration.SOCKET_RCVBUF_LENGTH != socketRcvbufLength)) {
+      LOGGER.warn("Socket buffer lengths were already fixed by an earlier driver, keeping so_sndbuf={} so_rcvbuf={}",
+          Configuration.SOCKET_SNDBUF_LENGTH, Configuration.SOCKET_RCVBUF_LENGTH);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "MediaDriverProfile{threadingMode=" + threadingMode
+        + ", termBufferLength=" + termBufferLength
+        + ", socketSndbufLength=" + socketSndbufLength
+        + ", socketRcvbufLength=" + socketRcvbufLength
+        + ", mtuLength=" + mtuLength
+        + ", aeronDirectoryName=" + aeronDirectoryName()
+        + ", preTouch=" + preTouch
+        + '}';
+  }
+}
@@ -1,4 +1,4 @@
-package io.scalecube.pubsub.example;
+package io.scalecube.pubsub.aeron;
 
 import io.aeron.logbuffer.FrameDescriptor;
 
@@ -0,0 +1,141 @@
+package io.scalecube.pubsub.aeron;
+
+import io.aeron.CommonContext;
+import io.aeron.driver.MediaDriver;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import org.agrona.CloseHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handle on a media driver shared by all Aeron clients of the JVM that use the same directory.
+ *
+ * <p>{@link #acquire(String)} launches an in-process driver for a directory the first time it is asked for and hands
+ * out further handles on the same driver afterwards; the driver is closed when the last handle is. {@link #external}
+ * hands out a handle on a driver running in another process, which is never launched nor closed from here. Either way
+ * the number of driver threads and term buffers stays the same no matter how many clients and servers are started.
+ *
+ * <p>A driver directory is never wiped from under a live driver: if another process already runs a driver in the
+ * directory, {@link #acquire(String)} attaches to it like {@link #external} does. Only the leftovers of a dead driver
+ * are replaced, and a driver launched from here deletes its directory when closed.
+ */
+public final class SharedMediaDriver implements AutoCloseable {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SharedMediaDriver.class);
+
+  // guarded by the class lock
+  private static final Map<String, Entry> DRIVERS = new HashMap<>();
+
+  private final String aeronDirectoryName;
+  private final Entry entry;
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  private SharedMediaDriver(String aeronDirectoryName, Entry entry) {
+    this.aeronDirectoryName = aeronDirectoryName;
+    this.entry = entry;
+  }
+
+  /**
+   * Acquires the in-process driver of the default Aeron directory.
+   *
+   * @return driver handle.
+   */
+  public static SharedMediaDriver acquire() {
+    return acquire(CommonContext.getAeronDirectoryName());
+  }
+
+  /**
+   * Acquires the in-process driver of given directory, launching it with default settings if not running yet.
+   *
+   * @param aeronDirectoryName driver directory.
+   * @return driver handle.
+   */
+  public static SharedMediaDriver acquire(String aeronDirectoryName) {
+    return acquire(aeronDirectoryName, MediaDriver.Context::new);
+  }
+
+  /**
+   * Acquires the in-process driver of given directory, launching it with a context from given supplier if not running
+   * yet. The directory set on the context is overridden with {@code aeronDirectoryName}. If a driver of another
+   * process is active in the directory, the returned handle is attached to it instead, as by {@link #external}.
+   *
+   * @param aeronDirectoryName driver directory.
+   * @param context supplier of the driver context, only used when the driver is launched.
+   * @return driver handle.
+   * @throws io.aeron.driver.exceptions.ActiveDriverException if another process launched a driver in the directory
+   *     between the check and the launch.
+   */
+  public static synchronized SharedMediaDriver acquire(String aeronDirectoryName,
+      Supplier<MediaDriver.Context> context) {
+    Entry entry = DRIVERS.get(aeronDirectoryName);
+    if (entry == null) {
+      MediaDriver.Context driverContext = context.get().aeronDirectoryName(aeronDirectoryName);
+      if (CommonContext.isDriverActive(new File(aeronDirectoryName), driverContext.driverTimeoutMs(), LOGGER::debug)) {
+        LOGGER.info("Attaching to the media driver already running in {}", aeronDirectoryName);
+        return external(aeronDirectoryName);
+      }
+      // fails rather than deleting the files of a driver that became active meanwhile
+      MediaDriver driver = MediaDriver.launch(driverContext.dirDeleteOnStart(false));
+      entry = new Entry(driver);
+      DRIVERS.put(aeronDirectoryName, entry);
+      LOGGER.debug("Launched media driver in {}", aeronDirectoryName);
+    }
+    entry.references++;
+    return new SharedMediaDriver(aeronDirectoryName, entry);
+  }
+
+  /**
+   * Returns a handle on a driver managed outside of this JVM.
+   *
+   * @param aeronDirectoryName directory of the external driver.
+   * @return driver handle, closing it has no effect on the driver.
+   */
+  public static SharedMediaDriver external(String aeronDirectoryName) {
+    return new SharedMediaDriver(aeronDirectoryName, null);
+  }
+
+  public String aeronDirectoryName() {
+    return aeronDirectoryName;
+  }
+
+  /**
+   * Returns the launched driver.
+   *
+   * @return driver, {@code null} for an external driver.
+   */
+  public MediaDriver mediaDriver() {
+    return entry == null ? null : entry.driver;
+  }
+
+  /**
+   * Releases this handle, closing the driver if this was its last handle. Closing twice has no effect.
+   */
+  @Override
+  public void close() {
+    if (entry == null || !closed.compareAndSet(false, true)) {
+      return;
+    }
+    synchronized (SharedMediaDriver.class) {
+      if (--entry.references == 0) {
+        DRIVERS.remove(aeronDirectoryName);
+        CloseHelper.quietClose(entry.driver);
+        // its heartbeat would pass for a live driver until it times out
+        entry.driver.context().deleteAeronDirectory();
+        LOGGER.debug("Closed media driver in {}", aeronDirectoryName);
+      }
+    }
+  }
+
+  private static final class Entry {
+
+    private final MediaDriver driver;
+    private int references;
+
+    private Entry(MediaDriver driver) {
+      this.driver = driver;
+    }
+  }
+}
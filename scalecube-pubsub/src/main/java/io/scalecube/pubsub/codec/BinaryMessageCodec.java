@@ -0,0 +1,457 @@
+package io.scalecube.pubsub.codec;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ReferenceCountUtil;
+import io.scalecube.pubsub.PubSubMessage;
+import java.nio.ByteBuffer;
+import org.agrona.BufferUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.UnsafeAccess;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes/decodes {@link PubSubMessage} to/from a compact binary frame.
+ *
+ * <pre>
+ *   0               1               2               3
+ *  +---------------+---------------+-------------------------------+
+ *  |    version    |     flags     |   qualifier length (LE u16)   |
+ *  +---------------+---------------+-------------------------------+
+ *  |                 qualifier (UTF-8)                           ...
+ *  +---------------------------------------------------------------+
+ *  |                 streamId (unsigned varint)                  ...
+ *  +---------------------------------------------------------------+
+ *  |                 sequence (unsigned varint)                  ...
+ *  +---------------------------------------------------------------+
+ *  |                 data (rest of the frame)                    ...
+ *  +---------------------------------------------------------------+
+ * </pre>
+ *
+ * <p>Qualifier, streamId, sequence and data are only present when the matching bit is set in {@code flags}; frames
+ * without sequence are the same as before it was added. Data has to be one
+ * of {@link ByteBuf}, {@code byte[]} or {@link CharSequence}; it is written as raw bytes and always decoded as a
+ * {@link ByteBuf}.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BinaryMessageCodec.class);
+
+  public static final byte VERSION = 1;
+
+  public static final int QUALIFIER_FLAG = 0x1;
+  public static final int STREAM_ID_FLAG = 0x2;
+  public static final int DATA_FLAG = 0x4;
+  public static final int SEQUENCE_FLAG = 0x8;
+
+  public static final int VERSION_OFFSET = 0;
+  public static final int FLAGS_OFFSET = 1;
+  public static final int QUALIFIER_LENGTH_OFFSET = 2;
+  public static final int HEADER_LENGTH = 4;
+
+  public static final int MAX_QUALIFIER_LENGTH = 0xFFFF;
+
+  private static final int MAX_VARINT_LENGTH = 10;
+
+  @Override
+  public ByteBuf encode(PubSubMessage message) throws MessageCodecException {
+    return encode(message, ByteBufAllocator.DEFAULT);
+  }
+
+  @Override
+  public ByteBuf encode(PubSubMessage message, ByteBufAllocator allocator) throws MessageCodecException {
+    ByteBuf byteBuf = allocator.buffer();
+    try {
+      int flags = 0;
+      byteBuf.writeByte(VERSION);
+      byteBuf.writeByte(0);
+      byteBuf.writeShortLE(0);
+
+      String qualifier = message.qualifier();
+      if (qualifier != null) {
+        flags |= QUALIFIER_FLAG;
+        int qualifierLength = ByteBufUtil.writeUtf8(byteBuf, qualifier);
+        checkQualifierLength(qualifierLength);
+        byteBuf.setShortLE(QUALIFIER_LENGTH_OFFSET, qualifierLength);
+      }
+
+      Long streamId = message.streamId();
+      if (streamId != null) {
+        flags |= STREAM_ID_FLAG;
+        writeVarint(byteBuf, streamId);
+      }
+
+      Long sequence = message.sequence();
+      if (sequence != null) {
+        flags |= SEQUENCE_FLAG;
+        writeVarint(byteBuf, sequence);
+      }
+
+      Object data = message.data();
+      if (data != null) {
+        flags |= DATA_FLAG;
+        if (data instanceof ByteBuf) {
+          ByteBuf dataBin = (ByteBuf) data;
+          byteBuf.writeBytes(dataBin, dataBin.readerIndex(), dataBin.readableBytes());
+        } else if (data instanceof byte[]) {
+          byteBuf.writeBytes((byte[]) data);
+        } else if (data instanceof CharSequence) {
+          ByteBufUtil.writeUtf8(byteBuf, (CharSequence) data);
+        } else {
+          throw unsupportedData(data);
+        }
+      }
+
+      byteBuf.setByte(FLAGS_OFFSET, flags);
+    } catch (Throwable ex) {
+      ReferenceCountUtil.safeRelease(byteBuf);
+      LOGGER.error("Failed to encode message: {}", message, ex);
+      throw new MessageCodecException("Failed to encode message", ex);
+    }
+    return byteBuf;
+  }
+
+  @Override
+  public PubSubMessage decode(ByteBuf byteBuf) throws MessageCodecException {
+    try {
+      int index = byteBuf.readerIndex();
+      int end = byteBuf.writerIndex();
+      checkVersion(byteBuf.getByte(index + VERSION_OFFSET));
+      int flags = byteBuf.getByte(index + FLAGS_OFFSET);
+      int qualifierLength = byteBuf.getUnsignedShortLE(index + QUALIFIER_LENGTH_OFFSET);
+      index += HEADER_LENGTH;
+
+      PubSubMessage.Builder result = PubSubMessage.builder();
+      if ((flags & QUALIFIER_FLAG) != 0) {
+        result.qualifier(byteBuf.toString(index, qualifierLength, UTF_8));
+        index += qualifierLength;
+      }
+      if ((flags & STREAM_ID_FLAG) != 0) {
+        long streamId = getVarint(byteBuf, index);
+        result.streamId(streamId);
+        index += varintLength(streamId);
+      }
+      if ((flags & SEQUENCE_FLAG) != 0) {
+        long sequence = getVarint(byteBuf, index);
+        result.sequence(sequence);
+        index += varintLength(sequence);
+      }
+      if ((flags & DATA_FLAG) != 0) {
+        result.data(byteBuf.slice(index, end - index));
+      }
+      return result.build();
+    } catch (Throwable ex) {
+      LOGGER.error("Failed to decode message: {}", ByteBufUtil.hexDump(byteBuf), ex);
+      throw new MessageCodecException("Failed to decode message", ex);
+    }
+  }
+
+  /**
+   * Computes the exact number of bytes {@link #encode(PubSubMessage, MutableDirectBuffer, int)} will write.
+   *
+   * @param message - message to be encoded.
+   * @return encoded length in bytes.
+   * @throws MessageCodecException in case message data has an unsupported type.
+   */
+  public int encodedLength(PubSubMessage message) throws MessageCodecException {
+    int length = HEADER_LENGTH;
+    if (message.qualifier() != null) {
+      length += ByteBufUtil.utf8Bytes(message.qualifier());
+    }
+    if (message.streamId() != null) {
+      length += varintLength(message.streamId());
+    }
+    if (message.sequence() != null) {
+      length += varintLength(message.sequence());
+    }
+    Object data = message.data();
+    if (data != null) {
+      if (data instanceof ByteBuf) {
+        length += ((ByteBuf) data).readableBytes();
+      } else if (data instanceof byte[]) {
+        length += ((byte[]) data).length;
+      } else if (data instanceof CharSequence) {
+        length += utf8Length((CharSequence) data);
+      } else {
+        throw unsupportedData(data);
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Encode given {@code message} straight into given {@code buffer}, which must have at least
+   * {@link #encodedLength(PubSubMessage)} bytes available from {@code offset}.
+   *
+   * @param message - input message to be encoded.
+   * @param buffer - destination buffer.
+   * @param offset - where the frame starts in {@code buffer}.
+   * @return number of bytes written.
+   * @throws MessageCodecException in case of issues during encoding.
+   */
+  public int encode(PubSubMessage message, MutableDirectBuffer buffer, int offset) throws MessageCodecException {
+    try {
+      int flags = 0;
+      int index = offset + HEADER_LENGTH;
+      int qualifierLength = 0;
+
+      String qualifier = message.qualifier();
+      if (qualifier != null) {
+        flags |= QUALIFIER_FLAG;
+        qualifierLength = buffer.putStringWithoutLengthUtf8(index, qualifier);
+        checkQualifierLength(qualifierLength);
+        index += qualifierLength;
+      }
+
+      Long streamId = message.streamId();
+      if (streamId != null) {
+        flags |= STREAM_ID_FLAG;
+        index = putVarint(buffer, index, streamId);
+      }
+
+      Long sequence = message.sequence();
+      if (sequence != null) {
+        flags |= SEQUENCE_FLAG;
+        index = putVarint(buffer, index, sequence);
+      }
+
+      Object data = message.data();
+      if (data != null) {
+        flags |= DATA_FLAG;
+        if (data instanceof ByteBuf) {
+          ByteBuf dataBin = (ByteBuf) data;
+          int length = dataBin.readableBytes();
+          if (dataBin.hasArray()) {
+            buffer.putBytes(index, dataBin.array(), dataBin.arrayOffset() + dataBin.readerIndex(), length);
+          } else if (dataBin.hasMemoryAddress()) {
+            // grows an expandable buffer like the other puts do
+            buffer.checkLimit(index + length);
+            UnsafeAccess.UNSAFE.copyMemory(null, dataBin.memoryAddress() + dataBin.readerIndex(),
+                buffer.byteArray(), buffer.addressOffset() + index, length);
+          } else {
+            // composite, the only case that needs a ByteBuffer
+            buffer.putBytes(index, dataBin.nioBuffer(), length);
+          }
+          index += length;
+        } else if (data instanceof byte[]) {
+          byte[] bytes = (byte[]) data;
+          buffer.putBytes(index, bytes);
+          index += bytes.length;
+        } else if (data instanceof CharSequence) {
+          index = putUtf8(buffer, index, (CharSequence) data);
+        } else {
+          throw unsupportedData(data);
+        }
+      }
+
+      buffer.putByte(offset + VERSION_OFFSET, VERSION);
+      buffer.putByte(offset + FLAGS_OFFSET, (byte) flags);
+      buffer.putShort(offset + QUALIFIER_LENGTH_OFFSET, (short) qualifierLength, LITTLE_ENDIAN);
+      return index - offset;
+    } catch (Throwable ex) {
+      LOGGER.error("Failed to encode message: {}", message, ex);
+      throw new MessageCodecException("Failed to encode message", ex);
+    }
+  }
+
+  /**
+   * Decodes {@link PubSubMessage} from a region of given {@code buffer}. Data is copied out of the buffer, so the region
+   * may be reused (e.g. an Aeron term buffer) once this method returns; see {@link #decodeView} for a copy free decode.
+   *
+   * @param buffer - contains raw {@link PubSubMessage} to be decoded.
+   * @param offset - where the frame starts in {@code buffer}.
+   * @param length - frame length.
+   * @return Decoded {@link PubSubMessage}.
+   * @throws MessageCodecException - in case of issues during deserialization.
+   */
+  public PubSubMessage decode(DirectBuffer buffer, int offset, int length) throws MessageCodecException {
+    try {
+      int index = offset;
+      int end = offset + length;
+      checkVersion(buffer.getByte(index + VERSION_OFFSET));
+      int flags = buffer.getByte(index + FLAGS_OFFSET);
+      int qualifierLength = buffer.getShort(index + QUALIFIER_LENGTH_OFFSET, LITTLE_ENDIAN) & 0xFFFF;
+      index += HEADER_LENGTH;
+
+      PubSubMessage.Builder result = PubSubMessage.builder();
+      if ((flags & QUALIFIER_FLAG) != 0) {
+        result.qualifier(buffer.getStringWithoutLengthUtf8(index, qualifierLength));
+        index += qualifierLength;
+      }
+      if ((flags & STREAM_ID_FLAG) != 0) {
+        long streamId = getVarint(buffer, index);
+        result.streamId(streamId);
+        index += varintLength(streamId);
+      }
+      if ((flags & SEQUENCE_FLAG) != 0) {
+        long sequence = getVarint(buffer, index);
+        result.sequence(sequence);
+        index += varintLength(sequence);
+      }
+      if ((flags & DATA_FLAG) != 0) {
+        byte[] data = new byte[end - index];
+        buffer.getBytes(index, data);
+        result.data(Unpooled.wrappedBuffer(data));
+      }
+      return result.build();
+    } catch (Throwable ex) {
+      LOGGER.error("Failed to decode message at offset {} length {}", offset, length, ex);
+      throw new MessageCodecException("Failed to decode message", ex);
+    }
+  }
+
+  /**
+   * Decodes {@link PubSubMessage} from a region of given {@code buffer} without copying its data, which is a view of
+   * the region like {@link PubSubMessageFlyweight#data()}. The message is only valid as long as the region is, e.g.
+   * within an Aeron fragment handler; use {@link #decode(DirectBuffer, int, int)} to keep it.
+   *
+   * @param buffer - contains raw {@link PubSubMessage} to be decoded.
+   * @param offset - where the frame starts in {@code buffer}.
+   * @param length - frame length.
+   * @return Decoded {@link PubSubMessage} with data viewing {@code buffer}.
+   * @throws MessageCodecException - in case of issues during deserialization.
+   */
+  public PubSubMessage decodeView(DirectBuffer buffer, int offset, int length) throws MessageCodecException {
+    ByteBuf byteBuf;
+    if (buffer.byteArray() != null) {
+      int arrayOffset = (int) (buffer.addressOffset() - UnsafeAccess.ARRAY_BYTE_BASE_OFFSET);
+      byteBuf = Unpooled.wrappedBuffer(buffer.byteArray(), arrayOffset + offset, length);
+    } else if (buffer.byteBuffer() != null) {
+      // off heap, e.g. a mapped term buffer
+      ByteBuffer region = buffer.byteBuffer().duplicate();
+      int start = (int) (buffer.addressOffset() - BufferUtil.address(region)) + offset;
+      region.limit(start + length);
+      region.position(start);
+      byteBuf = Unpooled.wrappedBuffer(region);
+    } else {
+      return decode(buffer, offset, length);
+    }
+    return decode(byteBuf);
+  }
+
+  private static int utf8Length(CharSequence value) {
+    int length = 0;
+    for (int i = 0, count = value.length(); i < count; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        length++;
+      } else if (c < 0x800) {
+        length += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+        length += 4;
+        i++;
+      } else if (Character.isSurrogate(c)) {
+        // unpaired, written as '?'
+        length++;
+      } else {
+        length += 3;
+      }
+    }
+    return length;
+  }
+
+  private static int putUtf8(MutableDirectBuffer buffer, int index, CharSequence value) {
+    for (int i = 0, count = value.length(); i < count; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        buffer.putByte(index++, (byte) c);
+      } else if (c < 0x800) {
+        buffer.putByte(index++, (byte) (0xC0 | (c >> 6)));
+        buffer.putByte(index++, (byte) (0x80 | (c & 0x3F)));
+      } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer.putByte(index++, (byte) (0xF0 | (codePoint >> 18)));
+        buffer.putByte(index++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        buffer.putByte(index++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        buffer.putByte(index++, (byte) (0x80 | (codePoint & 0x3F)));
+      } else if (Character.isSurrogate(c)) {
+        buffer.putByte(index++, (byte) '?');
+      } else {
+        buffer.putByte(index++, (byte) (0xE0 | (c >> 12)));
+        buffer.putByte(index++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+        buffer.putByte(index++, (byte) (0x80 | (c & 0x3F)));
+      }
+    }
+    return index;
+  }
+
+  private static void writeVarint(ByteBuf byteBuf, long value) {
+    while ((value & ~0x7FL) != 0) {
+      byteBuf.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    byteBuf.writeByte((int) value);
+  }
+
+  private static int putVarint(MutableDirectBuffer buffer, int index, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.putByte(index++, (byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.putByte(index++, (byte) value);
+    return index;
+  }
+
+  private static long getVarint(ByteBuf byteBuf, int index) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      checkVarintLength(shift);
+      b = byteBuf.getByte(index++);
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  static long getVarint(DirectBuffer buffer, int index) {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      checkVarintLength(shift);
+      b = buffer.getByte(index++);
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  static int varintLength(long value) {
+    int length = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      length++;
+    }
+    return length;
+  }
+
+  static void checkVersion(byte version) {
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unsupported frame version: " + version);
+    }
+  }
+
+  private static void checkQualifierLength(int qualifierLength) {
+    if (qualifierLength > MAX_QUALIFIER_LENGTH) {
+      throw new IllegalArgumentException("Qualifier is too long: " + qualifierLength + " bytes");
+    }
+  }
+
+  private static void checkVarintLength(int shift) {
+    if (shift >= MAX_VARINT_LENGTH * 7) {
+      throw new IllegalArgumentException("Malformed varint");
+    }
+  }
+
+  private static IllegalArgumentException unsupportedData(Object data) {
+    return new IllegalArgumentException("Unsupported data type: " + data.getClass().getName());
+  }
+}
@@ -0,0 +1,91 @@
+package io.scalecube.pubsub.codec;
+
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Framing of several encoded messages packed into one transport frame.
+ *
+ * <pre>
+ *  +---------------+-------------------------------+---------------------------+-----
+ *  |  BATCH_MARKER |   message length (LE u16)     |   encoded message       ... | ...
+ *  +---------------+-------------------------------+---------------------------+-----
+ * </pre>
+ *
+ * <p>The marker can't start a frame of either codec, so batched and single message frames may be mixed on one
+ * connection and receivers unpack whatever arrives.
+ */
+public final class MessageBatch {
+
+  public static final byte BATCH_MARKER = (byte) 0xBA;
+
+  public static final int HEADER_LENGTH = 1;
+  public static final int LENGTH_PREFIX = 2;
+
+  public static final int MAX_MESSAGE_LENGTH = 0xFFFF;
+
+  private MessageBatch() {}
+
+  /**
+   * Checks whether a message of given length can ever be packed into a batch of given maximum length.
+   *
+   * @param messageLength encoded message length.
+   * @param maxBatchLength maximum batch length.
+   * @return {@code true} if the message fits into an otherwise empty batch.
+   */
+  public static boolean fits(int messageLength, int maxBatchLength) {
+    return messageLength <= MAX_MESSAGE_LENGTH && HEADER_LENGTH + LENGTH_PREFIX + messageLength <= maxBatchLength;
+  }
+
+  /**
+   * Returns the messages of a received frame: the packed messages of a batch or the frame itself.
+   *
+   * @param frame received frame, position to limit.
+   * @return views of the frame, one per message.
+   */
+  public static Iterable<ByteBuffer> frames(ByteBuffer frame) {
+    if (!frame.hasRemaining() || frame.get(frame.position()) != BATCH_MARKER) {
+      return Collections.singletonList(frame);
+    }
+    return () -> new BatchIterator(frame);
+  }
+
+  private static final class BatchIterator implements Iterator<ByteBuffer> {
+
+    private final ByteBuffer batch;
+    private final int end;
+    private int index;
+
+    private BatchIterator(ByteBuffer frame) {
+      this.batch = frame.duplicate().order(LITTLE_ENDIAN);
+      this.end = frame.limit();
+      this.index = frame.position() + HEADER_LENGTH;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index + LENGTH_PREFIX <= end;
+    }
+
+    @Override
+    public ByteBuffer next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int length = batch.getShort(index) & 0xFFFF;
+      int start = index + LENGTH_PREFIX;
+      if (start + length > end) {
+        throw new IllegalStateException("Truncated batch: message of " + length + " bytes at " + start);
+      }
+      index = start + length;
+      batch.limit(index).position(start);
+      ByteBuffer message = batch.slice();
+      batch.limit(end);
+      return message;
+    }
+  }
+}
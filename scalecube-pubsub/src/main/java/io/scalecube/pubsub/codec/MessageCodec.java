@@ -0,0 +1,48 @@
+package io.scalecube.pubsub.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.scalecube.pubsub.PubSubMessage;
+
+/**
+ * Encodes/decodes {@link PubSubMessage} to/from {@link ByteBuf}.
+ */
+public interface MessageCodec {
+
+  /**
+   * Encode given {@code message} to a new {@link ByteBuf}. The caller owns the returned buffer and has to release it.
+   *
+   * @param message - input message to be encoded.
+   * @return buffer holding the encoded message.
+   * @throws MessageCodecException in case of issues during encoding.
+   */
+  ByteBuf encode(PubSubMessage message) throws MessageCodecException;
+
+  /**
+   * Encodes given {@code message} to a new {@link ByteBuf} of given allocator. The caller owns the returned buffer and
+   * has to release it. Codecs not overriding this method encode to a buffer of {@link ByteBufAllocator#DEFAULT} and
+   * copy it.
+   *
+   * @param message - input message to be encoded.
+   * @param allocator - allocator of the returned buffer.
+   * @return buffer holding the encoded message.
+   * @throws MessageCodecException in case of issues during encoding.
+   */
+  default ByteBuf encode(PubSubMessage message, ByteBufAllocator allocator) throws MessageCodecException {
+    ByteBuf encoded = encode(message);
+    try {
+      return allocator.buffer(encoded.readableBytes()).writeBytes(encoded);
+    } finally {
+      encoded.release();
+    }
+  }
+
+  /**
+   * Decodes {@link PubSubMessage} from given {@code byteBuf}. Message data may be a slice of the given buffer.
+   *
+   * @param byteBuf - contains raw {@link PubSubMessage} to be decoded.
+   * @return Decoded {@link PubSubMessage}.
+   * @throws MessageCodecException - in case of issues during deserialization.
+   */
+  PubSubMessage decode(ByteBuf byteBuf) throws MessageCodecException;
+}
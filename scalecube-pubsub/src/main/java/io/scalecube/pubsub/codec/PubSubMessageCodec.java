@@ -3,6 +3,7 @@ package io.scalecube.pubsub.codec;
 import static com.fasterxml.jackson.core.JsonToken.VALUE_NULL;
 import static io.scalecube.pubsub.PubSubMessage.DATA_FIELD;
 import static io.scalecube.pubsub.PubSubMessage.QUALIFIER_FIELD;
+import static io.scalecube.pubsub.PubSubMessage.SEQUENCE_FIELD;
 import static io.scalecube.pubsub.PubSubMessage.STREAM_ID_FIELD;
 import io.scalecube.pubsub.PubSubMessage;
 
@@ -33,9 +34,10 @@ import java.io.OutputStream;
 import java.nio.charset.Charset;
 
 /**
- * Encodes/decodes {@link PubSubMessage} to/from {@link ByteBuf}.
+ * Encodes/decodes {@link PubSubMessage} to/from {@link ByteBuf} as JSON. Handy for debugging, {@link BinaryMessageCodec}
+ * is far cheaper per message.
  */
-public class PubSubMessageCodec {
+public class PubSubMessageCodec implements MessageCodec {
   private static final Logger LOGGER = LoggerFactory.getLogger(PubSubMessageCodec.class);
 
   private static final ObjectMapper objectMapper = objectMapper();
@@ -48,8 +50,14 @@ public class PubSubMessageCodec {
    * @param message - input message to be encoded.
    * @throws MessageCodecException in case of issues during encoding.
    */
+  @Override
   public ByteBuf encode(PubSubMessage message) throws MessageCodecException {
-    ByteBuf byteBuf = ByteBufAllocator.DEFAULT.buffer();
+    return encode(message, ByteBufAllocator.DEFAULT);
+  }
+
+  @Override
+  public ByteBuf encode(PubSubMessage message, ByteBufAllocator allocator) throws MessageCodecException {
+    ByteBuf byteBuf = allocator.buffer();
     try (
         JsonGenerator generator =
             jsonFactory.createGenerator((OutputStream) new ByteBufOutputStream(byteBuf), JsonEncoding.UTF8)) {
@@ -61,6 +69,9 @@ public class PubSubMessageCodec {
       if (message.streamId() != null) {
         generator.writeNumberField(STREAM_ID_FIELD, message.streamId());
       }
+      if (message.sequence() != null) {
+        generator.writeNumberField(SEQUENCE_FIELD, message.sequence());
+      }
       
       // data
       Object data = message.data();
@@ -96,6 +107,7 @@ public class PubSubMessageCodec {
    * @return Decoded {@link PubSubMessage}.
    * @throws MessageCodecException - in case of issues during deserialization.
    */
+  @Override
   public PubSubMessage decode(ByteBuf byteBuf) throws MessageCodecException {
     try (InputStream stream = new ByteBufInputStream(byteBuf.slice())) {
       JsonParser jp = jsonFactory.createParser(stream);
@@ -121,6 +133,9 @@ public class PubSubMessageCodec {
           case STREAM_ID_FIELD:
             result.streamId(jp.getValueAsLong());
             break;
+          case SEQUENCE_FIELD:
+            result.sequence(jp.getValueAsLong());
+            break;
           case DATA_FIELD:
             dataStart = jp.getTokenLocation().getByteOffset();
             if (current.isScalarValue()) {
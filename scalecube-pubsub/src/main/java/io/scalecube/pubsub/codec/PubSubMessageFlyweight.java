@@ -0,0 +1,249 @@
+package io.scalecube.pubsub.codec;
+
+import static io.scalecube.pubsub.codec.BinaryMessageCodec.DATA_FLAG;
+import static io.scalecube.pubsub.codec.BinaryMessageCodec.FLAGS_OFFSET;
+import static io.scalecube.pubsub.codec.BinaryMessageCodec.HEADER_LENGTH;
+import static io.scalecube.pubsub.codec.BinaryMessageCodec.QUALIFIER_FLAG;
+import static io.scalecube.pubsub.codec.BinaryMessageCodec.QUALIFIER_LENGTH_OFFSET;
+import static io.scalecube.pubsub.codec.BinaryMessageCodec.SEQUENCE_FLAG;
+import static io.scalecube.pubsub.codec.BinaryMessageCodec.STREAM_ID_FLAG;
+import static io.scalecube.pubsub.codec.BinaryMessageCodec.VERSION_OFFSET;
+import static java.nio.ByteOrder.LITTLE_ENDIAN;
+
+import io.netty.buffer.Unpooled;
+import io.scalecube.pubsub.PubSubMessage;
+import java.nio.ByteBuffer;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Reusable, allocation free view of a {@link PubSubMessage} encoded by {@link BinaryMessageCodec}.
+ *
+ * <p>A flyweight is re-pointed at every frame with {@code wrap}, so whatever it returns is only valid until the next
+ * {@code wrap}. Use {@link #copy()} to keep a message.
+ */
+public class PubSubMessageFlyweight {
+
+  private static final byte[] EMPTY = new byte[0];
+
+  private final UnsafeBuffer buffer = new UnsafeBuffer(EMPTY);
+  private final UnsafeBuffer data = new UnsafeBuffer(EMPTY);
+  private final Utf8Sequence qualifier = new Utf8Sequence();
+
+  private int flags;
+  private long streamId;
+  private long sequence;
+
+  /**
+   * Points this flyweight at the frame between position and limit of given {@code byteBuffer}.
+   *
+   * @param byteBuffer - buffer holding a single encoded frame.
+   * @return this flyweight.
+   */
+  public PubSubMessageFlyweight wrap(ByteBuffer byteBuffer) {
+    buffer.wrap(byteBuffer, byteBuffer.position(), byteBuffer.remaining());
+    return parse();
+  }
+
+  /**
+   * Points this flyweight at a frame within given {@code buffer}.
+   *
+   * @param buffer - buffer holding the encoded frame.
+   * @param offset - where the frame starts in {@code buffer}.
+   * @param length - frame length.
+   * @return this flyweight.
+   */
+  public PubSubMessageFlyweight wrap(DirectBuffer buffer, int offset, int length) {
+    this.buffer.wrap(buffer, offset, length);
+    return parse();
+  }
+
+  private PubSubMessageFlyweight parse() {
+    BinaryMessageCodec.checkVersion(buffer.getByte(VERSION_OFFSET));
+    flags = buffer.getByte(FLAGS_OFFSET);
+    int index = HEADER_LENGTH;
+
+    if ((flags & QUALIFIER_FLAG) != 0) {
+      int qualifierLength = buffer.getShort(QUALIFIER_LENGTH_OFFSET, LITTLE_ENDIAN) & 0xFFFF;
+      qualifier.wrap(buffer, index, qualifierLength);
+      index += qualifierLength;
+    }
+
+    streamId = 0;
+    if ((flags & STREAM_ID_FLAG) != 0) {
+      streamId = BinaryMessageCodec.getVarint(buffer, index);
+      index += BinaryMessageCodec.varintLength(streamId);
+    }
+
+    sequence = 0;
+    if ((flags & SEQUENCE_FLAG) != 0) {
+      sequence = BinaryMessageCodec.getVarint(buffer, index);
+      index += BinaryMessageCodec.varintLength(sequence);
+    }
+
+    if ((flags & DATA_FLAG) != 0) {
+      data.wrap(buffer, index, buffer.capacity() - index);
+    } else {
+      data.wrap(EMPTY);
+    }
+    return this;
+  }
+
+  public boolean hasQualifier() {
+    return (flags & QUALIFIER_FLAG) != 0;
+  }
+
+  /**
+   * Returns the qualifier, decoded from the frame on first access.
+   *
+   * @return qualifier or {@code null} when the message has none.
+   */
+  public CharSequence qualifier() {
+    return hasQualifier() ? qualifier : null;
+  }
+
+  public boolean hasStreamId() {
+    return (flags & STREAM_ID_FLAG) != 0;
+  }
+
+  /**
+   * Returns the stream id.
+   *
+   * @return stream id or {@code 0} when the message has none, see {@link #hasStreamId()}.
+   */
+  public long streamId() {
+    return streamId;
+  }
+
+  public boolean hasSequence() {
+    return (flags & SEQUENCE_FLAG) != 0;
+  }
+
+  /**
+   * Returns the sequence of the message in its topic.
+   *
+   * @return sequence or {@code 0} when the message has none, see {@link #hasSequence()}.
+   */
+  public long sequence() {
+    return sequence;
+  }
+
+  public boolean hasData() {
+    return (flags & DATA_FLAG) != 0;
+  }
+
+  /**
+   * Returns message data as a view of the wrapped frame.
+   *
+   * @return data slice, empty when the message has none.
+   */
+  public DirectBuffer data() {
+    return data;
+  }
+
+  /**
+   * Materializes the current frame as a standalone {@link PubSubMessage}.
+   *
+   * @return message owning copies of qualifier and data.
+   */
+  public PubSubMessage copy() {
+    PubSubMessage.Builder builder = PubSubMessage.builder();
+    if (hasQualifier()) {
+      builder.qualifier(qualifier.toString());
+    }
+    if (hasStreamId()) {
+      builder.streamId(streamId);
+    }
+    if (hasSequence()) {
+      builder.sequence(sequence);
+    }
+    if (hasData()) {
+      byte[] bytes = new byte[data.capacity()];
+      data.getBytes(0, bytes);
+      builder.data(Unpooled.wrappedBuffer(bytes));
+    }
+    return builder.build();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("PubSubMessageFlyweight{");
+    sb.append("qualifier='").append(qualifier()).append('\'');
+    sb.append(", streamId=").append(hasStreamId() ? String.valueOf(streamId) : "null");
+    if (hasSequence()) {
+      sb.append(", sequence=").append(sequence);
+    }
+    sb.append(", data=").append(data.capacity()).append(" bytes");
+    sb.append('}');
+    return sb.toString();
+  }
+
+  /**
+   * UTF-8 bytes of a frame exposed as a {@link CharSequence}, decoded lazily into a reused char array.
+   */
+  private static final class Utf8Sequence implements CharSequence {
+
+    private DirectBuffer buffer;
+    private int offset;
+    private int length;
+
+    private char[] chars = new char[64];
+    private int charCount = -1;
+
+    void wrap(DirectBuffer buffer, int offset, int length) {
+      this.buffer = buffer;
+      this.offset = offset;
+      this.length = length;
+      this.charCount = -1;
+    }
+
+    private void decode() {
+      if (charCount >= 0) {
+        return;
+      }
+      if (chars.length < length) {
+        chars = new char[length];
+      }
+      int count = 0;
+      for (int i = 0; i < length; i++) {
+        byte b = buffer.getByte(offset + i);
+        if (b < 0) {
+          // non ASCII, let the buffer do proper UTF-8 decoding
+          String value = buffer.getStringWithoutLengthUtf8(offset, length);
+          value.getChars(0, value.length(), chars, 0);
+          charCount = value.length();
+          return;
+        }
+        chars[count++] = (char) b;
+      }
+      charCount = count;
+    }
+
+    @Override
+    public int length() {
+      decode();
+      return charCount;
+    }
+
+    @Override
+    public char charAt(int index) {
+      decode();
+      if (index < 0 || index >= charCount) {
+        throw new IndexOutOfBoundsException("index=" + index + " length=" + charCount);
+      }
+      return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      decode();
+      return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+      decode();
+      return new String(chars, 0, charCount);
+    }
+  }
+}
@@ -7,8 +7,12 @@ import io.aeron.FragmentAssembler;
 import io.aeron.Image;
 import io.aeron.Publication;
 import io.aeron.Subscription;
-import io.aeron.driver.MediaDriver;
-import io.aeron.driver.MediaDriver.Context;
+import io.scalecube.pubsub.aeron.AeronEventLoopGroup;
+import io.scalecube.pubsub.aeron.IdleStrategyPreset;
+import io.scalecube.pubsub.aeron.MediaDriverProfile;
+import io.scalecube.pubsub.aeron.Shared;
+import io.scalecube.pubsub.aeron.SharedMediaDriver;
+import org.agrona.CloseHelper;
 import org.agrona.concurrent.UnsafeBuffer;
 import reactor.ipc.aeron.ControlMessageSubscriber;
 import reactor.ipc.aeron.DataMessageSubscriber;
@@ -21,16 +25,17 @@ public class AeronClient {
 	private String serverAddress;
 	private int serverControlPort;
 	private int serverDataPort;
-	private Context mediaContext;
-	private MediaDriver media;
+	private SharedMediaDriver media;
 	private Aeron.Context aeronContext;
 	private Aeron aeron;
 
 	private FragmentAssembler fragmentAssembler;
 	private String aeronDirectoryName;
-	private AeronEventLoop pooler;
+	private AeronEventLoopGroup pooler;
 	private ControlMessageSubscriber controlSubscriber;
 	private DataMessageSubscriber dataSubscriber;
+	private IdleStrategyPreset idleStrategy;
+	private int eventLoops;
 
 	public AeronClient(Builder builder) {
 
@@ -39,22 +44,42 @@ public class AeronClient {
 		this.serverAddress = builder.serverAddress;
 		this.serverControlPort = builder.serverControlPort;
 		this.serverDataPort = builder.serverDataPort;
-		this.aeronDirectoryName = builder.aeronDirectoryName;
+		this.aeronDirectoryName = builder.aeronDirectoryName != null ? builder.aeronDirectoryName
+				: builder.mediaDriverProfile.aeronDirectoryName();
 		this.controlSubscriber = builder.controlMessageSubscriber;
-		this.mediaContext = new MediaDriver.Context().dirDeleteOnStart(true)
-				.aeronDirectoryName(this.aeronDirectoryName + localPort);
-		this.media = MediaDriver.launch(this.mediaContext);
+		this.idleStrategy = builder.idleStrategy;
+		this.eventLoops = builder.eventLoops;
+		this.media = builder.externalMediaDriver ? SharedMediaDriver.external(this.aeronDirectoryName)
+				: SharedMediaDriver.acquire(this.aeronDirectoryName, builder.mediaDriverProfile::toContext);
 
-		this.aeronContext = new Aeron.Context().aeronDirectoryName(this.aeronDirectoryName + localPort);
+		this.aeronContext = new Aeron.Context().aeronDirectoryName(this.aeronDirectoryName);
 		this.aeron = Aeron.connect(this.aeronContext);
 		this.fragmentAssembler = builder.fragmentAssembler;
 	}
 
 	public void start(FragmentAssembler assembler) {
-		this.pooler = new AeronEventLoop("aeron-event-loop");
+		this.pooler = new AeronEventLoopGroup("aeron-event-loop", this.eventLoops, this.idleStrategy);
 		this.pooler.initialise();
 	}
 
+	/**
+	 * Stops polling, disconnects from the media driver and releases it.
+	 */
+	public void close() {
+		if (this.pooler != null) {
+			this.pooler.shutdown().block();
+		}
+		CloseHelper.quietClose(this.aeron);
+		CloseHelper.quietClose(this.media);
+	}
+
+	/**
+	 * Moves a busy subscription to a less loaded event loop, see {@link AeronEventLoopGroup#rebalance()}.
+	 */
+	public boolean rebalance() {
+		return this.pooler.rebalance();
+	}
+
 	public void addControlSubscription(ControlMessageSubscriber controlMessageSubscriber) {
 		/*
 		 * Create a subscription to read data from the server. This uses dynamic MDC to
@@ -108,7 +133,9 @@ public class AeronClient {
 	}
 
 	static public class Builder {
-		private String aeronDirectoryName = "/scalecube/media/aeron-";
+		private String aeronDirectoryName;
+		private boolean externalMediaDriver;
+		private MediaDriverProfile mediaDriverProfile = MediaDriverProfile.defaults();
 		private String serverAddress = "localhost";
 		private String localAddress = "localhost";
 
@@ -119,6 +146,8 @@ public class AeronClient {
 		
 		private FragmentAssembler fragmentAssembler;
 		private ControlMessageSubscriber controlMessageSubscriber;
+		private IdleStrategyPreset idleStrategy = IdleStrategyPreset.BACKOFF;
+		private int eventLoops = 1;
 
 		public AeronClient start(Builder builder) {
 			return new AeronClient(this);
@@ -160,6 +189,37 @@ public class AeronClient {
 			return this;
 		}
 
+		public Builder idleStrategy(IdleStrategyPreset idleStrategy) {
+			this.idleStrategy = idleStrategy;
+			return this;
+		}
+
+		/**
+		 * Clients using the same directory share one media driver.
+		 */
+		public Builder aeronDirectoryName(String aeronDirectoryName) {
+			this.aeronDirectoryName = aeronDirectoryName;
+			return this;
+		}
+
+		/**
+		 * Settings the media driver is launched with, see {@link MediaDriverProfile}.
+		 */
+		public Builder mediaDriverProfile(MediaDriverProfile mediaDriverProfile) {
+			this.mediaDriverProfile = mediaDriverProfile;
+			return this;
+		}
+
+		public Builder externalMediaDriver(boolean externalMediaDriver) {
+			this.externalMediaDriver = externalMediaDriver;
+			return this;
+		}
+
+		public Builder eventLoops(int eventLoops) {
+			this.eventLoops = eventLoops;
+			return this;
+		}
+
 		public Builder addControlSubscription(ControlMessageSubscriber controlMessageSubscriber) {
 			this.controlMessageSubscriber = controlMessageSubscriber;
 			return this;
@@ -8,12 +8,15 @@ import io.aeron.FragmentAssembler;
 import io.aeron.Image;
 import io.aeron.Publication;
 import io.aeron.Subscription;
-import io.aeron.driver.MediaDriver;
+import io.scalecube.pubsub.aeron.MediaDriverProfile;
+import io.scalecube.pubsub.aeron.Shared;
+import io.scalecube.pubsub.aeron.SharedMediaDriver;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import org.agrona.BufferUtil;
+import org.agrona.CloseHelper;
 import org.agrona.concurrent.UnsafeBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,8 +24,7 @@ import reactor.core.publisher.Flux;
 
 public class AeronServer {
 	private final Logger log;
-	private final MediaDriver.Context mediaContext;
-	private final MediaDriver media;
+	private final SharedMediaDriver media;
 	private final Aeron.Context aeronContext;
 	private final Aeron aeron;
 	private final UnsafeBuffer buffer;
@@ -40,11 +42,11 @@ public class AeronServer {
 		this.localAddress = builder.address;
 		this.localControlPort = builder.controlPort;
 		this.localDataPort = builder.dataPort;
-		this.aeronDirectoryName = builder.aeronDirectoryName;
+		this.aeronDirectoryName = builder.aeronDirectoryName != null ? builder.aeronDirectoryName
+				: builder.mediaDriverProfile.aeronDirectoryName();
 
-		this.mediaContext = new MediaDriver.Context().dirDeleteOnStart(true)
-				.aeronDirectoryName(this.aeronDirectoryName);
-		this.media = MediaDriver.launch(this.mediaContext);
+		this.media = builder.externalMediaDriver ? SharedMediaDriver.external(this.aeronDirectoryName)
+				: SharedMediaDriver.acquire(this.aeronDirectoryName, builder.mediaDriverProfile::toContext);
 
 		this.aeronContext = new Aeron.Context().aeronDirectoryName(this.aeronDirectoryName);
 		this.aeron = Aeron.connect(this.aeronContext);
@@ -63,7 +65,9 @@ public class AeronServer {
 	public static class Builder {
 
 		public FragmentAssembler fragmentAssembler;
-		public String aeronDirectoryName = "/dev/sc/aeron-server";
+		public String aeronDirectoryName;
+		boolean externalMediaDriver;
+		MediaDriverProfile mediaDriverProfile = MediaDriverProfile.defaults();
 		int dataPort = 9091;
 		int controlPort = 9090;
 		String address = "localhost";
@@ -83,6 +87,27 @@ public class AeronServer {
 			return this;
 		}
 
+		/**
+		 * Servers and clients using the same directory share one media driver.
+		 */
+		public Builder aeronDirectoryName(String aeronDirectoryName) {
+			this.aeronDirectoryName = aeronDirectoryName;
+			return this;
+		}
+
+		/**
+		 * Settings the media driver is launched with, see {@link MediaDriverProfile}.
+		 */
+		public Builder mediaDriverProfile(MediaDriverProfile mediaDriverProfile) {
+			this.mediaDriverProfile = mediaDriverProfile;
+			return this;
+		}
+
+		public Builder externalMediaDriver(boolean externalMediaDriver) {
+			this.externalMediaDriver = externalMediaDriver;
+			return this;
+		}
+
 		public AeronServer start() {
 			AeronServer server = new AeronServer(this);
 			server.start();
@@ -99,6 +124,14 @@ public class AeronServer {
 		return new Builder();
 	}
 
+	/**
+	 * Disconnects from the media driver and releases it.
+	 */
+	public void close() {
+		CloseHelper.quietClose(this.aeron);
+		CloseHelper.quietClose(this.media);
+	}
+
 	public void start() {
 
 	    final String pub_uri =
@@ -1,20 +1,39 @@
 package io.scalecube.pubsub.example;
 
 import io.aeron.Publication;
+import io.aeron.logbuffer.BufferClaim;
+import io.netty.buffer.ByteBufUtil;
 import org.agrona.MutableDirectBuffer;
 import org.slf4j.Logger;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 public final class Utilities {
+  private static final ThreadLocal<BufferClaim> BUFFER_CLAIM = ThreadLocal.withInitial(BufferClaim::new);
+
   private Utilities() {
 
   }
 
+  /**
+   * Sends a message. When it fits into a single frame it's written straight into the term buffer via
+   * {@link Publication#tryClaim}, otherwise it's staged in {@code buffer} and offered.
+   */
   static void send(final Publication pub, final MutableDirectBuffer buffer, final String message) {
-    final byte[] value = message.getBytes(UTF_8);
-    buffer.putBytes(0, value);
-    final long result = pub.offer(buffer, 0, value.length);
-    
+    final int length = ByteBufUtil.utf8Bytes(message);
+    final long result;
+    if (length <= pub.maxPayloadLength()) {
+      final BufferClaim claim = BUFFER_CLAIM.get();
+      result = pub.tryClaim(length, claim);
+      if (result > 0L) {
+        claim.buffer().putStringWithoutLengthUtf8(claim.offset(), message);
+        claim.commit();
+      }
+    } else {
+      final byte[] value = message.getBytes(UTF_8);
+      buffer.putBytes(0, value);
+      result = pub.offer(buffer, 0, value.length);
+    }
+
     if (result < 0L) {
       System.out.println("could not send: " + Long.valueOf(result));
     }
@@ -0,0 +1,198 @@
+package io.scalecube.pubsub.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.agrona.BitUtil;
+import org.agrona.IoUtil;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.LongArrayList;
+
+/**
+ * Key compaction of the sealed segments of a {@link Journal}: only the newest record of each key is kept, older ones
+ * are dropped. A tombstone, e.g. a message without data, is kept like any other newest record, so that readers learn
+ * about the deletion.
+ *
+ * <p>A pass picks up where the previous one stopped, see {@link #compact(Journal)}. It maps the keys of the segments
+ * written since to their newest offset in a primitive hash map, segment after segment until it holds {@code maxKeys}
+ * keys, then rewrites the segments up to the last one scanned, older ones included, into a work directory of the
+ * journal. Segments losing no record are left alone, segments losing all of them are deleted. The heap a pass takes is
+ * bounded by {@code maxKeys} plus the keys of one segment, whatever the length of the journal; keys beyond it are
+ * compacted by the next pass. The active segment is never compacted.
+ *
+ * <p>A pass runs on any thread, reading segment files the journal doesn't write anymore; the journal's own thread then
+ * swaps the result in with {@link Journal#install(Result)}. One pass at a time per journal, each installed before the
+ * next starts.
+ */
+public final class Compactor {
+
+  static final String WORK_DIRECTORY = "compacting";
+
+  private static final float LOAD_FACTOR = 0.5f;
+  private static final long MISSING_OFFSET = -1;
+
+  private final int maxKeys;
+
+  /**
+   * Creates a compactor.
+   *
+   * @param maxKeys keys a pass collects before rewriting, bounds its heap.
+   */
+  public Compactor(int maxKeys) {
+    if (maxKeys <= 0) {
+      throw new IllegalArgumentException("maxKeys must be positive: " + maxKeys);
+    }
+    this.maxKeys = maxKeys;
+  }
+
+  /**
+   * Compacts the sealed segments of a journal written since its last compaction into its work directory.
+   *
+   * @param journal journal, kept being written by its own thread meanwhile.
+   * @return compaction to {@link Journal#install(Result) install}, {@code null} if there's nothing new to compact.
+   * @throws IOException if the work directory can't be prepared.
+   */
+  public Result compact(Journal journal) throws IOException {
+    long sealedUpTo = journal.activeBaseOffset();
+    long cleanedUpTo = journal.cleanedUpTo();
+    if (sealedUpTo <= cleanedUpTo) {
+      return null;
+    }
+    File directory = journal.directory();
+    long[] baseOffsets = sealedBaseOffsets(directory, sealedUpTo);
+
+    Long2LongHashMap newest = new Long2LongHashMap(
+        BitUtil.findNextPositivePowerOfTwo((int) Math.min(1 << 30, (long) maxKeys * 2)), LOAD_FACTOR, MISSING_OFFSET);
+    long scannedUpTo = sealedUpTo;
+    for (int i = 0; i < baseOffsets.length; i++) {
+      if (baseOffsets[i] < cleanedUpTo) {
+        continue;
+      }
+      if (newest.size() >= maxKeys) {
+        scannedUpTo = baseOffsets[i];
+        break;
+      }
+      Segment segment = Segment.open(directory, baseOffsets[i], journal.indexInterval(), false);
+      try {
+        segment.read(baseOffsets[i], endOf(baseOffsets, i, sealedUpTo),
+            (offset, timestamp, key, buffer, index, length) -> newest.put(key, offset));
+      } finally {
+        segment.close();
+      }
+    }
+
+    File workDirectory = new File(directory, WORK_DIRECTORY);
+    if (workDirectory.exists()) {
+      // left behind by a pass that didn't get installed
+      IoUtil.delete(workDirectory, false);
+    }
+    Files.createDirectories(workDirectory.toPath());
+
+    LongArrayList replaced = new LongArrayList();
+    LongArrayList deleted = new LongArrayList();
+    for (int i = 0; i < baseOffsets.length && baseOffsets[i] < scannedUpTo; i++) {
+      long baseOffset = baseOffsets[i];
+      long end = endOf(baseOffsets, i, sealedUpTo);
+      Segment segment = Segment.open(directory, baseOffset, journal.indexInterval(), false);
+      try {
+        int[] kept = new int[3];
+        segment.read(baseOffset, end, (offset, timestamp, key, buffer, index, length) -> {
+          if (isNewest(newest, key, offset)) {
+            kept[0]++;
+            kept[1] += Segment.recordLength(length);
+          }
+          kept[2]++;
+        });
+        if (kept[0] == kept[2]) {
+          continue;
+        }
+        if (kept[0] == 0) {
+          deleted.addLong(baseOffset);
+          continue;
+        }
+        Segment compacted = Segment.create(workDirectory, baseOffset, kept[1], journal.indexInterval());
+        try {
+          segment.read(baseOffset, end, (offset, timestamp, key, buffer, index, length) -> {
+            if (isNewest(newest, key, offset)) {
+              compacted.append(offset, timestamp, key, buffer, index, length);
+            }
+          });
+        } finally {
+          compacted.close();
+        }
+        replaced.addLong(baseOffset);
+      } finally {
+        segment.close();
+      }
+    }
+    return new Result(workDirectory, replaced.toLongArray(), deleted.toLongArray(), scannedUpTo);
+  }
+
+  private static boolean isNewest(Long2LongHashMap newest, long key, long offset) {
+    // keys not scanned are only in segments cleaned before, where they were the newest already
+    long newestOffset = newest.get(key);
+    return newestOffset == MISSING_OFFSET || offset >= newestOffset;
+  }
+
+  private static long endOf(long[] baseOffsets, int i, long sealedUpTo) {
+    return i + 1 < baseOffsets.length ? baseOffsets[i + 1] : sealedUpTo;
+  }
+
+  private static long[] sealedBaseOffsets(File directory, long sealedUpTo) {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(Segment.LOG_SUFFIX));
+    LongArrayList baseOffsets = new LongArrayList();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        long baseOffset = Long.parseLong(name.substring(0, name.length() - Segment.LOG_SUFFIX.length()));
+        if (baseOffset < sealedUpTo) {
+          baseOffsets.addLong(baseOffset);
+        }
+      }
+    }
+    long[] result = baseOffsets.toLongArray();
+    Arrays.sort(result);
+    return result;
+  }
+
+  /**
+   * Segments rewritten by a compaction pass, waiting to be installed.
+   */
+  public static final class Result {
+
+    private final File directory;
+    private final long[] replaced;
+    private final long[] deleted;
+    private final long cleanedUpTo;
+
+    private Result(File directory, long[] replaced, long[] deleted, long cleanedUpTo) {
+      this.directory = directory;
+      this.replaced = replaced;
+      this.deleted = deleted;
+      this.cleanedUpTo = cleanedUpTo;
+    }
+
+    File directory() {
+      return directory;
+    }
+
+    long[] replaced() {
+      return replaced;
+    }
+
+    long[] deleted() {
+      return deleted;
+    }
+
+    long cleanedUpTo() {
+      return cleanedUpTo;
+    }
+
+    @Override
+    public String toString() {
+      return "Compactor.Result{replaced=" + replaced.length + ", deleted=" + deleted.length + ", cleanedUpTo="
+          + cleanedUpTo + '}';
+    }
+  }
+}
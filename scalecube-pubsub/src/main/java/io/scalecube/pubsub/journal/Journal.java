@@ -0,0 +1,266 @@
+package io.scalecube.pubsub.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Append-only journal of the encoded messages of one topic, in memory-mapped segment files of a directory.
+ *
+ * <p>Every record gets the next offset, starting from zero, and keeps its key and the timestamp it was appended with.
+ * Appending copies the message into the mapped file of the active segment, right after the previous record, and rolls
+ * over to a new segment once the active one is full; nothing is flushed explicitly, so the records survive a crash of
+ * the process but not necessarily one of the machine. Segments are named after the offset of their first record, with a
+ * sparse index next to each, see {@link Segment}; reads and timestamp lookups binary search the segments, then the
+ * index, and scan a few records from there.
+ *
+ * <p>Segments are kept until deleted along with the journal directory, or rewritten by a {@link Compactor}, which may
+ * leave gaps in the offsets. Not thread safe, except for the few methods a compactor calls.
+ */
+public final class Journal implements AutoCloseable {
+
+  /**
+   * Key of records that have none, e.g. messages without stream id.
+   */
+  public static final long NO_KEY = Long.MIN_VALUE;
+
+  private final File directory;
+  private final int segmentLength;
+  private final int indexInterval;
+
+  private final List<Segment> segments = new ArrayList<>();
+
+  private final UnsafeBuffer frameBuffer = new UnsafeBuffer(0, 0);
+
+  private Segment active;
+  private long nextOffset;
+
+  // read by the compactor
+  private volatile long activeBaseOffset;
+  private volatile long cleanedUpTo;
+
+  private Journal(File directory, int segmentLength, int indexInterval) {
+    this.directory = directory;
+    this.segmentLength = segmentLength;
+    this.indexInterval = indexInterval;
+  }
+
+  /**
+   * Opens the journal of given directory, creating it if needed.
+   *
+   * @param directory journal directory, holds the journal of one topic only.
+   * @param segmentLength length of a segment file in bytes, bounds the length of a record too.
+   * @param indexInterval bytes of log between two index entries.
+   * @return journal, positioned after its last record.
+   * @throws IOException if the directory can't be created.
+   */
+  public static Journal open(Path directory, int segmentLength, int indexInterval) throws IOException {
+    if (segmentLength < Segment.RECORD_HEADER_LENGTH * 2 || indexInterval <= 0) {
+      throw new IllegalArgumentException("Invalid segment length or index interval: " + segmentLength + ", "
+          + indexInterval);
+    }
+    Journal journal = new Journal(Files.createDirectories(directory).toFile(), segmentLength, indexInterval);
+    journal.load();
+    return journal;
+  }
+
+  private void load() {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(Segment.LOG_SUFFIX));
+    long[] baseOffsets = new long[files == null ? 0 : files.length];
+    for (int i = 0; i < baseOffsets.length; i++) {
+      String name = files[i].getName();
+      baseOffsets[i] = Long.parseLong(name.substring(0, name.length() - Segment.LOG_SUFFIX.length()));
+    }
+    Arrays.sort(baseOffsets);
+    for (int i = 0; i < baseOffsets.length; i++) {
+      segments.add(Segment.open(directory, baseOffsets[i], indexInterval, i == baseOffsets.length - 1));
+    }
+    if (segments.isEmpty()) {
+      segments.add(Segment.create(directory, 0, segmentLength, indexInterval));
+    }
+    active = segments.get(segments.size() - 1);
+    activeBaseOffset = active.baseOffset();
+    nextOffset = active.nextOffset();
+  }
+
+  /**
+   * Appends a record.
+   *
+   * @param timestamp record timestamp, e.g. {@link System#currentTimeMillis()}; expected not to go backwards.
+   * @param key record key for compaction, {@link #NO_KEY} for none.
+   * @param frame encoded message, from its position to its limit; the position is left untouched.
+   * @return offset of the record.
+   * @throws IllegalArgumentException if the message doesn't fit into a segment.
+   */
+  public long append(long timestamp, long key, ByteBuffer frame) {
+    int length = frame.remaining();
+    frameBuffer.wrap(frame, frame.position(), length);
+    if (!active.append(nextOffset, timestamp, key, frameBuffer, 0, length)) {
+      if (Segment.recordLength(length) > segmentLength) {
+        throw new IllegalArgumentException("Message of " + length + " bytes exceeds the segment length "
+            + segmentLength);
+      }
+      active = Segment.create(directory, nextOffset, segmentLength, indexInterval);
+      segments.add(active);
+      activeBaseOffset = nextOffset;
+      active.append(nextOffset, timestamp, key, frameBuffer, 0, length);
+    }
+    return nextOffset++;
+  }
+
+  /**
+   * Returns the offset of the oldest record.
+   *
+   * @return first offset, equal to {@link #nextOffset()} if the journal is empty.
+   */
+  public long firstOffset() {
+    return segments.get(0).baseOffset();
+  }
+
+  /**
+   * Returns the offset the next appended record gets.
+   *
+   * @return next offset.
+   */
+  public long nextOffset() {
+    return nextOffset;
+  }
+
+  /**
+   * Hands records over to a handler, in offset order.
+   *
+   * @param fromOffset offset of the first record; records older than {@link #firstOffset()} are skipped.
+   * @param maxOffsets maximum number of offsets to read, fewer records if compaction left gaps.
+   * @param handler record handler.
+   * @return offset to continue reading from.
+   */
+  public long read(long fromOffset, int maxOffsets, RecordHandler handler) {
+    long from = Math.max(fromOffset, firstOffset());
+    long to = Math.min(nextOffset, from + maxOffsets);
+    while (from < to) {
+      int i = segmentOf(from);
+      long end = i + 1 < segments.size() ? Math.min(to, segments.get(i + 1).baseOffset()) : to;
+      segments.get(i).read(from, end, handler);
+      from = end;
+    }
+    return Math.max(from, fromOffset);
+  }
+
+  /**
+   * Finds the first record not older than given timestamp.
+   *
+   * @param timestamp timestamp.
+   * @return offset of the record, {@link #nextOffset()} if all records are older.
+   */
+  public long offsetOf(long timestamp) {
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      Segment segment = segments.get(i);
+      if (segment.firstTimestamp() < timestamp) {
+        long end = i + 1 < segments.size() ? segments.get(i + 1).baseOffset() : nextOffset;
+        return segment.offsetOf(timestamp, end);
+      }
+    }
+    return firstOffset();
+  }
+
+  /**
+   * Swaps the segments rewritten by a compaction in. Has to be called from the thread owning this journal.
+   *
+   * @param compaction result of {@link Compactor#compact(Journal)} for this journal.
+   * @throws IOException if the compacted files can't be moved in; the segment concerned keeps its records then, compacted
+   *     or not.
+   */
+  public void install(Compactor.Result compaction) throws IOException {
+    for (long baseOffset : compaction.replaced()) {
+      int i = segmentOf(baseOffset);
+      segments.get(i).close();
+      try {
+        // without index the segment is indexed anew on open, whichever log made it
+        Files.deleteIfExists(Segment.indexFile(directory, baseOffset).toPath());
+        Files.move(Segment.logFile(compaction.directory(), baseOffset).toPath(),
+            Segment.logFile(directory, baseOffset).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.move(Segment.indexFile(compaction.directory(), baseOffset).toPath(),
+            Segment.indexFile(directory, baseOffset).toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } finally {
+        segments.set(i, Segment.open(directory, baseOffset, indexInterval, false));
+      }
+    }
+    for (long baseOffset : compaction.deleted()) {
+      int i = segmentOf(baseOffset);
+      segments.remove(i).close();
+      Files.deleteIfExists(Segment.logFile(directory, baseOffset).toPath());
+      Files.deleteIfExists(Segment.indexFile(directory, baseOffset).toPath());
+    }
+    cleanedUpTo = compaction.cleanedUpTo();
+  }
+
+  File directory() {
+    return directory;
+  }
+
+  int indexInterval() {
+    return indexInterval;
+  }
+
+  /**
+   * Returns the offset up to which segments are sealed, safe to read from any thread.
+   *
+   * @return base offset of the active segment.
+   */
+  long activeBaseOffset() {
+    return activeBaseOffset;
+  }
+
+  long cleanedUpTo() {
+    return cleanedUpTo;
+  }
+
+  @Override
+  public void close() {
+    for (Segment segment : segments) {
+      segment.close();
+    }
+    segments.clear();
+  }
+
+  private int segmentOf(long offset) {
+    int low = 0;
+    int high = segments.size() - 1;
+    while (low < high) {
+      int mid = (low + high + 1) >>> 1;
+      if (segments.get(mid).baseOffset() <= offset) {
+        low = mid;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Receives the records read from a journal.
+   */
+  @FunctionalInterface
+  public interface RecordHandler {
+
+    /**
+     * Handles a record.
+     *
+     * @param offset record offset.
+     * @param timestamp record timestamp.
+     * @param key record key.
+     * @param buffer buffer holding the encoded message, valid within this call only.
+     * @param index index of the message in the buffer.
+     * @param length message length.
+     */
+    void onRecord(long offset, long timestamp, long key, DirectBuffer buffer, int index, int length);
+  }
+}
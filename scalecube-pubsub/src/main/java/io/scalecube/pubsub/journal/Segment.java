@@ -0,0 +1,319 @@
+package io.scalecube.pubsub.journal;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * One memory-mapped file of a {@link Journal} with the sparse index next to it.
+ *
+ * <p>The log file has a fixed length and holds records at 8-byte aligned positions:
+ *
+ * <pre>
+ *  +---------------+-----------------------+--------------------+--------------+----------------------+
+ *  |  length (int) |  relative offset (int)|  timestamp (long)  |  key (long)  |  encoded message ... |
+ *  +---------------+-----------------------+--------------------+--------------+----------------------+
+ * </pre>
+ *
+ * <p>The length is written last, with a store-store barrier, so a zero length marks the end of the written records
+ * even after a crash in the middle of an append. Offsets are stored rather than counted, so a compacted segment may
+ * skip some. The index file holds an entry every {@code indexInterval} bytes of log: offset of the record relative to
+ * the segment, its position and its timestamp, 16 bytes in all. The index is only a shortcut; the log is the reference
+ * and the index of the active segment is rebuilt from it on open.
+ */
+final class Segment {
+
+  static final int RECORD_HEADER_LENGTH = 24;
+  private static final int RELATIVE_OFFSET_OFFSET = 4;
+  private static final int TIMESTAMP_OFFSET = 8;
+  private static final int KEY_OFFSET = 16;
+
+  static final int INDEX_ENTRY_LENGTH = 16;
+  private static final int INDEX_POSITION_OFFSET = 4;
+  private static final int INDEX_TIMESTAMP_OFFSET = 8;
+
+  static final String LOG_SUFFIX = ".log";
+  static final String INDEX_SUFFIX = ".index";
+
+  private final long baseOffset;
+  private final int indexInterval;
+
+  private final MappedByteBuffer mappedLog;
+  private final MappedByteBuffer mappedIndex;
+  private final UnsafeBuffer log;
+  private final UnsafeBuffer index;
+
+  private int position;
+  private long nextOffset;
+  private int indexEntries;
+  private int lastIndexedPosition;
+
+  private Segment(long baseOffset, int indexInterval, MappedByteBuffer mappedLog, MappedByteBuffer mappedIndex) {
+    this.baseOffset = baseOffset;
+    this.indexInterval = indexInterval;
+    this.mappedLog = mappedLog;
+    this.mappedIndex = mappedIndex;
+    this.log = new UnsafeBuffer(mappedLog);
+    this.index = new UnsafeBuffer(mappedIndex);
+    this.nextOffset = baseOffset;
+  }
+
+  /**
+   * Creates the files of a new segment.
+   *
+   * @param directory journal directory.
+   * @param baseOffset offset of the segment's first record.
+   * @param length log file length.
+   * @param indexInterval log bytes between two index entries.
+   * @return empty segment.
+   */
+  static Segment create(File directory, long baseOffset, int length, int indexInterval) {
+    MappedByteBuffer log = IoUtil.mapNewFile(logFile(directory, baseOffset), length, false);
+    MappedByteBuffer index = IoUtil.mapNewFile(indexFile(directory, baseOffset), indexLength(length, indexInterval),
+        false);
+    return new Segment(baseOffset, indexInterval, log, index);
+  }
+
+  /**
+   * Maps the files of an existing segment.
+   *
+   * @param directory journal directory.
+   * @param baseOffset offset of the segment's first record.
+   * @param indexInterval log bytes between two index entries.
+   * @param active whether records may still be appended; its end is looked for and its index rebuilt.
+   * @return segment.
+   */
+  static Segment open(File directory, long baseOffset, int indexInterval, boolean active) {
+    File logFile = logFile(directory, baseOffset);
+    File indexFile = indexFile(directory, baseOffset);
+    MappedByteBuffer log = IoUtil.mapExistingFile(logFile, "journal segment");
+    long indexLength = indexLength(log.capacity(), indexInterval);
+    boolean indexed = indexFile.length() == indexLength;
+    MappedByteBuffer index = indexed
+        ? IoUtil.mapExistingFile(indexFile, "journal index")
+        : IoUtil.mapNewFile(indexFile, indexLength, false);
+    Segment segment = new Segment(baseOffset, indexInterval, log, index);
+    if (active || !indexed) {
+      segment.recover(active);
+    } else {
+      segment.loadIndex();
+    }
+    return segment;
+  }
+
+  static File logFile(File directory, long baseOffset) {
+    return new File(directory, String.format("%020d", baseOffset) + LOG_SUFFIX);
+  }
+
+  static File indexFile(File directory, long baseOffset) {
+    return new File(directory, String.format("%020d", baseOffset) + INDEX_SUFFIX);
+  }
+
+  private static long indexLength(int logLength, int indexInterval) {
+    return ((long) logLength / indexInterval + 1) * INDEX_ENTRY_LENGTH;
+  }
+
+  /**
+   * Returns the log length a record of given message length takes.
+   *
+   * @param length message length.
+   * @return record length.
+   */
+  static int recordLength(int length) {
+    return BitUtil.align(RECORD_HEADER_LENGTH + length, 8);
+  }
+
+  long baseOffset() {
+    return baseOffset;
+  }
+
+  /**
+   * Returns the offset after the last record. Only known for segments created or opened as active.
+   *
+   * @return next offset.
+   */
+  long nextOffset() {
+    return nextOffset;
+  }
+
+  /**
+   * Appends a record unless the segment is full.
+   *
+   * @param offset record offset, greater than the previous one.
+   * @param timestamp record timestamp.
+   * @param key record key.
+   * @param buffer buffer holding the encoded message.
+   * @param at index of the message in the buffer.
+   * @param length message length.
+   * @return {@code false} if the record doesn't fit anymore.
+   */
+  boolean append(long offset, long timestamp, long key, DirectBuffer buffer, int at, int length) {
+    int recordLength = recordLength(length);
+    if (position + recordLength > log.capacity()) {
+      return false;
+    }
+    int relativeOffset = (int) (offset - baseOffset);
+    if (position == 0 || position - lastIndexedPosition >= indexInterval) {
+      int entry = indexEntries * INDEX_ENTRY_LENGTH;
+      index.putInt(entry, relativeOffset);
+      index.putInt(entry + INDEX_POSITION_OFFSET, position);
+      index.putLong(entry + INDEX_TIMESTAMP_OFFSET, timestamp);
+      indexEntries++;
+      lastIndexedPosition = position;
+    }
+    log.putInt(position + RELATIVE_OFFSET_OFFSET, relativeOffset);
+    log.putLong(position + TIMESTAMP_OFFSET, timestamp);
+    log.putLong(position + KEY_OFFSET, key);
+    log.putBytes(position + RECORD_HEADER_LENGTH, buffer, at, length);
+    log.putIntOrdered(position, length);
+    position += recordLength;
+    nextOffset = offset + 1;
+    return true;
+  }
+
+  /**
+   * Hands the records of an offset range over to a handler.
+   *
+   * @param fromOffset offset of the first record of interest.
+   * @param toOffset offset after the last record of interest.
+   * @param handler record handler.
+   */
+  void read(long fromOffset, long toOffset, Journal.RecordHandler handler) {
+    int entry = floorEntry(fromOffset - baseOffset, index::getInt, false);
+    int at = entry < 0 ? 0 : index.getInt(entry * INDEX_ENTRY_LENGTH + INDEX_POSITION_OFFSET);
+    while (at + RECORD_HEADER_LENGTH <= log.capacity()) {
+      int length = log.getIntVolatile(at);
+      if (length == 0) {
+        break;
+      }
+      long offset = baseOffset + log.getInt(at + RELATIVE_OFFSET_OFFSET);
+      if (offset >= toOffset) {
+        break;
+      }
+      if (offset >= fromOffset) {
+        handler.onRecord(offset, log.getLong(at + TIMESTAMP_OFFSET), log.getLong(at + KEY_OFFSET), log,
+            at + RECORD_HEADER_LENGTH, length);
+      }
+      at += recordLength(length);
+    }
+  }
+
+  /**
+   * Finds the first record not older than given timestamp, assuming timestamps don't go backwards.
+   *
+   * @param timestamp timestamp.
+   * @param toOffset offset after the last record to look at.
+   * @return offset of the record, {@code toOffset} if there is none.
+   */
+  long offsetOf(long timestamp, long toOffset) {
+    int entry = floorEntry(timestamp, i -> index.getLong(i + INDEX_TIMESTAMP_OFFSET), true);
+    int at = entry < 0 ? 0 : index.getInt(entry * INDEX_ENTRY_LENGTH + INDEX_POSITION_OFFSET);
+    while (at + RECORD_HEADER_LENGTH <= log.capacity()) {
+      int length = log.getIntVolatile(at);
+      if (length == 0) {
+        break;
+      }
+      long offset = baseOffset + log.getInt(at + RELATIVE_OFFSET_OFFSET);
+      if (offset >= toOffset) {
+        break;
+      }
+      if (log.getLong(at + TIMESTAMP_OFFSET) >= timestamp) {
+        return offset;
+      }
+      at += recordLength(length);
+    }
+    return toOffset;
+  }
+
+  /**
+   * Returns the timestamp of the first record.
+   *
+   * @return timestamp, {@link Long#MAX_VALUE} if the segment is empty.
+   */
+  long firstTimestamp() {
+    return indexEntries == 0 ? Long.MAX_VALUE : index.getLong(INDEX_TIMESTAMP_OFFSET);
+  }
+
+  void close() {
+    IoUtil.unmap(mappedLog);
+    IoUtil.unmap(mappedIndex);
+  }
+
+  /**
+   * Binary search for the last index entry whose key is at most given value.
+   *
+   * @param value key looked for.
+   * @param key reads the key of the entry at given byte offset in the index.
+   * @param strict whether to look for the last entry with a key lower than the value rather than lower or equal.
+   * @return entry number, {@code -1} if none.
+   */
+  private int floorEntry(long value, IndexKey key, boolean strict) {
+    int low = 0;
+    int high = indexEntries - 1;
+    int result = -1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long k = key.at(mid * INDEX_ENTRY_LENGTH);
+      if (strict ? k < value : k <= value) {
+        result = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return result;
+  }
+
+  private void loadIndex() {
+    indexEntries = 0;
+    while (indexEntries * INDEX_ENTRY_LENGTH + INDEX_ENTRY_LENGTH <= index.capacity()
+        && (indexEntries == 0 ? log.getInt(0) != 0
+            : index.getInt(indexEntries * INDEX_ENTRY_LENGTH + INDEX_POSITION_OFFSET) != 0)) {
+      indexEntries++;
+    }
+  }
+
+  private void recover(boolean active) {
+    position = 0;
+    indexEntries = 0;
+    lastIndexedPosition = 0;
+    index.setMemory(0, index.capacity(), (byte) 0);
+    while (position + RECORD_HEADER_LENGTH <= log.capacity()) {
+      int length = log.getInt(position);
+      if (length <= 0) {
+        break;
+      }
+      int recordLength = recordLength(length);
+      if (position + recordLength > log.capacity()) {
+        break;
+      }
+      int relativeOffset = log.getInt(position + RELATIVE_OFFSET_OFFSET);
+      if (position == 0 || position - lastIndexedPosition >= indexInterval) {
+        int entry = indexEntries * INDEX_ENTRY_LENGTH;
+        index.putInt(entry, relativeOffset);
+        index.putInt(entry + INDEX_POSITION_OFFSET, position);
+        index.putLong(entry + INDEX_TIMESTAMP_OFFSET, log.getLong(position + TIMESTAMP_OFFSET));
+        indexEntries++;
+        lastIndexedPosition = position;
+      }
+      position += recordLength;
+      nextOffset = baseOffset + relativeOffset + 1;
+    }
+    if (active) {
+      // bytes of a torn record left behind by a crash would be taken for a header after a shorter append
+      for (int i = position; i + 8 <= log.capacity(); i += 8) {
+        if (log.getLong(i) != 0) {
+          log.putLong(i, 0);
+        }
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface IndexKey {
+    long at(int entryOffset);
+  }
+}
@@ -0,0 +1,98 @@
+package io.scalecube.pubsub;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageBatch;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class BatchingTest {
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    private final FanOut fanOut = new FanOut(codec);
+
+    @Test
+    public void batchedMessagesAreUnpackedInOrder() throws MessageCodecException {
+        FanOutSession session = fanOut.newSession();
+        for (int i = 0; i < 3; i++) {
+            offer(session, "/prices/EUR", "1." + i, 256);
+        }
+        session.flushBatch(System.nanoTime(), 0);
+
+        List<ByteBuffer> frames = frames(session);
+        assertEquals(1, frames.size());
+
+        List<String> data = new ArrayList<>();
+        for (ByteBuffer frame : MessageBatch.frames(frames.get(0))) {
+            PubSubMessage message = codec.decode(Unpooled.wrappedBuffer(frame));
+            assertEquals("/prices/EUR", message.qualifier());
+            data.add(((ByteBuf) message.data()).toString(UTF_8));
+        }
+        assertEquals(3, data.size());
+        assertEquals("1.0", data.get(0));
+        assertEquals("1.2", data.get(2));
+    }
+
+    @Test
+    public void fullBatchIsQueuedAndTooBigMessageGoesAlone() throws MessageCodecException {
+        FanOutSession session = fanOut.newSession();
+        // each message takes 2 + 4 + 11 + 3 bytes in the batch, two of them plus the marker fill 41 bytes
+        offer(session, "/prices/EUR", "1.0", 41);
+        offer(session, "/prices/EUR", "1.1", 41);
+        offer(session, "/prices/EUR", "1.2", 41);
+        offer(session, "/prices/EUR", "a message much longer than the batch", 41);
+        assertEquals(3, session.backlog());
+
+        List<ByteBuffer> frames = frames(session);
+        assertEquals(2, count(frames.get(0)));
+        assertEquals(1, count(frames.get(1)));
+        assertEquals(1, count(frames.get(2)));
+        assertEquals(BinaryMessageCodec.VERSION, frames.get(2).get(0));
+    }
+
+    @Test
+    public void batchWaitsForLinger() throws MessageCodecException {
+        FanOutSession session = fanOut.newSession();
+        offer(session, "/prices/EUR", "1.0", 256);
+        long now = System.nanoTime();
+        assertEquals(0, session.flushBatch(now, Long.MAX_VALUE));
+        assertEquals(1, session.flushBatch(now, 0));
+        assertEquals(0, session.flushBatch(now, 0));
+    }
+
+    private void offer(FanOutSession session, String qualifier, String data, int maxBatchLength)
+        throws MessageCodecException {
+        ByteBuf encoded = codec.encode(PubSubMessage.builder().qualifier(qualifier).data(data).build());
+        try {
+            session.offerBatched(encoded, maxBatchLength);
+        } finally {
+            encoded.release();
+        }
+    }
+
+    private static List<ByteBuffer> frames(FanOutSession session) {
+        List<ByteBuffer> frames = new ArrayList<>();
+        session.outbound().subscribe(frame -> {
+            ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+            copy.put(frame).flip();
+            frames.add(copy);
+        });
+        return frames;
+    }
+
+    private static int count(ByteBuffer frame) {
+        int count = 0;
+        for (ByteBuffer ignored : MessageBatch.frames(frame)) {
+            count++;
+        }
+        return count;
+    }
+}
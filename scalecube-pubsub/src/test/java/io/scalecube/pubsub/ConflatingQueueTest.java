@@ -0,0 +1,94 @@
+package io.scalecube.pubsub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import org.junit.Test;
+
+public class ConflatingQueueTest {
+
+    private final ConflatingQueue queue = new ConflatingQueue();
+
+    @Test
+    public void newerMessageReplacesPendingOneInPlace() {
+        ByteBuf eur1 = Unpooled.buffer(1);
+        ByteBuf usd = Unpooled.buffer(1);
+        ByteBuf eur2 = Unpooled.buffer(1);
+
+        assertTrue(queue.offer(eur1, "/prices", 1L));
+        assertTrue(queue.offer(usd, "/prices", 2L));
+        assertFalse(queue.offer(eur2, "/prices", 1L));
+
+        assertEquals(0, eur1.refCnt());
+        assertEquals(2, queue.size());
+        assertSame(eur2, queue.poll());
+        assertSame(usd, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void polledMessageIsNotReplaced() {
+        ByteBuf first = Unpooled.buffer(1);
+        ByteBuf second = Unpooled.buffer(1);
+
+        queue.offer(first, "/prices", 1L);
+        assertSame(first, queue.poll());
+
+        assertTrue(queue.offer(second, "/prices", 1L));
+        assertEquals(1, first.refCnt());
+        assertSame(second, queue.poll());
+    }
+
+    @Test
+    public void keysAreQualifierAndStreamId() {
+        assertTrue(queue.offer(Unpooled.buffer(1), "/prices", null));
+        assertTrue(queue.offer(Unpooled.buffer(1), "/rates", null));
+        assertFalse(queue.offer(Unpooled.buffer(1), "/prices", null));
+        assertTrue(queue.offer(Unpooled.buffer(1), "/prices", 7L));
+
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    public void indexOnlyCoversPendingEntries() {
+        for (long id = 0; id < 10000; id++) {
+            queue.offer(Unpooled.buffer(1), "/prices/" + (id % 10), id);
+        }
+        for (int i = 0; i < 5000; i++) {
+            queue.poll();
+        }
+
+        // the polled keys queue again, the pending ones are replaced
+        for (long id = 0; id < 10000; id++) {
+            assertEquals(id < 5000, queue.offer(Unpooled.buffer(1), "/prices/" + (id % 10), id));
+        }
+        assertEquals(10000, queue.size());
+    }
+
+    @Test
+    public void unkeyedEntriesAreNeverConflated() {
+        queue.offer(Unpooled.buffer(1));
+        queue.offer(Unpooled.buffer(1));
+
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void sessionBacklogIsBoundedByKeys() {
+        FanOut fanOut = new FanOut(new BinaryMessageCodec());
+        FanOutSession session = new FanOutSession(fanOut, true);
+        PubSubMessage message = PubSubMessage.builder().qualifier("/prices").streamId(1L).data("1.1").build();
+
+        for (int i = 0; i < 100; i++) {
+            session.offerConflated(Unpooled.buffer(1), message);
+        }
+
+        assertEquals(1, session.backlog());
+    }
+}
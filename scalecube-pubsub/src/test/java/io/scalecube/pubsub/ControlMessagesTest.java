@@ -0,0 +1,95 @@
+package io.scalecube.pubsub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.aeron.Aeron;
+import io.aeron.Subscription;
+import io.aeron.driver.MediaDriver;
+import io.netty.buffer.Unpooled;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageCodec;
+import java.io.File;
+import java.net.DatagramSocket;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.agrona.CloseHelper;
+import org.agrona.IoUtil;
+import org.junit.Test;
+
+public class ControlMessagesTest {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final MessageCodec codec = new BinaryMessageCodec();
+
+    @Test
+    public void endpointSurvivesEncoding() throws Exception {
+        PubSubMessage decoded = codec.decode(Unpooled.wrappedBuffer(
+            ControlMessages.encode(codec, ControlMessages.endpoint("10.0.0.7:13002"))));
+
+        assertTrue(ControlMessages.is(decoded, ControlMessages.ENDPOINT_QUALIFIER));
+        assertFalse(ControlMessages.is(decoded, ControlMessages.SUBSCRIBE_QUALIFIER));
+        assertEquals("10.0.0.7:13002", ControlMessages.endpoint(decoded));
+    }
+
+    @Test
+    public void endpointWithoutTopicStreamsIsIgnored() throws Exception {
+        FanOut fanOut = new FanOut(codec);
+        FanOutSession session = fanOut.newSession();
+
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.endpoint("10.0.0.7:13002")));
+        assertTrue(fanOut.destinations().isEmpty());
+        fanOut.removeSession(session);
+
+        assertFalse(fanOut.hasSessions());
+    }
+
+    @Test
+    public void endpointIsADestinationOfManualTopicStreamsWhileItsSessionLasts() throws Exception {
+        String directory = Files.createTempDirectory("manual-destinations").toString();
+        MediaDriver driver = MediaDriver.launch(new MediaDriver.Context().aeronDirectoryName(directory));
+        Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(directory));
+        try {
+            String endpoint = "127.0.0.1:" + freePort();
+            FanOut fanOut = new FanOut(codec);
+            fanOut.topicStreams(aeron, TopicStreams.manualChannel("127.0.0.1", freePort()), null,
+                qualifier -> qualifier, TopicStreams.DEFAULT_MAX_STREAMS, TopicStreams.DEFAULT_IDLE_TIMEOUT_NANOS);
+            FanOutSession session = fanOut.newSession();
+            session.outbound().subscribe();
+
+            fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.subscribe("/prices/**")));
+            fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.endpoint(endpoint)));
+            assertEquals(Collections.singleton(endpoint), fanOut.destinations());
+
+            // what the topic streams carry reaches the endpoint
+            Subscription subscription =
+                aeron.addSubscription("aeron:udp?endpoint=" + endpoint, TopicStreams.BASE_STREAM_ID + 1);
+            AtomicInteger received = new AtomicInteger();
+            long deadline = System.nanoTime() + TIMEOUT_NANOS;
+            while (received.get() == 0 && System.nanoTime() - deadline < 0) {
+                fanOut.acquire();
+                fanOut.onMessage(PubSubMessage.builder().qualifier("/prices/EUR").data("1.10").build());
+                subscription.poll((buffer, offset, length, header) -> received.incrementAndGet(), 10);
+                Thread.sleep(1);
+            }
+            assertTrue(received.get() > 0);
+
+            fanOut.removeSession(session);
+            assertTrue(fanOut.destinations().isEmpty());
+        } finally {
+            CloseHelper.quietClose(aeron);
+            CloseHelper.quietClose(driver);
+            IoUtil.delete(new File(directory), true);
+        }
+    }
+
+    private static int freePort() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
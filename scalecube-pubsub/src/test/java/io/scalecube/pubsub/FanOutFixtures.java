@@ -0,0 +1,48 @@
+package io.scalecube.pubsub;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.scalecube.pubsub.codec.MessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.nio.ByteBuffer;
+
+/**
+ * Publishing into a {@link FanOut} and describing what comes out, shared by the fan-out tests.
+ */
+final class FanOutFixtures {
+
+    private FanOutFixtures() {
+    }
+
+    static void publish(FanOut fanOut, String qualifier, String data) {
+        fanOut.acquire();
+        fanOut.onMessage(PubSubMessage.builder().qualifier(qualifier).data(data).build());
+    }
+
+    static PubSubMessage decode(MessageCodec codec, ByteBuffer frame) {
+        return decode(codec, Unpooled.wrappedBuffer(frame));
+    }
+
+    static PubSubMessage decode(MessageCodec codec, ByteBuf encoded) {
+        try {
+            return codec.decode(encoded);
+        } catch (MessageCodecException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Describes a frame as {@code qualifier#streamId} for markers and {@code qualifier=data@sequence} for messages, the
+     * sequence only if there is one.
+     */
+    static String describe(MessageCodec codec, ByteBuffer frame) {
+        PubSubMessage message = decode(codec, frame);
+        if (message.streamId() != null) {
+            return message.qualifier() + "#" + message.streamId();
+        }
+        String description = message.qualifier() + "=" + message.<ByteBuf>data().toString(UTF_8);
+        return message.sequence() != null ? description + "@" + message.sequence() : description;
+    }
+}
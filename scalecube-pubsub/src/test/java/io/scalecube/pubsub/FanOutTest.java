@@ -0,0 +1,113 @@
+package io.scalecube.pubsub;
+
+import static io.scalecube.pubsub.FanOutFixtures.decode;
+import static io.scalecube.pubsub.FanOutFixtures.publish;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+
+public class FanOutTest {
+
+    // encoded published messages, in order
+    private final List<ByteBuf> encoded = new ArrayList<>();
+
+    private final MessageCodec codec = new BinaryMessageCodec() {
+        @Override
+        public ByteBuf encode(PubSubMessage message, ByteBufAllocator allocator) throws MessageCodecException {
+            ByteBuf result = super.encode(message, allocator);
+            if (message.qualifier() != null && message.qualifier().startsWith("/prices/")) {
+                encoded.add(result);
+            }
+            return result;
+        }
+    };
+
+    private final FanOut fanOut = new FanOut(codec);
+
+    @Test
+    public void messageIsEncodedOnceAndReleasedOnceEverySessionHasEmittedIt() throws Exception {
+        List<PubSubMessage> received = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            subscribe("/prices/**").subscribe(frame -> received.add(decode(codec, frame)));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            publish(fanOut, "/prices/EUR", "1.1" + i);
+        }
+
+        assertEquals(15, received.size());
+        assertEquals(5, encoded.size());
+        for (ByteBuf buffer : encoded) {
+            assertEquals(0, buffer.refCnt());
+        }
+    }
+
+    @Test
+    public void slicesQueuedForDisposedSessionAreReleased() throws Exception {
+        BaseSubscriber<ByteBuffer> idle = new BaseSubscriber<ByteBuffer>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                // nothing requested, everything stays queued
+            }
+        };
+        subscribe("/prices/**").subscribe(idle);
+        publish(fanOut, "/prices/EUR", "1.10");
+        publish(fanOut, "/prices/EUR", "1.11");
+        assertEquals(1, encoded.get(0).refCnt());
+
+        idle.dispose();
+
+        assertFalse(fanOut.hasSessions());
+        for (ByteBuf buffer : encoded) {
+            assertEquals(0, buffer.refCnt());
+        }
+    }
+
+    @Test
+    public void emittedFramesStayValidAfterTheirRelease() throws Exception {
+        // kept as emitted, like a transport queueing them before they are written
+        List<ByteBuffer> frames = new ArrayList<>();
+        subscribe("/prices/**").subscribe(frames::add);
+
+        for (int i = 0; i < 100; i++) {
+            publish(fanOut, "/prices/EUR", Integer.toString(i));
+        }
+
+        assertEquals(100, frames.size());
+        for (int i = 0; i < frames.size(); i++) {
+            assertEquals(Integer.toString(i), decode(codec, frames.get(i)).<ByteBuf>data().toString(UTF_8));
+        }
+    }
+
+    @Test
+    public void subscriptionOfRemovedSessionIsIgnored() throws Exception {
+        FanOutSession session = fanOut.newSession();
+        List<ByteBuffer> received = new ArrayList<>();
+        session.outbound().subscribe(received::add);
+
+        fanOut.removeSession(session);
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.subscribe("/prices/**")));
+        publish(fanOut, "/prices/EUR", "1.10");
+
+        assertEquals(0, received.size());
+    }
+
+    private Flux<ByteBuffer> subscribe(String topic) throws MessageCodecException {
+        FanOutSession session = fanOut.newSession();
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.subscribe(topic)));
+        return session.outbound();
+    }
+}
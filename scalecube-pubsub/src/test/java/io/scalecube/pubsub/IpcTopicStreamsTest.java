@@ -0,0 +1,107 @@
+package io.scalecube.pubsub;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import io.aeron.driver.MediaDriver;
+import io.netty.buffer.ByteBuf;
+import io.scalecube.pubsub.aeron.SharedMediaDriver;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.io.File;
+import java.net.DatagramSocket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.agrona.CloseHelper;
+import org.agrona.IoUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.UnicastProcessor;
+
+public class IpcTopicStreamsTest {
+
+    private static final String HOST = "localhost";
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final MessageCodec codec = new BinaryMessageCodec();
+
+    private String directory;
+    private MediaDriver driver;
+    private PubSub server;
+    private PubSub client;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("ipc-topic-streams").toString();
+        // embedded by the application, neither end owns it
+        driver = MediaDriver.launch(new MediaDriver.Context().aeronDirectoryName(directory));
+        server = PubSub.builder().topicStreams(true).aeronDirectoryName(directory).build();
+        client = PubSub.builder().topicStreams(true).aeronDirectoryName(directory).build();
+    }
+
+    @After
+    public void tearDown() {
+        CloseHelper.quietClose(client);
+        CloseHelper.quietClose(server);
+        CloseHelper.quietClose(driver);
+        IoUtil.delete(new File(directory), true);
+    }
+
+    @Test
+    public void serverAndClientOfOneEmbeddedDriverNegotiateIpc() throws Exception {
+        int port = freePort() - 1;
+        server.publishOnTopicStreams(HOST, port);
+        String channel = client.topicStreamsChannel(HOST, port, port + 10);
+        assertEquals(TopicStreams.IPC_CHANNEL, channel);
+
+        // both ends attached to the running driver instead of launching their own
+        try (SharedMediaDriver handle = SharedMediaDriver.acquire(directory)) {
+            assertNull(handle.mediaDriver());
+        }
+
+        FanOutSession session = server.fanOut().newSession();
+        TopicStreamSubscriptions streams = new TopicStreamSubscriptions(client.aeronResources(), channel, codec);
+        UnicastProcessor<PubSubMessage> requests = UnicastProcessor.create();
+        requests.doOnNext(streams::onRequest)
+            .subscribe(request -> server.fanOut().onRequest(session, encode(request)));
+        Flux<ByteBuffer> frames = streams.frames(session.outbound());
+        TopicSubscriber subscriber = new TopicSubscriber(frames, codec, requests.sink());
+
+        BlockingQueue<PubSubMessage> received = new LinkedBlockingQueue<>();
+        subscriber.listen("/prices/EUR").subscribe(received::add);
+
+        // the stream is assigned on the first message, which nobody receives before joining it
+        TopicPublisher publisher = server.publisher();
+        PubSubMessage message = null;
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (message == null && System.nanoTime() - deadline < 0) {
+            publisher.next(PubSubMessage.builder().qualifier("/prices/EUR").data("1.10").build());
+            message = received.poll(10, TimeUnit.MILLISECONDS);
+        }
+
+        assertNotNull(message);
+        assertEquals("1.10", message.<ByteBuf>data().toString(UTF_8));
+    }
+
+    private ByteBuffer encode(PubSubMessage request) {
+        try {
+            return ControlMessages.encode(codec, request);
+        } catch (MessageCodecException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static int freePort() throws Exception {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package io.scalecube.pubsub;
+
+import static io.scalecube.pubsub.FanOutFixtures.describe;
+import static io.scalecube.pubsub.FanOutFixtures.publish;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageCodec;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.agrona.IoUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+public class JournalReplayTest {
+
+    private final MessageCodec codec = new BinaryMessageCodec();
+
+    private Path directory;
+    private FanOut fanOut;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("journal-replay");
+        fanOut = new FanOut(codec);
+        fanOut.journal(Journaling.of(directory).segmentLength(64 * 1024), "/prices/**");
+    }
+
+    @After
+    public void tearDown() {
+        fanOut.close();
+        IoUtil.delete(directory.toFile(), true);
+    }
+
+    @Test
+    public void replayIsFollowedByLiveMessages() throws Exception {
+        publish(fanOut, "/prices/EUR", "1.10");
+        publish(fanOut, "/prices/EUR", "1.11");
+        publish(fanOut, "/prices/EUR", "1.12");
+        FanOutSession session = fanOut.newSession();
+        List<String> received = new ArrayList<>();
+        session.outbound().subscribe(frame -> received.add(describe(codec, frame)));
+
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.replayFrom("/prices/EUR", 1)));
+        while (fanOut.runTasks() > 0) {
+            // until the replay has caught up
+        }
+        publish(fanOut, "/prices/EUR", "1.13");
+
+        assertEquals(Arrays.asList("/prices/EUR=1.11", "/prices/EUR=1.12",
+            PubSubMessage.REPLAYED_QUALIFIER + "/prices/EUR#3", "/prices/EUR=1.13"), received);
+    }
+
+    @Test
+    public void replayCatchesUpWithPublishingGoingOn() throws Exception {
+        int published = 0;
+        for (; published < 5000; published++) {
+            publish(fanOut, "/prices/EUR", Integer.toString(published));
+        }
+        FanOutSession session = fanOut.newSession();
+        List<String> received = new ArrayList<>();
+        BaseSubscriber<ByteBuffer> subscriber = new BaseSubscriber<ByteBuffer>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                // slow reader, nothing requested yet
+            }
+
+            @Override
+            protected void hookOnNext(ByteBuffer frame) {
+                received.add(describe(codec, frame));
+            }
+        };
+        session.outbound().subscribe(subscriber);
+
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.replayFrom("/prices/EUR", 0)));
+        for (int round = 0; round < 10; round++) {
+            fanOut.runTasks();
+            subscriber.request(100);
+            publish(fanOut, "/prices/EUR", Integer.toString(published++));
+        }
+        // held back by the backlog of the session
+        assertTrue(received.size() < published);
+        subscriber.request(Long.MAX_VALUE);
+        fanOut.runTasks();
+        publish(fanOut, "/prices/EUR", "live");
+
+        // the replay catches up while messages are still being published, the rest of them come live
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < published; i++) {
+            expected.add("/prices/EUR=" + i);
+        }
+        int marker = 0;
+        while (marker < received.size() && received.get(marker).startsWith("/prices/")) {
+            marker++;
+        }
+        assertTrue(marker < published);
+        expected.add(marker, PubSubMessage.REPLAYED_QUALIFIER + "/prices/EUR#" + marker);
+        expected.add("/prices/EUR=live");
+        assertEquals(expected, received);
+    }
+
+    @Test
+    public void topicWithoutJournalGoesLive() throws Exception {
+        publish(fanOut, "/news/EUR", "up");
+        FanOutSession session = fanOut.newSession();
+        List<String> received = new ArrayList<>();
+        session.outbound().subscribe(frame -> received.add(describe(codec, frame)));
+
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.replayFrom("/news/EUR", 0)));
+        fanOut.runTasks();
+        publish(fanOut, "/news/EUR", "down");
+
+        assertEquals(Arrays.asList(PubSubMessage.REPLAYED_QUALIFIER + "/news/EUR#-1", "/news/EUR=down"), received);
+    }
+
+    @Test
+    public void subscriberOfCompactedTopicIsBootstrapped() throws Exception {
+        fanOut.compact("/prices/**");
+        publish(fanOut, "/prices/USD", "0.90");
+        publish(fanOut, "/prices/EUR", "1.10");
+        FanOutSession session = fanOut.newSession();
+        List<String> received = new ArrayList<>();
+        session.outbound().subscribe(frame -> received.add(describe(codec, frame)));
+
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.subscribe("/prices/**")));
+        while (fanOut.runTasks() > 0) {
+            // until the bootstrap has caught up
+        }
+        publish(fanOut, "/prices/EUR", "1.11");
+
+        assertEquals(Arrays.asList("/prices/EUR=1.10", "/prices/USD=0.90",
+            PubSubMessage.SNAPSHOT_QUALIFIER + "/prices/**#2", "/prices/EUR=1.11"), received);
+    }
+}
@@ -0,0 +1,116 @@
+package io.scalecube.pubsub;
+
+import static io.scalecube.pubsub.FanOutFixtures.decode;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.junit.Test;
+
+public class LastValueCacheTest {
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    @Test
+    public void keepsNewestMessagePerKey() throws Exception {
+        LastValueCache cache = new LastValueCache(TopicFilter.of("/prices/**"), 64);
+        put(cache, "/prices/EUR", 1L, "1.10");
+        put(cache, "/prices/EUR", 2L, "1.20");
+        put(cache, "/prices/EUR", 1L, "1.11");
+        put(cache, "/prices/USD", null, "1");
+        // longer than the record it replaces
+        put(cache, "/prices/USD", null, "1.000000000000000000000000000000");
+
+        assertEquals(3, cache.size());
+        List<PubSubMessage> snapshot = snapshot(cache, TopicFilter.of());
+        assertEquals(3, snapshot.size());
+        assertTrue(contains(snapshot, "/prices/EUR", 1L, "1.11"));
+        assertTrue(contains(snapshot, "/prices/EUR", 2L, "1.20"));
+        assertTrue(contains(snapshot, "/prices/USD", null, "1.000000000000000000000000000000"));
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() throws Exception {
+        LastValueCache cache = new LastValueCache(TopicFilter.of(), 64);
+        for (int round = 0; round < 3; round++) {
+            for (long i = 0; i < 1000; i++) {
+                put(cache, "/prices/" + (i % 10), i, "value-" + round);
+            }
+        }
+
+        assertEquals(1000, cache.size());
+        List<PubSubMessage> snapshot = snapshot(cache, TopicFilter.of());
+        assertEquals(1000, snapshot.size());
+        assertTrue(contains(snapshot, "/prices/7", 997L, "value-2"));
+    }
+
+    @Test
+    public void snapshotHoldsMatchingTopicsOnly() throws Exception {
+        LastValueCache cache = new LastValueCache(TopicFilter.of(), 1024);
+        put(cache, "/prices/EUR", null, "1.1");
+        put(cache, "/trades/EUR", null, "7");
+
+        List<PubSubMessage> snapshot = snapshot(cache, TopicFilter.of("/prices/*"));
+        assertEquals(1, snapshot.size());
+        assertTrue(contains(snapshot, "/prices/EUR", null, "1.1"));
+    }
+
+    @Test
+    public void acceptsConfiguredTopicsOnly() {
+        LastValueCache cache = new LastValueCache(TopicFilter.of("/prices/**"), 1024);
+
+        assertTrue(cache.accepts("/prices/EUR"));
+        assertFalse(cache.accepts("/trades/EUR"));
+        assertFalse(cache.accepts(null));
+        assertFalse(new LastValueCache(TopicFilter.of(), 1024).accepts(PubSubMessage.ERROR_QUALIFIER));
+    }
+
+    @Test
+    public void snapshotMarkerReachesListenersOfItsTopic() {
+        PubSubMessage marker = ControlMessages.snapshot("/prices/*", 3);
+
+        assertEquals(Long.valueOf(3), marker.streamId());
+        assertTrue(TopicFilter.of("/prices/*").matches(marker.qualifier()));
+        assertFalse(TopicFilter.of("/prices/**").matches(marker.qualifier()));
+        assertTrue(TopicFilter.of().matches(ControlMessages.snapshot(null, 0).qualifier()));
+    }
+
+    private void put(LastValueCache cache, String qualifier, Long streamId, String data) throws MessageCodecException {
+        PubSubMessage message = PubSubMessage.builder().qualifier(qualifier).streamId(streamId).data(data).build();
+        ByteBuf encoded = codec.encode(message);
+        try {
+            cache.put(message, encoded);
+        } finally {
+            encoded.release();
+        }
+    }
+
+    private List<PubSubMessage> snapshot(LastValueCache cache, TopicFilter filter) {
+        List<PubSubMessage> messages = new ArrayList<>();
+        cache.snapshot(filter, encoded -> {
+            try {
+                messages.add(decode(codec, encoded).copy());
+            } finally {
+                encoded.release();
+            }
+        });
+        return messages;
+    }
+
+    private static boolean contains(List<PubSubMessage> messages, String qualifier, Long streamId, String data) {
+        for (PubSubMessage message : messages) {
+            if (qualifier.equals(message.qualifier()) && Objects.equals(streamId, message.streamId())
+                && data.equals(message.<ByteBuf>data().toString(UTF_8))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,161 @@
+package io.scalecube.pubsub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.ReplayProcessor;
+
+public class LocalTransportTest {
+
+    private final FanOut fanOut = new FanOut(new BinaryMessageCodec());
+
+    private final AtomicInteger connects = new AtomicInteger();
+
+    private final LocalTransport.Server server = new LocalTransport.Server(fanOut, 4, connects::incrementAndGet);
+
+    @Test
+    public void subscriberGetsPublishedInstance() {
+        TopicSubscriber subscriber = server.connect(new BinaryMessageCodec());
+        ReplayProcessor<PubSubMessage> received = ReplayProcessor.create();
+        Disposable listening = subscriber.listen("/prices/**").subscribe(received::onNext);
+
+        PubSubMessage eur = message("/prices/EUR");
+        publish(message("/news/EUR"));
+        publish(eur);
+
+        assertSame(eur, received.blockFirst(Duration.ofSeconds(5)));
+        assertEquals(1, connects.get());
+        listening.dispose();
+    }
+
+    @Test
+    public void localSessionCountsAsConnected() {
+        server.connect(new BinaryMessageCodec());
+
+        TopicPublisher publisher = new TopicPublisher(new PublishQueue(fanOut, 8), fanOut, 8);
+        assertEquals(PublishStatus.ACCEPTED, publisher.tryNext(message("/prices/EUR")));
+    }
+
+    @Test
+    public void fullSessionKeepsEveryMessageOfSlowListener() {
+        TopicSubscriber subscriber = server.connect(new BinaryMessageCodec());
+        Flux<PubSubMessage> received = subscriber.listen("/prices/**").take(1000).cache();
+        received.subscribe();
+
+        // far more than the session holds, the fan-out waits for the listener rather than dropping
+        for (int i = 0; i < 1000; i++) {
+            publish(message("/prices/EUR"));
+        }
+
+        assertEquals(1000, received.count().block(Duration.ofSeconds(5)).intValue());
+    }
+
+    @Test
+    public void tryNextRefusesWhileLocalSessionIsFull() throws Exception {
+        BaseSubscriber<PubSubMessage> listener = fullSession();
+        TopicPublisher publisher = new TopicPublisher(new PublishQueue(fanOut, 8), fanOut, Integer.MAX_VALUE);
+
+        assertEquals(PublishStatus.BACK_PRESSURED, publisher.tryNext(message("/prices/EUR")));
+
+        listener.request(4);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        PublishStatus status;
+        while ((status = publisher.tryNext(message("/prices/EUR"))) != PublishStatus.ACCEPTED
+            && System.nanoTime() - deadline < 0) {
+            Thread.sleep(1);
+        }
+        assertEquals(PublishStatus.ACCEPTED, status);
+    }
+
+    @Test
+    public void nextWaitsWhileLocalSessionIsFull() throws Exception {
+        BaseSubscriber<PubSubMessage> listener = fullSession();
+        PublishQueue queue = new PublishQueue(fanOut, 8);
+        TopicPublisher publisher = new TopicPublisher(queue, fanOut, Integer.MAX_VALUE);
+        Thread publishing = new Thread(() -> publisher.next(message("/prices/EUR")));
+        publishing.start();
+
+        publishing.join(100);
+        assertTrue(publishing.isAlive());
+        assertEquals(0, queue.size());
+
+        listener.request(4);
+        publishing.join(5000);
+        assertFalse(publishing.isAlive());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void stoppedFanOutStopsWaitingForFullSession() throws Exception {
+        fullSession();
+        Thread fanOutThread = new Thread(() -> publish(message("/prices/EUR")));
+        fanOutThread.start();
+
+        fanOutThread.join(100);
+        assertTrue(fanOutThread.isAlive());
+
+        fanOut.stop();
+        fanOutThread.join(5000);
+        assertFalse(fanOutThread.isAlive());
+    }
+
+    @Test
+    public void closedSubscriberIsRemoved() {
+        TopicSubscriber subscriber = server.connect(new BinaryMessageCodec());
+        Flux<PubSubMessage> received = subscriber.listen("/prices/**").cache();
+        received.subscribe();
+        assertTrue(fanOut.hasSessions());
+
+        subscriber.close();
+        subscriber.close();
+
+        assertFalse(fanOut.hasSessions());
+        assertEquals(Long.valueOf(0), received.count().block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void lookupFindsBoundServer() {
+        LocalTransport.bind("localhost", 4801, server);
+        assertSame(server, LocalTransport.lookup("localhost", 4801));
+
+        LocalTransport.unbind("localhost", 4801, server);
+        assertEquals(null, LocalTransport.lookup("localhost", 4801));
+    }
+
+    // a session of capacity 4 holding 4 messages its listener hasn't requested
+    private BaseSubscriber<PubSubMessage> fullSession() {
+        LocalSession session = fanOut.newLocalSession(4);
+        session.onRequest(ControlMessages.subscribe("/prices/**"));
+        BaseSubscriber<PubSubMessage> listener = new BaseSubscriber<PubSubMessage>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                // nothing requested yet
+            }
+        };
+        session.inbound().subscribe(listener);
+        for (int i = 0; i < 4; i++) {
+            publish(message("/prices/EUR"));
+        }
+        return listener;
+    }
+
+    private void publish(PubSubMessage message) {
+        fanOut.acquire();
+        fanOut.onMessage(message);
+    }
+
+    private static PubSubMessage message(String qualifier) {
+        return PubSubMessage.builder().qualifier(qualifier).data("1.1").build();
+    }
+}
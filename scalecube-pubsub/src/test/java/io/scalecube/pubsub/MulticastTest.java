@@ -0,0 +1,40 @@
+package io.scalecube.pubsub;
+
+import static org.junit.Assert.assertEquals;
+
+import io.aeron.ChannelUri;
+import org.junit.Test;
+
+public class MulticastTest {
+
+    @Test
+    public void channelCarriesGroupInterfaceAndTtl() {
+        ChannelUri channel = ChannelUri.parse(Multicast.of("224.0.1.1", 40457)
+            .networkInterface("127.0.0.1")
+            .ttl(1)
+            .channel());
+
+        assertEquals("udp", channel.media());
+        assertEquals("224.0.1.1:40457", channel.get("endpoint"));
+        assertEquals("127.0.0.1", channel.get("interface"));
+        assertEquals("1", channel.get("ttl"));
+    }
+
+    @Test
+    public void defaultsLeaveInterfaceAndTtlToTheOs() {
+        ChannelUri channel = ChannelUri.parse(Multicast.of("224.0.1.1", 40457).channel());
+
+        assertEquals(null, channel.get("interface"));
+        assertEquals(null, channel.get("ttl"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unicastAddressIsRejected() {
+        Multicast.of("127.0.0.1", 40457);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ttlAbove255IsRejected() {
+        Multicast.of("224.0.1.1", 40457).ttl(256);
+    }
+}
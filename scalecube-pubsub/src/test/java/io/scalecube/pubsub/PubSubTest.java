@@ -0,0 +1,29 @@
+package io.scalecube.pubsub;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PubSubTest {
+
+    @Test
+    public void closeStopsTheFanOutThread() {
+        PubSub pubSub = PubSub.create();
+        assertTrue(isFanOutRunning());
+
+        pubSub.close();
+        pubSub.close();
+
+        assertFalse(isFanOutRunning());
+    }
+
+    private static boolean isFanOutRunning() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("pubsub-fan-out".equals(thread.getName()) && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,84 @@
+package io.scalecube.pubsub;
+
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.FluxProcessor;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.TopicProcessor;
+
+/**
+ * Producer side cost of handing a message to the fan-out: the serialized {@link TopicProcessor} PubSub used to have
+ * versus {@link PublishQueue}. Nobody is connected, so the fan-out drops every message right away.
+ *
+ * <p>Run with {@code main} to get results for 1, 4 and 16 producer threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PublishQueueBenchmark {
+
+    private static final PubSubMessage MESSAGE =
+        PubSubMessage.builder().qualifier("/prices/EUR").data("1.1").build();
+
+    private FluxSink<PubSubMessage> processorSink;
+    private Disposable processorSubscription;
+
+    private PublishQueue publishQueue;
+
+    @Setup
+    public void setUp() {
+        FanOut fanOut = new FanOut(new BinaryMessageCodec());
+
+        FluxProcessor<PubSubMessage, PubSubMessage> processor = TopicProcessor.<PubSubMessage>create().serialize();
+        processorSink = processor.sink();
+        processorSubscription = processor.subscribe(fanOut::onMessage);
+
+        publishQueue = new PublishQueue(fanOut, PublishQueue.DEFAULT_CAPACITY);
+        publishQueue.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        processorSubscription.dispose();
+        publishQueue.close();
+    }
+
+    @Benchmark
+    public void topicProcessor() {
+        processorSink.next(MESSAGE);
+    }
+
+    @Benchmark
+    public void publishQueue() {
+        publishQueue.put(MESSAGE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[] {1, 4, 16}) {
+            Options options = new OptionsBuilder()
+                .include(PublishQueueBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            new Runner(options).run();
+        }
+    }
+}
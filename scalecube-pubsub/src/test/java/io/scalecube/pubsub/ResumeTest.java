@@ -0,0 +1,111 @@
+package io.scalecube.pubsub;
+
+import static io.scalecube.pubsub.FanOutFixtures.describe;
+import static io.scalecube.pubsub.FanOutFixtures.publish;
+import static org.junit.Assert.assertEquals;
+
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.UnicastProcessor;
+
+public class ResumeTest {
+
+    private final MessageCodec codec = new BinaryMessageCodec();
+
+    private FanOut fanOut;
+
+    @Before
+    public void setUp() {
+        fanOut = new FanOut(codec);
+        fanOut.sequence(3, "/prices/**");
+    }
+
+    @Test
+    public void resumeRetransmitsWhatWasMissed() throws Exception {
+        publish(fanOut, "/prices/EUR", "1.10");
+        publish(fanOut, "/prices/USD", "0.90");
+        publish(fanOut, "/prices/EUR", "1.11");
+        publish(fanOut, "/prices/EUR", "1.12");
+        FanOutSession session = fanOut.newSession();
+        List<String> received = new ArrayList<>();
+        session.outbound().subscribe(frame -> received.add(describe(codec, frame)));
+
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.resumeFrom("/prices/EUR", 0)));
+        fanOut.runTasks();
+        publish(fanOut, "/prices/EUR", "1.13");
+
+        assertEquals(Arrays.asList("/prices/EUR=1.11@1", "/prices/EUR=1.12@2",
+            PubSubMessage.RESUMED_QUALIFIER + "/prices/EUR#3", "/prices/EUR=1.13@3"), received);
+    }
+
+    @Test
+    public void resumeBeyondTheWindowGoesLive() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            publish(fanOut, "/prices/EUR", "1.1" + i);
+        }
+        FanOutSession session = fanOut.newSession();
+        List<String> received = new ArrayList<>();
+        session.outbound().subscribe(frame -> received.add(describe(codec, frame)));
+
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.resumeFrom("/prices/EUR", 0)));
+        fanOut.runTasks();
+        publish(fanOut, "/prices/EUR", "1.15");
+
+        assertEquals(Arrays.asList(PubSubMessage.RESUMED_QUALIFIER + "/prices/EUR#-1", "/prices/EUR=1.15@5"),
+            received);
+    }
+
+    @Test
+    public void leastRecentlyPublishedQualifierLeavesAFullWindow() throws Exception {
+        fanOut = new FanOut(codec);
+        // room for five of the 20 byte frames
+        fanOut.sequence(3, 100, "/prices/**");
+        for (int i = 0; i < 3; i++) {
+            publish(fanOut, "/prices/EUR", "1.1" + i);
+        }
+        for (int i = 0; i < 3; i++) {
+            publish(fanOut, "/prices/USD", "0.9" + i);
+        }
+        FanOutSession session = fanOut.newSession();
+        List<String> received = new ArrayList<>();
+        session.outbound().subscribe(frame -> received.add(describe(codec, frame)));
+
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.resumeFrom("/prices/EUR", 0)));
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.resumeFrom("/prices/USD", 0)));
+        fanOut.runTasks();
+        publish(fanOut, "/prices/EUR", "1.13");
+
+        // the sequence of the dropped qualifier goes on
+        assertEquals(Arrays.asList(PubSubMessage.RESUMED_QUALIFIER + "/prices/EUR#-1",
+            "/prices/USD=0.91@1", "/prices/USD=0.92@2", PubSubMessage.RESUMED_QUALIFIER + "/prices/USD#3",
+            "/prices/EUR=1.13@3"), received);
+    }
+
+    @Test
+    public void subscriberCountsSkippedSequences() throws Exception {
+        Flux<ByteBuffer> frames = Flux.just(frame("/prices/EUR", 0), frame("/prices/USD", 0),
+            frame("/prices/EUR", 1), frame("/prices/EUR", 4));
+        TopicSubscriber subscriber =
+            new TopicSubscriber(frames, codec, UnicastProcessor.<PubSubMessage>create().sink());
+
+        List<PubSubMessage> received = subscriber.listen("/prices/**").collectList().block();
+
+        assertEquals(4, received.size());
+        assertEquals(2, subscriber.gaps());
+        assertEquals(4, subscriber.lastSequence("/prices/EUR"));
+        assertEquals(0, subscriber.lastSequence("/prices/USD"));
+        assertEquals(-1, subscriber.lastSequence("/prices/GBP"));
+    }
+
+    private ByteBuffer frame(String qualifier, long sequence) throws MessageCodecException {
+        return ControlMessages.encode(codec, PubSubMessage.builder().qualifier(qualifier).sequence(sequence).build());
+    }
+}
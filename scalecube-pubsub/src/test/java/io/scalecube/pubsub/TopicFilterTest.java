@@ -0,0 +1,38 @@
+package io.scalecube.pubsub;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TopicFilterTest {
+
+    @Test
+    public void qualifierMatcherAcceptsPublishedQualifiersOfTheTopics() {
+        TopicFilter.QualifierMatcher matcher = TopicFilter.of("/prices/**").qualifiers();
+
+        assertTrue(matcher.accepts("/prices/EUR"));
+        assertTrue(matcher.accepts("/prices/EUR"));
+        assertFalse(matcher.accepts("/news/EUR"));
+        assertFalse(matcher.accepts("/prices/*"));
+        assertFalse(matcher.accepts(null));
+    }
+
+    @Test
+    public void qualifierMatcherNeverAcceptsErrors() {
+        TopicFilter.QualifierMatcher matcher = TopicFilter.of().qualifiers();
+
+        assertTrue(matcher.accepts("/prices/EUR"));
+        assertFalse(matcher.accepts(PubSubMessage.ERROR_QUALIFIER));
+    }
+
+    @Test
+    public void qualifierMatcherKeepsMatchingPastItsCache() {
+        TopicFilter.QualifierMatcher matcher = TopicFilter.of("/prices/**").qualifiers();
+
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(matcher.accepts("/prices/" + i));
+            assertFalse(matcher.accepts("/news/" + i));
+        }
+    }
+}
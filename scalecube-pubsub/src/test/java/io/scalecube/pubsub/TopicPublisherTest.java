@@ -0,0 +1,108 @@
+package io.scalecube.pubsub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import io.netty.buffer.Unpooled;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+public class TopicPublisherTest {
+
+    private final FanOut fanOut = new FanOut(new BinaryMessageCodec());
+
+    // not started, published messages stay in the queue
+    private final PublishQueue queue = new PublishQueue(fanOut, 8);
+
+    private final TopicPublisher publisher = new TopicPublisher(queue, fanOut, 3);
+
+    @Test
+    public void tryNextWithoutSessionsIsNotConnected() {
+        assertEquals(PublishStatus.NOT_CONNECTED, publisher.tryNext(message()));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void tryNextIsBackPressuredBySlowestSession() {
+        FanOutSession session = fanOut.newSession();
+        fanOut.newSession();
+        session.offer(Unpooled.buffer(1));
+        session.offer(Unpooled.buffer(1));
+
+        // backlog 2 plus the message accepted here
+        assertEquals(PublishStatus.ACCEPTED, publisher.tryNext(message()));
+        assertEquals(PublishStatus.BACK_PRESSURED, publisher.tryNext(message()));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void tryNextIsBackPressuredByFullQueue() {
+        fanOut.newSession();
+        TopicPublisher unbounded = new TopicPublisher(queue, fanOut, Integer.MAX_VALUE);
+        for (int i = 0; i < 8; i++) {
+            assertEquals(PublishStatus.ACCEPTED, unbounded.tryNext(message()));
+        }
+        assertEquals(PublishStatus.BACK_PRESSURED, unbounded.tryNext(message()));
+    }
+
+    @Test
+    public void nextIgnoresBound() {
+        for (int i = 0; i < 5; i++) {
+            publisher.next(message());
+        }
+        assertEquals(5, queue.size());
+    }
+
+    @Test
+    public void publishingAfterCloseFails() {
+        fanOut.newSession();
+        queue.close();
+
+        assertEquals(PublishStatus.CLOSED, publisher.tryNext(message()));
+        try {
+            publisher.next(message());
+            fail("next() took a message after close");
+        } catch (IllegalStateException expected) {
+            // nobody would ever deliver it
+        }
+        try {
+            publisher.send(message()).block(Duration.ofSeconds(10));
+            fail("send() took a message after close");
+        } catch (IllegalStateException expected) {
+            // failed rather than retried
+        }
+        assertEquals(0, queue.size());
+        assertTrue(fanOut.tryAcquire(1));
+    }
+
+    @Test
+    public void closeReleasesPublisherWaitingForFullQueue() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            publisher.next(message());
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread waiting = new Thread(() -> {
+            try {
+                publisher.next(message());
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        waiting.start();
+        Thread.sleep(50);
+
+        queue.close();
+        waiting.join(10000);
+
+        assertFalse(waiting.isAlive());
+        assertTrue(failure.get() instanceof IllegalStateException);
+    }
+
+    private static PubSubMessage message() {
+        return PubSubMessage.builder().qualifier("/prices/EUR").data("1.1").build();
+    }
+}
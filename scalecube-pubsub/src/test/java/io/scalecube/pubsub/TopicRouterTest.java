@@ -0,0 +1,72 @@
+package io.scalecube.pubsub;
+
+import static org.hamcrest.Matchers.arrayContainingInAnyOrder;
+import static org.hamcrest.Matchers.emptyArray;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class TopicRouterTest {
+
+    private final TopicRouter<String> router = new TopicRouter<>(new String[0]);
+
+    @Test
+    public void routesQualifiersAndWildcards() {
+        router.subscribe("exact", "/prices/EUR");
+        router.subscribe("single", "/prices/*");
+        router.subscribe("multi", "/prices/**");
+        router.subscribe("suffix", "/**/EUR");
+
+        assertThat(router.route("/prices/EUR"), arrayContainingInAnyOrder("exact", "single", "multi", "suffix"));
+        assertThat(router.route("/prices/spot/EUR"), arrayContainingInAnyOrder("multi", "suffix"));
+        assertThat(router.route("/prices/USD"), arrayContainingInAnyOrder("single", "multi"));
+        assertThat(router.route("/orders/1"), emptyArray());
+    }
+
+    @Test
+    public void sessionMatchingSeveralPatternsIsRoutedOnce() {
+        router.subscribe("session", "/prices/EUR");
+        router.subscribe("session", "/prices/**");
+        router.subscribe("session", null);
+
+        assertThat(router.route("/prices/EUR"), arrayContainingInAnyOrder("session"));
+    }
+
+    @Test
+    public void allTopicsSubscriptionGetsMessagesWithoutQualifier() {
+        router.subscribe("all", null);
+        router.subscribe("prices", "/prices/**");
+
+        assertThat(router.route(null), arrayContainingInAnyOrder("all"));
+        assertThat(router.route("/prices/EUR"), arrayContainingInAnyOrder("all", "prices"));
+    }
+
+    @Test
+    public void cachedRoutesAreInvalidatedBySubscriptionChanges() {
+        router.subscribe("first", "/prices/**");
+        String[] cached = router.route("/prices/EUR");
+        assertSame(cached, router.route("/prices/EUR"));
+
+        router.subscribe("second", "/prices/*");
+        assertThat(router.route("/prices/EUR"), arrayContainingInAnyOrder("first", "second"));
+
+        router.unsubscribe("first", "/prices/**");
+        assertThat(router.route("/prices/EUR"), arrayContainingInAnyOrder("second"));
+
+        router.remove("second");
+        assertThat(router.route("/prices/EUR"), emptyArray());
+    }
+
+    @Test
+    public void unsubscribingOnePatternKeepsTheOthers() {
+        router.subscribe("session", "/prices/**");
+        router.subscribe("session", "/prices/EUR");
+        router.route("/prices/EUR");
+
+        router.unsubscribe("session", "/prices/**");
+
+        assertThat(router.route("/prices/EUR"), arrayContainingInAnyOrder("session"));
+        assertThat(router.route("/prices/USD"), emptyArray());
+    }
+}
@@ -0,0 +1,230 @@
+package io.scalecube.pubsub;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.aeron.Aeron;
+import io.aeron.Subscription;
+import io.aeron.driver.MediaDriver;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.MutableDirectBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TopicStreamsTest {
+
+    private static final String CHANNEL = "aeron:ipc?term-length=64k";
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+    private final char[] payload = new char[1024];
+
+    private String directory;
+    private MediaDriver driver;
+    private Aeron aeron;
+    private TopicStreams streams;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("topic-streams").toString();
+        driver = MediaDriver.launch(new MediaDriver.Context().aeronDirectoryName(directory));
+        aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(directory));
+        streams = newStreams(qualifier -> qualifier, TopicStreams.DEFAULT_MAX_STREAMS,
+            TopicStreams.DEFAULT_IDLE_TIMEOUT_NANOS);
+        Arrays.fill(payload, 'x');
+    }
+
+    @After
+    public void tearDown() {
+        CloseHelper.quietClose(aeron);
+        CloseHelper.quietClose(driver);
+        IoUtil.delete(new File(directory), true);
+    }
+
+    @Test
+    public void backPressuredStreamDoesNotDelayOtherTopics() throws Exception {
+        // stream ids are handed out in the order the topics publish first
+        Subscription slow = aeron.addSubscription(CHANNEL, TopicStreams.BASE_STREAM_ID + 1);
+        Subscription fast = aeron.addSubscription(CHANNEL, TopicStreams.BASE_STREAM_ID + 2);
+        publish("/prices/EUR", "joined");
+        publish("/news/EUR", "joined");
+        await(() -> slow.imageCount() > 0 && fast.imageCount() > 0);
+
+        // nobody polls the slow stream, it fills up
+        int published = 0;
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (streams.drops() == 0 && System.nanoTime() - deadline < 0) {
+            publish("/prices/EUR", Integer.toString(published++));
+        }
+        assertTrue(streams.drops() > 0);
+
+        publish("/news/EUR", "up");
+        List<String> news = new ArrayList<>();
+        await(() -> {
+            fast.poll((buffer, offset, length, header) -> news.add(decode(buffer, offset, length)), 10);
+            return news.contains("up");
+        });
+
+        // the parked message follows once the slow stream is polled again, nothing is sent twice or out of order
+        List<String> prices = new ArrayList<>();
+        long expected = published - streams.drops();
+        await(() -> {
+            slow.poll((buffer, offset, length, header) -> {
+                String data = decode(buffer, offset, length);
+                // whether the first one was sent before the subscription joined is up to the driver
+                if (!"joined".equals(data)) {
+                    prices.add(data);
+                }
+            }, 10);
+            streams.retryParked();
+            return prices.size() >= expected;
+        });
+        assertEquals(expected, prices.size());
+        for (int i = 0; i < prices.size(); i++) {
+            assertEquals(Integer.toString(i), prices.get(i));
+        }
+    }
+
+    @Test
+    public void cachedMessageIsEncodedOnce() throws Exception {
+        AtomicInteger encodings = new AtomicInteger();
+        BinaryMessageCodec countingCodec = new BinaryMessageCodec() {
+            @Override
+            public ByteBuf encode(PubSubMessage message, ByteBufAllocator allocator) throws MessageCodecException {
+                if ("/prices/EUR".equals(message.qualifier())) {
+                    encodings.incrementAndGet();
+                }
+                return super.encode(message, allocator);
+            }
+
+            @Override
+            public int encode(PubSubMessage message, MutableDirectBuffer buffer, int offset)
+                throws MessageCodecException {
+                if ("/prices/EUR".equals(message.qualifier())) {
+                    encodings.incrementAndGet();
+                }
+                return super.encode(message, buffer, offset);
+            }
+        };
+        FanOut fanOut = new FanOut(countingCodec);
+        fanOut.topicStreams(aeron, CHANNEL, null, qualifier -> qualifier, TopicStreams.DEFAULT_MAX_STREAMS,
+            TopicStreams.DEFAULT_IDLE_TIMEOUT_NANOS);
+        fanOut.lastValueCache("/prices/**");
+        FanOutSession session = fanOut.newSession();
+        session.outbound().subscribe();
+        fanOut.onRequest(session, ControlMessages.encode(codec, ControlMessages.subscribe("/prices/**")));
+        fanOut.runTasks();
+        Subscription subscription = aeron.addSubscription(CHANNEL, TopicStreams.BASE_STREAM_ID + 1);
+
+        List<String> received = new ArrayList<>();
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        int published = 0;
+        while (received.isEmpty() && System.nanoTime() - deadline < 0) {
+            fanOut.acquire();
+            fanOut.onMessage(PubSubMessage.builder().qualifier("/prices/EUR").data("1.10 ").build());
+            published++;
+            subscription.poll((buffer, offset, length, header) -> received.add(decode(buffer, offset, length)), 10);
+        }
+
+        assertEquals("1.10", received.get(0));
+        assertEquals(published, encodings.get());
+    }
+
+    @Test
+    public void hashedGroupsBoundTheStreams() throws Exception {
+        streams = newStreams(TopicStreams.hashedGroups(4), TopicStreams.DEFAULT_MAX_STREAMS,
+            TopicStreams.DEFAULT_IDLE_TIMEOUT_NANOS);
+        for (int i = 0; i < 100; i++) {
+            publish("/prices/" + i, "1.10");
+        }
+
+        assertTrue(streams.streamCount() <= 4);
+        assertEquals(100, streams.assignments().size());
+        for (int streamId : streams.assignments().values()) {
+            assertTrue(streamId > TopicStreams.BASE_STREAM_ID && streamId <= TopicStreams.BASE_STREAM_ID + 4);
+        }
+    }
+
+    @Test
+    public void groupsBeyondTheCapShareTheOpenStreams() throws Exception {
+        streams = newStreams(qualifier -> qualifier, 3, TopicStreams.DEFAULT_IDLE_TIMEOUT_NANOS);
+        for (int i = 0; i < 10; i++) {
+            publish("/prices/" + i, "1.10");
+        }
+
+        assertEquals(3, streams.streamCount());
+        for (int streamId : streams.assignments().values()) {
+            assertTrue(streamId > TopicStreams.BASE_STREAM_ID && streamId <= TopicStreams.BASE_STREAM_ID + 3);
+        }
+    }
+
+    @Test
+    public void idleStreamIsClosedAndItsStreamIdReused() throws Exception {
+        streams = newStreams(qualifier -> qualifier, TopicStreams.DEFAULT_MAX_STREAMS,
+            TimeUnit.MILLISECONDS.toNanos(100));
+        publish("/prices/EUR", "1.10");
+        publish("/news/EUR", "up");
+
+        // only the news keep publishing
+        await(() -> {
+            try {
+                publish("/news/EUR", "up");
+            } catch (MessageCodecException e) {
+                throw new AssertionError(e);
+            }
+            streams.closeIdle(System.nanoTime());
+            return streams.streamCount() == 1;
+        });
+        assertEquals(Collections.singletonMap("/news/EUR", TopicStreams.BASE_STREAM_ID + 2), streams.assignments());
+
+        publish("/prices/USD", "1.20");
+        assertEquals(Integer.valueOf(TopicStreams.BASE_STREAM_ID + 1), streams.assignments().get("/prices/USD"));
+        assertEquals(2, streams.streamCount());
+    }
+
+    private TopicStreams newStreams(Function<String, String> topicGroup, int maxStreams, long idleTimeoutNanos) {
+        return new TopicStreams(aeron, CHANNEL, null, codec, Batching.none(), topicGroup, (qualifier, streamId) -> {
+        }, maxStreams, idleTimeoutNanos);
+    }
+
+    private void publish(String qualifier, String data) throws MessageCodecException {
+        streams.publish(PubSubMessage.builder().qualifier(qualifier).data(data + " " + new String(payload)).build());
+    }
+
+    private String decode(DirectBuffer buffer, int offset, int length) {
+        try {
+            String data = codec.decode(buffer, offset, length).<ByteBuf>data().toString(UTF_8);
+            return data.substring(0, data.indexOf(' '));
+        } catch (MessageCodecException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new AssertionError("Condition still false after 10 s");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package io.scalecube.pubsub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.management.ThreadMXBean;
+import io.netty.buffer.ByteBuf;
+import io.scalecube.pubsub.codec.BinaryMessageCodec;
+import io.scalecube.pubsub.codec.MessageBatch;
+import io.scalecube.pubsub.codec.MessageCodec;
+import io.scalecube.pubsub.codec.MessageCodecException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.DirectProcessor;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.UnicastProcessor;
+
+public class TopicSubscriberTest {
+
+    private final AtomicInteger decodings = new AtomicInteger();
+
+    private final MessageCodec codec = new BinaryMessageCodec() {
+        @Override
+        public PubSubMessage decode(ByteBuf byteBuf) throws MessageCodecException {
+            decodings.incrementAndGet();
+            return super.decode(byteBuf);
+        }
+    };
+
+    private final UnicastProcessor<ByteBuffer> frames = UnicastProcessor.create();
+    private final FluxSink<ByteBuffer> sink = frames.sink();
+    private final TopicSubscriber subscriber =
+        new TopicSubscriber(frames, codec, UnicastProcessor.<PubSubMessage>create().sink());
+
+    @Test
+    public void framesAreDecodedAndTrackedOnceForAllListeners() throws Exception {
+        List<PubSubMessage> first = new ArrayList<>();
+        List<PubSubMessage> second = new ArrayList<>();
+        subscriber.listen("/prices/**").subscribe(first::add);
+        subscriber.listen("/prices/EUR").subscribe(second::add);
+
+        sink.next(frame("/prices/EUR", 0));
+        sink.next(frame("/prices/USD", 0));
+        sink.next(frame("/prices/EUR", 2));
+
+        assertEquals(3, first.size());
+        assertEquals(2, second.size());
+        assertEquals(3, decodings.get());
+        assertEquals(1, subscriber.gaps());
+        assertEquals(2, subscriber.lastSequence("/prices/EUR"));
+    }
+
+    @Test
+    public void lateListenerSkipsFramesReceivedBeforeIt() throws Exception {
+        List<PubSubMessage> slow = new ArrayList<>();
+        BaseSubscriber<PubSubMessage> idle = new BaseSubscriber<PubSubMessage>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                // nothing requested yet, the shared flux buffers what arrives
+            }
+
+            @Override
+            protected void hookOnNext(PubSubMessage message) {
+                slow.add(message);
+            }
+        };
+        subscriber.listen("/prices/**").subscribe(idle);
+        sink.next(frame("/prices/EUR", 0));
+        sink.next(frame("/prices/EUR", 1));
+
+        List<PubSubMessage> late = new ArrayList<>();
+        subscriber.listen("/prices/**").subscribe(late::add);
+        idle.request(Long.MAX_VALUE);
+        sink.next(frame("/prices/EUR", 2));
+
+        assertEquals(3, slow.size());
+        assertEquals(1, late.size());
+        assertEquals(2, (long) late.get(0).sequence());
+    }
+
+    @Test
+    public void flyweightListenerAllocatesNothingPerMessage() throws Exception {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        DirectProcessor<ByteBuffer> source = DirectProcessor.create();
+        TopicSubscriber subscriber =
+            new TopicSubscriber(source, codec, UnicastProcessor.<PubSubMessage>create().sink());
+        long[] sum = new long[1];
+        subscriber.listen(flyweight -> sum[0] += flyweight.sequence(), "/prices/**");
+        ByteBuffer single = frame("/prices/EUR", 1);
+        ByteBuffer batch = batch(frame("/prices/EUR", 2), frame("/news/EUR", 3), frame("/prices/USD", 4));
+
+        for (int i = 0; i < 20000; i++) {
+            source.onNext(single);
+            source.onNext(batch);
+        }
+        long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < 100000; i++) {
+            source.onNext(single);
+            source.onNext(batch);
+        }
+        long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+        assertEquals(120000L * 7, sum[0]);
+        // the measurement itself takes a few hundred bytes, a single object per message 2.4 MB
+        assertTrue("allocated " + allocated + " bytes", allocated < 64 * 1024);
+    }
+
+    private ByteBuffer batch(ByteBuffer... messages) {
+        ByteBuffer batch = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+        batch.put(MessageBatch.BATCH_MARKER);
+        for (ByteBuffer message : messages) {
+            batch.putShort((short) message.remaining()).put(message);
+        }
+        batch.flip();
+        return batch;
+    }
+
+    private ByteBuffer frame(String qualifier, long sequence) throws MessageCodecException {
+        return ControlMessages.encode(codec, PubSubMessage.builder().qualifier(qualifier).sequence(sequence).build());
+    }
+}
@@ -0,0 +1,89 @@
+package io.scalecube.pubsub;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class TopicTrieTest {
+
+    private static final String[] PATTERNS = {
+        "/prices/EUR",
+        "/prices/*",
+        "/prices/*/EUR",
+        "/prices/**",
+        "/**/EUR",
+        "/prices/**/EUR",
+        "/orders",
+        "**"
+    };
+
+    private static final String[] QUALIFIERS = {
+        "/prices/EUR",
+        "/prices/spot/EUR",
+        "/prices/spot/USD",
+        "/prices",
+        "/prices/a/b/c/EUR",
+        "/orders",
+        "/orders/1",
+        "",
+        "/"
+    };
+
+    @Test
+    public void testWildcards() {
+        TopicTrie<String> trie = trieOf(PATTERNS);
+
+        assertThat(match(trie, "/prices/EUR"),
+                containsInAnyOrder("/prices/EUR", "/prices/*", "/prices/**", "/**/EUR", "/prices/**/EUR", "**"));
+        assertThat(match(trie, "/prices/spot/EUR"),
+                containsInAnyOrder("/prices/*/EUR", "/prices/**", "/**/EUR", "/prices/**/EUR", "**"));
+        assertThat(match(trie, "/prices"), containsInAnyOrder("/prices/**", "**"));
+        assertThat(match(trie, "/orders/1"), containsInAnyOrder("**"));
+    }
+
+    @Test
+    public void testSingleMatcherAgreesWithIndex() {
+        for (String pattern : PATTERNS) {
+            TopicTrie<String> trie = trieOf(pattern);
+            for (String qualifier : QUALIFIERS) {
+                boolean indexed = !match(trie, qualifier).isEmpty();
+                assertEquals(pattern + " vs " + qualifier, indexed, TopicTrie.matches(pattern, qualifier));
+                assertEquals(indexed, TopicTrie.matches(pattern, new StringBuilder(qualifier)));
+            }
+        }
+    }
+
+    @Test
+    public void testRemovePrunesEmptyNodes() {
+        TopicTrie<String> trie = new TopicTrie<>();
+        trie.add("/prices/*/EUR", "a");
+        trie.add("/prices/*/EUR", "b");
+
+        assertTrue(trie.remove("/prices/*/EUR", "a"));
+        assertThat(match(trie, "/prices/spot/EUR"), containsInAnyOrder("b"));
+
+        assertTrue(trie.remove("/prices/*/EUR", "b"));
+        assertThat(match(trie, "/prices/spot/EUR"), empty());
+        assertTrue(trie.isEmpty());
+    }
+
+    private static TopicTrie<String> trieOf(String... patterns) {
+        TopicTrie<String> trie = new TopicTrie<>();
+        for (String pattern : patterns) {
+            trie.add(pattern, pattern);
+        }
+        return trie;
+    }
+
+    private static List<String> match(TopicTrie<String> trie, String qualifier) {
+        List<String> result = new ArrayList<>();
+        trie.match(qualifier, result);
+        return result;
+    }
+}
@@ -0,0 +1,165 @@
+package io.scalecube.pubsub.aeron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.aeron.Aeron;
+import io.aeron.Publication;
+import io.aeron.Subscription;
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import org.agrona.CloseHelper;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AeronEventLoopGroupTest {
+
+    private static final String CHANNEL = "aeron:ipc";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private String directory;
+    private SharedMediaDriver driver;
+    private Aeron aeron;
+    private AeronEventLoopGroup group;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("event-loop-group").toString();
+        driver = SharedMediaDriver.acquire(directory);
+        aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(directory));
+        group = new AeronEventLoopGroup("event-loop-group-test", 2, IdleStrategyPreset.BACKOFF);
+        group.initialise();
+    }
+
+    @After
+    public void tearDown() {
+        group.shutdown().block(TIMEOUT);
+        CloseHelper.quietClose(aeron);
+        CloseHelper.quietClose(driver);
+        IoUtil.delete(new File(directory), true);
+    }
+
+    @Test
+    public void newSubscriptionGoesToTheLeastLoadedLoop() throws Exception {
+        Stream busy = new Stream(1);
+        new Stream(2);
+        assertEquals(1, group.loop(0).subscriptionCount());
+        assertEquals(1, group.loop(1).subscriptionCount());
+
+        Publisher publisher = new Publisher(busy).start();
+        try {
+            await(() -> group.loop(0).load() > 0);
+            new Stream(3);
+            new Stream(4);
+        } finally {
+            publisher.stop();
+        }
+
+        // load wins over the number of subscriptions
+        assertEquals(1, group.loop(0).subscriptionCount());
+        assertEquals(3, group.loop(1).subscriptionCount());
+        await(() -> busy.received.get() == busy.sent);
+        assertEquals(0, busy.errors.get());
+    }
+
+    @Test
+    public void rebalanceMovesBusySubscriptionWithoutLosingOrRepeatingFragments() throws Exception {
+        Stream first = new Stream(1);
+        new Stream(2);
+        Stream second = new Stream(3);
+        assertEquals(2, group.loop(0).subscriptionCount());
+
+        Publisher publisher = new Publisher(first, second).start();
+        try {
+            await(() -> group.loop(0).load() > 0);
+            assertTrue(group.rebalance());
+            await(() -> group.loop(1).subscriptionCount() == 2);
+            long sent = first.sent;
+            // keep publishing while the moved subscription is polled by its new loop
+            await(() -> first.sent > sent + 1000);
+        } finally {
+            publisher.stop();
+        }
+
+        assertEquals(1, group.loop(0).subscriptionCount());
+        await(() -> first.received.get() == first.sent && second.received.get() == second.sent);
+        assertEquals(0, first.errors.get());
+        assertEquals(0, second.errors.get());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new AssertionError("Condition still false after " + TIMEOUT);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * IPC stream of longs counted from 0, checked for gaps and repeats on receipt.
+     */
+    private final class Stream {
+
+        private final Publication publication;
+        private final AtomicLong received = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private volatile long sent;
+
+        private Stream(int streamId) {
+            Subscription subscription = aeron.addSubscription(CHANNEL, streamId);
+            publication = aeron.addPublication(CHANNEL, streamId);
+            group.addSubscription(subscription, (buffer, offset, length, header) -> {
+                if (buffer.getLong(offset) != received.getAndIncrement()) {
+                    errors.incrementAndGet();
+                }
+            }, subscriber -> subscriber.request(Long.MAX_VALUE));
+        }
+    }
+
+    private static final class Publisher implements Runnable {
+
+        private final Stream[] streams;
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final Thread thread = new Thread(this, "event-loop-group-test-publisher");
+
+        private Publisher(Stream... streams) {
+            this.streams = streams;
+        }
+
+        private Publisher start() {
+            thread.start();
+            return this;
+        }
+
+        private void stop() throws InterruptedException {
+            running.set(false);
+            thread.join();
+        }
+
+        @Override
+        public void run() {
+            UnsafeBuffer buffer = new UnsafeBuffer(new byte[Long.BYTES]);
+            for (long value = 0; running.get(); value++) {
+                buffer.putLong(0, value);
+                for (Stream stream : streams) {
+                    while (stream.publication.offer(buffer) < 0) {
+                        if (!running.get()) {
+                            return;
+                        }
+                        Thread.yield();
+                    }
+                    stream.sent = value + 1;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.scalecube.pubsub.aeron;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FragmentLimitTest {
+
+    private final FragmentLimit adaptive = FragmentLimit.adaptive(8, 256);
+
+    @Test
+    public void fixedLimitNeverChanges() {
+        FragmentLimit fixed = FragmentLimit.fixed(8);
+        assertEquals(8, fixed.initial());
+        assertEquals(8, fixed.next(8, 8, 1));
+        assertEquals(8, fixed.next(8, 0, 4));
+    }
+
+    @Test
+    public void growsWhileBacklogged() {
+        int limit = adaptive.initial();
+        for (int i = 0; i < 10; i++) {
+            limit = adaptive.next(limit, limit, 1);
+        }
+        assertEquals(256, limit);
+    }
+
+    @Test
+    public void shrinksWhenDrained() {
+        assertEquals(128, adaptive.next(256, 10, 1));
+        assertEquals(256, adaptive.next(256, 200, 1));
+        assertEquals(8, adaptive.next(8, 0, 1));
+    }
+
+    @Test
+    public void sharesMaxAmongBusySubscriptions() {
+        assertEquals(64, adaptive.next(256, 256, 4));
+        assertEquals(8, adaptive.next(8, 8, 100));
+    }
+}
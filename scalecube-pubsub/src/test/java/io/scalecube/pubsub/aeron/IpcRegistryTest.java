@@ -0,0 +1,54 @@
+package io.scalecube.pubsub.aeron;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IpcRegistryTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("ipc-registry").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        new File(directory, IpcRegistry.FILE_NAME).delete();
+        directory.delete();
+    }
+
+    @Test
+    public void clientsFindTheRegisteredServer() {
+        try (IpcRegistry registry = IpcRegistry.register(directory.getPath(), 4001)) {
+            assertNotNull(registry);
+            assertTrue(IpcRegistry.isRegistered(directory.getPath(), 4001));
+            assertFalse(IpcRegistry.isRegistered(directory.getPath(), 5001));
+        }
+    }
+
+    @Test
+    public void onlyOneServerPerDriver() {
+        try (IpcRegistry registry = IpcRegistry.register(directory.getPath(), 4001)) {
+            assertNull(IpcRegistry.register(directory.getPath(), 5001));
+        }
+        try (IpcRegistry registry = IpcRegistry.register(directory.getPath(), 5001)) {
+            assertNotNull(registry);
+        }
+    }
+
+    @Test
+    public void closedRegistrationIsNotFound() {
+        IpcRegistry.register(directory.getPath(), 4001).close();
+
+        assertFalse(IpcRegistry.isRegistered(directory.getPath(), 4001));
+    }
+}
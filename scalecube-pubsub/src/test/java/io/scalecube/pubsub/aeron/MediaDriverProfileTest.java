@@ -0,0 +1,60 @@
+package io.scalecube.pubsub.aeron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import org.junit.Test;
+
+public class MediaDriverProfileTest {
+
+    @Test
+    public void lowLatencyDedicatedPreTouchesLargeTerms() {
+        MediaDriver.Context context = MediaDriverProfile.lowLatencyDedicated().toContext();
+
+        assertEquals(ThreadingMode.DEDICATED, context.threadingMode());
+        assertEquals(16 * 1024 * 1024, context.publicationTermBufferLength());
+        assertEquals(16 * 1024 * 1024, context.ipcTermBufferLength());
+        assertFalse(context.termBufferSparseFile());
+    }
+
+    @Test
+    public void sharedLowFootprintUsesOneThreadAndSmallSparseTerms() {
+        MediaDriver.Context context = MediaDriverProfile.sharedLowFootprint().toContext();
+
+        assertEquals(ThreadingMode.SHARED, context.threadingMode());
+        assertEquals(64 * 1024, context.publicationTermBufferLength());
+        assertTrue(context.termBufferSparseFile());
+    }
+
+    @Test
+    public void defaultsLeaveTheContextUntouched() {
+        MediaDriver.Context expected = new MediaDriver.Context();
+        MediaDriver.Context context = MediaDriverProfile.defaults().toContext();
+
+        assertEquals(expected.threadingMode(), context.threadingMode());
+        assertEquals(expected.publicationTermBufferLength(), context.publicationTermBufferLength());
+        assertEquals(expected.ipcTermBufferLength(), context.ipcTermBufferLength());
+        assertEquals(expected.mtuLength(), context.mtuLength());
+        assertEquals(expected.termBufferSparseFile(), context.termBufferSparseFile());
+        assertEquals(expected.aeronDirectoryName(), context.aeronDirectoryName());
+        assertNull(context.senderIdleStrategy());
+        assertNull(context.receiverIdleStrategy());
+    }
+
+    @Test
+    public void settingsOverridePreset() {
+        MediaDriver.Context context = MediaDriverProfile.sharedLowFootprint()
+            .termBufferLength(1024 * 1024)
+            .mtuLength(8192)
+            .aeronDirectoryName("/tmp/pubsub-profile")
+            .toContext();
+
+        assertEquals(1024 * 1024, context.publicationTermBufferLength());
+        assertEquals(8192, context.mtuLength());
+        assertEquals("/tmp/pubsub-profile", context.aeronDirectoryName());
+    }
+}
@@ -0,0 +1,62 @@
+package io.scalecube.pubsub.aeron;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.aeron.Aeron;
+import io.aeron.CommonContext;
+import io.aeron.driver.MediaDriver;
+import java.io.File;
+import org.agrona.IoUtil;
+import org.junit.Test;
+
+public class SharedMediaDriverTest {
+
+    private final String directory = CommonContext.getAeronDirectoryName() + "-shared-driver-test";
+
+    @Test
+    public void handlesOfOneDirectoryShareTheDriverUntilTheLastIsClosed() {
+        SharedMediaDriver first = SharedMediaDriver.acquire(directory);
+        SharedMediaDriver second = SharedMediaDriver.acquire(directory);
+        assertSame(first.mediaDriver(), second.mediaDriver());
+
+        first.close();
+        first.close();
+        SharedMediaDriver third = SharedMediaDriver.acquire(directory);
+        assertSame(second.mediaDriver(), third.mediaDriver());
+
+        second.close();
+        third.close();
+        SharedMediaDriver relaunched = SharedMediaDriver.acquire(directory);
+        try {
+            assertNotSame(first.mediaDriver(), relaunched.mediaDriver());
+        } finally {
+            relaunched.close();
+        }
+    }
+
+    @Test
+    public void acquireAttachesToDriverRunningInTheDirectory() {
+        try (MediaDriver running = MediaDriver.launch(new MediaDriver.Context().aeronDirectoryName(directory))) {
+            SharedMediaDriver attached = SharedMediaDriver.acquire(directory);
+            assertNull(attached.mediaDriver());
+            attached.close();
+
+            // neither wiped on acquire nor closed on release
+            try (Aeron aeron = Aeron.connect(new Aeron.Context().aeronDirectoryName(directory))) {
+                assertTrue(CommonContext.isDriverActive(new File(directory), 1000, message -> { }));
+            }
+        } finally {
+            IoUtil.delete(new File(directory), true);
+        }
+    }
+
+    @Test
+    public void externalDriverIsNeitherLaunchedNorClosed() {
+        SharedMediaDriver external = SharedMediaDriver.external(directory);
+        assertNull(external.mediaDriver());
+        external.close();
+    }
+}
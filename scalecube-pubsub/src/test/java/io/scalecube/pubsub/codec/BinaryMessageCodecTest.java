@@ -0,0 +1,148 @@
+package io.scalecube.pubsub.codec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.scalecube.pubsub.PubSubMessage;
+import java.nio.ByteBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+public class BinaryMessageCodecTest {
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    @Test
+    public void testRoundTripThroughByteBuf() throws Exception {
+        PubSubMessage message = PubSubMessage.builder()
+                .qualifier("/prices/EUR")
+                .streamId(Long.MAX_VALUE)
+                .data(Unpooled.copiedBuffer("1.1743", UTF_8))
+                .build();
+
+        ByteBuf encoded = codec.encode(message);
+        try {
+            assertEquals(codec.encodedLength(message), encoded.readableBytes());
+
+            PubSubMessage decoded = codec.decode(encoded);
+            assertEquals("/prices/EUR", decoded.qualifier());
+            assertEquals(Long.valueOf(Long.MAX_VALUE), decoded.streamId());
+            assertEquals("1.1743", decoded.<ByteBuf>data().toString(UTF_8));
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test
+    public void testRoundTripThroughDirectBuffer() throws Exception {
+        PubSubMessage message = PubSubMessage.builder()
+                .qualifier("/prices/\u20ac")
+                .streamId(300L)
+                .data("hello")
+                .build();
+
+        UnsafeBuffer buffer = new UnsafeBuffer(new byte[128]);
+        int length = codec.encode(message, buffer, 16);
+        assertEquals(codec.encodedLength(message), length);
+
+        PubSubMessage decoded = codec.decode(buffer, 16, length);
+        assertEquals("/prices/\u20ac", decoded.qualifier());
+        assertEquals(Long.valueOf(300L), decoded.streamId());
+        assertEquals("hello", decoded.<ByteBuf>data().toString(UTF_8));
+    }
+
+    @Test
+    public void testDataIsWrittenStraightIntoDirectBuffer() throws Exception {
+        String text = "caf\u00e9 \u20ac \ud83d\ude00 \ud83d?";
+        ByteBuf direct = Unpooled.directBuffer().writeBytes("direct".getBytes(UTF_8));
+        UnsafeBuffer buffer = new UnsafeBuffer(ByteBuffer.allocateDirect(128));
+        try {
+            PubSubMessage chars = PubSubMessage.builder().qualifier("/prices/EUR").data(new StringBuilder(text)).build();
+            int length = codec.encode(chars, buffer, 8);
+            assertEquals(codec.encodedLength(chars), length);
+            assertEquals(text.replace("\ud83d?", "??"), codec.decode(buffer, 8, length).<ByteBuf>data().toString(UTF_8));
+
+            PubSubMessage bytes = PubSubMessage.builder().qualifier("/prices/EUR").data(direct).build();
+            length = codec.encode(bytes, buffer, 8);
+            assertEquals(codec.encodedLength(bytes), length);
+            assertEquals("direct", codec.decode(buffer, 8, length).<ByteBuf>data().toString(UTF_8));
+        } finally {
+            direct.release();
+        }
+    }
+
+    @Test
+    public void testDecodedViewSharesTheFrame() throws Exception {
+        PubSubMessage message = PubSubMessage.builder().qualifier("/prices/EUR").data("1.10").build();
+        UnsafeBuffer[] buffers = {new UnsafeBuffer(new byte[64], 4, 60), new UnsafeBuffer(ByteBuffer.allocateDirect(64))};
+
+        for (UnsafeBuffer buffer : buffers) {
+            int length = codec.encode(message, buffer, 16);
+            PubSubMessage view = codec.decodeView(buffer, 16, length);
+            PubSubMessage copy = codec.decode(buffer, 16, length);
+            assertEquals("/prices/EUR", view.qualifier());
+            assertEquals("1.10", view.<ByteBuf>data().toString(UTF_8));
+
+            buffer.putByte(16 + length - 1, (byte) '1');
+            assertEquals("1.11", view.<ByteBuf>data().toString(UTF_8));
+            assertEquals("1.10", copy.<ByteBuf>data().toString(UTF_8));
+        }
+    }
+
+    @Test
+    public void testSequenceFollowsStreamId() throws Exception {
+        PubSubMessage message = PubSubMessage.builder()
+                .qualifier("/prices/EUR")
+                .streamId(7L)
+                .sequence(1L << 40)
+                .data("1.1743")
+                .build();
+
+        ByteBuf encoded = codec.encode(message);
+        try {
+            UnsafeBuffer buffer = new UnsafeBuffer(new byte[64]);
+            assertEquals(encoded.readableBytes(), codec.encode(message, buffer, 0));
+            assertEquals(codec.encodedLength(message), encoded.readableBytes());
+
+            PubSubMessage decoded = codec.decode(encoded);
+            assertEquals(Long.valueOf(7L), decoded.streamId());
+            assertEquals(Long.valueOf(1L << 40), decoded.sequence());
+            assertEquals("1.1743", decoded.<ByteBuf>data().toString(UTF_8));
+
+            PubSubMessageFlyweight flyweight = new PubSubMessageFlyweight().wrap(buffer, 0, encoded.readableBytes());
+            assertEquals(1L << 40, flyweight.sequence());
+            assertEquals("1.1743", flyweight.data().getStringWithoutLengthUtf8(0, flyweight.data().capacity()));
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test
+    public void testAbsentFieldsStayAbsent() throws Exception {
+        ByteBuf encoded = codec.encode(PubSubMessage.builder().build());
+        try {
+            assertEquals(BinaryMessageCodec.HEADER_LENGTH, encoded.readableBytes());
+
+            PubSubMessage decoded = codec.decode(encoded);
+            assertNull(decoded.qualifier());
+            assertNull(decoded.streamId());
+            assertNull(decoded.sequence());
+            assertNull(decoded.data());
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test(expected = MessageCodecException.class)
+    public void testUnsupportedDataIsRejected() throws Exception {
+        codec.encode(PubSubMessage.builder().data(new Object()).build());
+    }
+
+    @Test(expected = MessageCodecException.class)
+    public void testForeignFrameIsRejected() throws Exception {
+        codec.decode(Unpooled.copiedBuffer("{\"q\":\"/a\"}", UTF_8));
+    }
+}
@@ -0,0 +1,62 @@
+package io.scalecube.pubsub.codec;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.scalecube.pubsub.PubSubMessage;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+public class PubSubMessageFlyweightTest {
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    private final UnsafeBuffer buffer = new UnsafeBuffer(new byte[256]);
+
+    private final PubSubMessageFlyweight flyweight = new PubSubMessageFlyweight();
+
+    @Test
+    public void testFlyweightIsRewrappedForEveryFrame() throws Exception {
+        int length = codec.encode(message("/prices/EUR", 7L, "1.17"), buffer, 0);
+        flyweight.wrap(buffer, 0, length);
+        assertEquals("/prices/EUR", flyweight.qualifier().toString());
+        assertEquals(7L, flyweight.streamId());
+        assertEquals("1.17", flyweight.data().getStringWithoutLengthUtf8(0, flyweight.data().capacity()));
+
+        length = codec.encode(PubSubMessage.builder().qualifier("/prices/\u00e9").build(), buffer, 100);
+        flyweight.wrap(buffer, 100, length);
+        assertEquals("/prices/\u00e9", flyweight.qualifier().toString());
+        assertEquals(9, flyweight.qualifier().length());
+        assertFalse(flyweight.hasStreamId());
+        assertFalse(flyweight.hasData());
+        assertEquals(0, flyweight.data().capacity());
+    }
+
+    @Test
+    public void testCopyOutlivesTheFrame() throws Exception {
+        int length = codec.encode(message("/a", 1L, "abc"), buffer, 0);
+        PubSubMessage copy = flyweight.wrap(buffer, 0, length).copy();
+
+        buffer.setMemory(0, length, (byte) 0);
+
+        assertEquals("/a", copy.qualifier());
+        assertEquals(Long.valueOf(1L), copy.streamId());
+        assertEquals("abc", copy.<ByteBuf>data().toString(UTF_8));
+    }
+
+    @Test
+    public void testMessageWithoutQualifier() throws Exception {
+        int length = codec.encode(PubSubMessage.builder().data("x").build(), buffer, 0);
+        flyweight.wrap(buffer, 0, length);
+        assertNull(flyweight.qualifier());
+        assertTrue(flyweight.hasData());
+    }
+
+    private static PubSubMessage message(String qualifier, long streamId, String data) {
+        return PubSubMessage.builder().qualifier(qualifier).streamId(streamId).data(data).build();
+    }
+}
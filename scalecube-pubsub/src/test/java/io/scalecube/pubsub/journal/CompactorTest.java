@@ -0,0 +1,102 @@
+package io.scalecube.pubsub.journal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.agrona.IoUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactorTest {
+
+    private static final int SEGMENT_LENGTH = 1024;
+    private static final int INDEX_INTERVAL = 64;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("compactor");
+    }
+
+    @After
+    public void tearDown() {
+        IoUtil.delete(directory.toFile(), true);
+    }
+
+    @Test
+    public void keepsNewestRecordPerKeyOfSealedSegments() throws Exception {
+        try (Journal journal = Journal.open(directory, SEGMENT_LENGTH, INDEX_INTERVAL)) {
+            append(journal, 100, 5);
+
+            Compactor compactor = new Compactor(1000);
+            journal.install(compactor.compact(journal));
+            assertNull(compactor.compact(journal));
+
+            // 32 records per segment, the active one from offset 96 is left alone
+            assertEquals(64, journal.firstOffset());
+            assertEquals(offsets(91, 100), readAll(journal));
+            assertEquals(100, journal.append(100, 0, frame("k0-v100")));
+        }
+
+        try (Journal journal = Journal.open(directory, SEGMENT_LENGTH, INDEX_INTERVAL)) {
+            assertEquals(101, journal.nextOffset());
+            assertEquals(offsets(91, 101), readAll(journal));
+        }
+    }
+
+    @Test
+    public void compactsInSeveralPassesWhenKeysExceedTheBound() throws Exception {
+        try (Journal journal = Journal.open(directory, SEGMENT_LENGTH, INDEX_INTERVAL)) {
+            append(journal, 100, 10);
+
+            Compactor compactor = new Compactor(2);
+            int passes = 0;
+            Compactor.Result result;
+            while ((result = compactor.compact(journal)) != null) {
+                journal.install(result);
+                passes++;
+            }
+
+            assertEquals(3, passes);
+            assertEquals(offsets(86, 100), readAll(journal));
+        }
+    }
+
+    private static void append(Journal journal, int count, int keys) {
+        for (int i = 0; i < count; i++) {
+            journal.append(i, i % keys, frame("k" + i % keys + "-v" + i));
+        }
+    }
+
+    private static List<Long> offsets(long from, long to) {
+        List<Long> offsets = new ArrayList<>();
+        for (long offset = from; offset < to; offset++) {
+            offsets.add(offset);
+        }
+        return offsets;
+    }
+
+    private static List<Long> readAll(Journal journal) {
+        List<Long> offsets = new ArrayList<>();
+        long next = journal.firstOffset();
+        while (next < journal.nextOffset()) {
+            next = journal.read(next, 7, (offset, timestamp, key, buffer, index, length) -> {
+                assertEquals("k" + key + "-v" + offset, buffer.getStringWithoutLengthUtf8(index, length));
+                offsets.add(offset);
+            });
+        }
+        return offsets;
+    }
+
+    private static ByteBuffer frame(String text) {
+        return ByteBuffer.wrap(text.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,116 @@
+package io.scalecube.pubsub.journal;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.agrona.IoUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JournalTest {
+
+    private static final int SEGMENT_LENGTH = 1024;
+    private static final int INDEX_INTERVAL = 64;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @After
+    public void tearDown() {
+        IoUtil.delete(directory.toFile(), true);
+    }
+
+    @Test
+    public void readsRecordsFromAnyOffset() throws Exception {
+        try (Journal journal = Journal.open(directory, SEGMENT_LENGTH, INDEX_INTERVAL)) {
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i, journal.append(1000 + i, Journal.NO_KEY, frame("m" + i)));
+            }
+
+            assertEquals(10, journal.nextOffset());
+            List<String> records = new ArrayList<>();
+            assertEquals(9, journal.read(6, 3, collect(records)));
+            assertEquals(Arrays.asList("6:m6", "7:m7", "8:m8"), records);
+        }
+    }
+
+    @Test
+    public void rollsOverToNewSegments() throws Exception {
+        try (Journal journal = Journal.open(directory, SEGMENT_LENGTH, INDEX_INTERVAL)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(i, Journal.NO_KEY, frame("message-" + i));
+            }
+
+            File[] segments = directory.toFile().listFiles((dir, name) -> name.endsWith(Segment.LOG_SUFFIX));
+            assertEquals(4, segments.length);
+            List<String> records = new ArrayList<>();
+            long next = 0;
+            while (next < journal.nextOffset()) {
+                next = journal.read(next, 7, collect(records));
+            }
+            assertEquals(100, records.size());
+            assertEquals("99:message-99", records.get(99));
+        }
+    }
+
+    @Test
+    public void reopenedJournalContinuesAfterLastRecord() throws Exception {
+        try (Journal journal = Journal.open(directory, SEGMENT_LENGTH, INDEX_INTERVAL)) {
+            for (int i = 0; i < 40; i++) {
+                journal.append(i, Journal.NO_KEY, frame("message-" + i));
+            }
+        }
+
+        try (Journal journal = Journal.open(directory, SEGMENT_LENGTH, INDEX_INTERVAL)) {
+            // the first segment is full, the second one is looked through
+            assertEquals(40, journal.nextOffset());
+            assertEquals(40, journal.append(40, Journal.NO_KEY, frame("message-40")));
+
+            List<String> records = new ArrayList<>();
+            journal.read(14, 2, collect(records));
+            assertEquals(Arrays.asList("14:message-14", "15:message-15"), records);
+        }
+    }
+
+    @Test
+    public void findsOffsetByTimestamp() throws Exception {
+        try (Journal journal = Journal.open(directory, SEGMENT_LENGTH, INDEX_INTERVAL)) {
+            for (int i = 0; i < 100; i++) {
+                journal.append(10 * i, Journal.NO_KEY, frame("message-" + i));
+            }
+
+            assertEquals(0, journal.offsetOf(-5));
+            assertEquals(42, journal.offsetOf(420));
+            assertEquals(43, journal.offsetOf(421));
+            assertEquals(100, journal.offsetOf(991));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMessagesLongerThanASegment() throws Exception {
+        try (Journal journal = Journal.open(directory, SEGMENT_LENGTH, INDEX_INTERVAL)) {
+            journal.append(0, Journal.NO_KEY, ByteBuffer.allocate(SEGMENT_LENGTH));
+        }
+    }
+
+    private static ByteBuffer frame(String text) {
+        return ByteBuffer.wrap(text.getBytes(UTF_8));
+    }
+
+    private static Journal.RecordHandler collect(List<String> records) {
+        return (offset, timestamp, key, buffer, index, length) ->
+            records.add(offset + ":" + buffer.getStringWithoutLengthUtf8(index, length));
+    }
+}